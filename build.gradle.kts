@@ -52,8 +52,13 @@ dependencies {
         intellijIdeaCommunity("2024.3.5")
         plugins(providers.gradleProperty("platformPlugins").map { it.split(',') })
         bundledPlugins(providers.gradleProperty("platformBundledPlugins").map { it.split(',') })
+        testFramework(org.jetbrains.intellij.platform.gradle.TestFrameworkType.Platform)
     }
 
+    testImplementation("junit:junit:4.13.2")
+    // Richiesta a runtime dal test framework della piattaforma per i messaggi delle asserzioni
+    testImplementation("org.opentest4j:opentest4j:1.3.0")
+
 }
 
 dependencies {
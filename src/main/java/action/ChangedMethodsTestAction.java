@@ -0,0 +1,206 @@
+package action;
+
+import ai.FileCheckpointSaver;
+import ai.Graph;
+import ai.PipelineExecutor;
+import ai.ProgressEvent;
+import ai.model.ChatModelFactory;
+import ai.model.LlmScheduler;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import files.TestRootResolver;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ui.InfoWindowPanel.StatusType;
+import ui.PanelUpdateBus;
+import vcs.ChangedMethodsCollector;
+import vcs.ChangedMethodsCollector.ChangedFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Genera i test solo per i metodi modificati nel working tree rispetto a HEAD, in tutti i file toccati.
+ * <p>
+ * Pensata per i flussi pre-commit e di pull request: il costo della generazione è proporzionale alla
+ * dimensione della modifica e non a quella delle classi. I file vengono elaborati in parallelo, ognuno
+ * con il proprio grafo, e i test generati vengono sempre uniti a quelli esistenti.
+ */
+public class ChangedMethodsTestAction extends AnAction {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangedMethodsTestAction.class);
+
+    private static final String SUMMARY_ID = "changed_methods_summary";
+
+    // File elaborati insieme: una modifica che tocca molti file non occupa tutti i thread della pipeline
+    private static final int MAX_PARALLEL_FILES = 4;
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabledAndVisible(project != null
+                && ProjectLevelVcsManager.getInstance(project).hasActiveVcss());
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            log.error("Progetto non trovato nell'AnActionEvent");
+            return;
+        }
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow("JUnitGenerator");
+        if (toolWindow == null) {
+            log.error("ToolWindow 'JUnitGenerator' non trovata");
+            return;
+        }
+
+        // Le revisioni base vengono confrontate con i documenti: salviamo prima le modifiche in sospeso
+        FileDocumentManager.getInstance().saveAllDocuments();
+
+        toolWindow.show(() -> {
+            PanelUpdateBus.RunUpdates ui = InfoPanels.obtain(toolWindow).startRun("Changed methods");
+            ui.addItem(SUMMARY_ID, StatusType.LOADING, "Collecting changed methods...",
+                    "Comparing the working tree with HEAD", true);
+            PipelineExecutor.getInstance().executor().execute(() -> generateForChanges(project, ui));
+        });
+    }
+
+    private void generateForChanges(Project project, PanelUpdateBus.RunUpdates ui) {
+        List<ChangedFile> changedFiles;
+        try {
+            changedFiles = new ChangedMethodsCollector(project).collect();
+        } catch (Exception e) {
+            log.error("Errore durante la lettura delle modifiche", e);
+            ui.update(SUMMARY_ID, StatusType.ERROR, "Error reading VCS changes: " + e.getMessage());
+            return;
+        }
+        if (changedFiles.isEmpty()) {
+            ui.update(SUMMARY_ID, StatusType.SUCCESS, "No changed methods to test");
+            return;
+        }
+
+        // Un modello per esecuzione, con la modalità impostata in questo momento; corsia prioritaria perché
+        // la generazione è avviata dall'utente
+        ChatLanguageModel model;
+        try {
+            model = ChatModelFactory.create(LlmScheduler.Lane.INTERACTIVE, List.of());
+        } catch (Exception e) {
+            log.error("Creazione del modello fallita", e);
+            ui.update(SUMMARY_ID, StatusType.ERROR, "Error creating the model: " + e.getMessage());
+            return;
+        }
+
+        int methodCount = changedFiles.stream().mapToInt(changedFile -> changedFile.methods().size()).sum();
+        ui.setText(SUMMARY_ID, String.format("Generating tests for %d changed methods in %d files",
+                methodCount, changedFiles.size()));
+
+        // I file sono indipendenti: ognuno ha il proprio grafo e procede in parallelo agli altri, al più
+        // MAX_PARALLEL_FILES alla volta, su un executor separato da quello della pipeline
+        ExecutorService fileExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "JUnitGenerator Changed Files", MAX_PARALLEL_FILES);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+        for (ChangedFile changedFile : changedFiles) {
+            String itemId = "changed_" + changedFile.file().getPath();
+            ui.addItem(itemId, StatusType.WAITING,
+                    changedFile.file().getName() + " - " + changedFile.methods().size() + " changed methods",
+                    String.join(", ", changedFile.methods()), false);
+            runs.add(CompletableFuture.supplyAsync(() -> generateForFile(project, model, ui, itemId, changedFile),
+                            fileExecutor)
+                    .thenCompose(written -> written)
+                    .thenAccept(written -> {
+                        if (written) {
+                            succeeded.incrementAndGet();
+                        }
+                    }));
+        }
+
+        // I file già accodati vengono comunque elaborati
+        fileExecutor.shutdown();
+
+        CompletableFuture.allOf(runs.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            StatusType status = succeeded.get() == changedFiles.size() ? StatusType.SUCCESS : StatusType.WARNING;
+            ui.update(SUMMARY_ID, status, String.format("Tests generated for %d of %d changed files",
+                    succeeded.get(), changedFiles.size()));
+        });
+    }
+
+    /**
+     * Genera e unisce i test dei metodi modificati di un file
+     *
+     * @return Future completato con true quando i test sono stati scritti
+     */
+    private CompletableFuture<Boolean> generateForFile(Project project, ChatLanguageModel model, PanelUpdateBus.RunUpdates ui, String itemId,
+                                    ChangedFile changedFile) {
+        VirtualFile file = changedFile.file();
+        try {
+            ui.setStatus(itemId, StatusType.LOADING);
+            String packageName = ReadAction.compute(() -> file.getParent() != null
+                    ? ProjectRootManager.getInstance(project).getFileIndex().getPackageNameByDirectory(file.getParent())
+                    : null);
+
+            // Solo i test dei metodi modificati: vanno sempre uniti al file esistente, mai sovrascritti
+            String existingTests = TestRootResolver.getInstance(project).readExistingTests(file, packageName);
+            String targetMethods = changedFile.targetMethods();
+            String threadId = FileCheckpointSaver.threadIdFor(file.getPath(),
+                    changedFile.content() + existingTests + targetMethods);
+
+            Graph workflow = new Graph(model, project, file);
+            workflow.addEventListener(event -> {
+                if (event instanceof ProgressEvent.NodeReached reached) {
+                    ui.setText(itemId, file.getName() + " - " + reached.node().replace('_', ' '));
+                } else if (event instanceof ProgressEvent.CodeProblems codeProblems) {
+                    ui.addItem(itemId + "_problems", StatusType.WARNING, "Generated test may need fixes",
+                            String.join("; ", codeProblems.problems()), false);
+                }
+            });
+            String generatedTests = workflow.execute(threadId, changedFile.content(), existingTests, targetMethods);
+            if (Graph.isFailure(generatedTests)) {
+                ui.update(itemId, StatusType.ERROR, "Failed to generate tests for " + file.getName());
+                return CompletableFuture.completedFuture(false);
+            }
+
+            // Il pannello si aggiorna quando le scritture sono state applicate
+            return JUnitGeneratorAction.createTestFiles(project, file, generatedTests, true).thenApply(testFiles -> {
+                if (testFiles.isEmpty()) {
+                    ui.update(itemId, StatusType.ERROR, "Failed to write tests for " + file.getName());
+                    return false;
+                }
+
+                ui.update(itemId, StatusType.SUCCESS, file.getName() + " - tests for "
+                        + changedFile.methods().size() + " changed methods");
+                ui.addButton(itemId, "View Tests", actionEvent -> {
+                    for (JUnitGeneratorAction.TestFileInfo testFile : testFiles) {
+                        JUnitGeneratorAction.openTestFile(project, testFile.filePath());
+                    }
+                });
+                return true;
+            });
+        } catch (Exception e) {
+            log.error("Generazione dei test per i metodi modificati di {} fallita", file.getName(), e);
+            ui.update(itemId, StatusType.ERROR, "Error generating tests for " + file.getName() + ": " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+}
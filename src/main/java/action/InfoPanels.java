@@ -0,0 +1,82 @@
+package action;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ui.InfoWindowPanel;
+import ui.PanelUpdateBus;
+
+/**
+ * Pannello info della toolWindow condiviso dalle azioni del plugin, insieme al suo bus di aggiornamento.
+ * Il bus è salvato nel contenuto della toolWindow e vive quanto lui, così tutte le azioni usano lo stesso.
+ */
+final class InfoPanels {
+
+    private static final Logger log = LoggerFactory.getLogger(InfoPanels.class);
+
+    private static final Key<PanelUpdateBus> UPDATE_BUS = Key.create("junit.generator.panel.update.bus");
+
+    private InfoPanels() {
+    }
+
+    /**
+     * Pannello e bus attraverso cui aggiornarlo da qualsiasi thread
+     */
+    record Target(InfoWindowPanel panel, PanelUpdateBus bus) {
+
+        /**
+         * Avvia un nuovo run nel pannello e restituisce il bus legato a quel run: tutti gli aggiornamenti
+         * dell'esecuzione devono passare da qui. Va chiamato sulla EDT.
+         */
+        PanelUpdateBus.RunUpdates startRun(String title) {
+            return bus.forRun(panel.startNewRun(title));
+        }
+    }
+
+    /**
+     * Restituisce il pannello già presente nella toolWindow, così la cronologia dei run viene conservata,
+     * oppure ne crea uno nuovo e lo aggiunge alla toolWindow. Va chiamato sulla EDT.
+     */
+    static Target obtain(ToolWindow toolWindow) {
+        ContentManager contentManager = toolWindow.getContentManager();
+        for (Content content : contentManager.getContents()) {
+            if (content.getComponent() instanceof InfoWindowPanel panel) {
+                log.debug("Riutilizzo dell'InfoWindowPanel esistente");
+                contentManager.setSelectedContent(content);
+                return new Target(panel, busFor(content, panel));
+            }
+        }
+
+        log.debug("Creazione nuovo InfoWindowPanel");
+        InfoWindowPanel panel = new InfoWindowPanel();
+
+        // Usa la versione non deprecata di ContentFactory
+        Content content = ContentFactory.getInstance().createContent(panel, "JUnit Tests", false);
+
+        // Rimuovi eventuali contenuti esistenti
+        contentManager.removeAllContents(true);
+
+        // Aggiungi il nuovo contenuto
+        contentManager.addContent(content);
+        contentManager.setSelectedContent(content);
+
+        log.debug("Nuovo InfoWindowPanel creato e aggiunto alla toolWindow");
+        return new Target(panel, busFor(content, panel));
+    }
+
+    private static PanelUpdateBus busFor(Content content, InfoWindowPanel panel) {
+        PanelUpdateBus bus = content.getUserData(UPDATE_BUS);
+        if (bus == null) {
+            // Gli aggiornamenti di avanzamento arrivano al pannello attraverso il bus, che vive quanto il contenuto
+            bus = new PanelUpdateBus(panel);
+            Disposer.register(content, bus);
+            content.putUserData(UPDATE_BUS, bus);
+        }
+        return bus;
+    }
+}
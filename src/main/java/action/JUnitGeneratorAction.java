@@ -1,13 +1,23 @@
 package action;
 
+import ai.FileCheckpointSaver;
 import ai.Graph;
+import ai.PipelineExecutor;
+import ai.ProgressEvent;
+import ai.PromptCacheStats;
+import ai.agents.CandidateReport;
+import ai.model.ChatModelFactory;
+import ai.model.LlmScheduler;
 import com.intellij.openapi.actionSystem.ActionUpdateThread;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -17,40 +27,38 @@ import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiManager;
-import com.intellij.ui.content.Content;
-import com.intellij.ui.content.ContentFactory;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiChatModel;
+import files.TestFileWriter;
+import files.TestRootResolver;
+import files.TestSourceSplitter;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ui.InfoWindowPanel;
+import settings.JUnitGeneratorSettings;
 import ui.InfoWindowPanel.StatusType;
+import ui.PanelUpdateBus;
 
-import java.awt.*;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class JUnitGeneratorAction extends AnAction {
 
     private static final Logger log = LoggerFactory.getLogger(JUnitGeneratorAction.class);
 
-    private InfoWindowPanel infoPanel;
-    private ChatLanguageModel model;
+    private final PromptCacheStats promptCacheStats = new PromptCacheStats();
 
-    // ID univoci per gli elementi UI dedicati alle diverse fasi del processo
-    private static final String DEPENDENCY_PHASE_ID = "dependency_analysis";
-    private static final String CONTEXT_PHASE_ID = "context_analysis";
-    private static final String JUNIT_PHASE_ID = "junit_generation";
+    // Suffissi degli elementi UI dedicati alle diverse fasi del processo, preceduti dall'ID del file
+    private static final String DEPENDENCY_PHASE = "_dependency_analysis";
+    private static final String CONTEXT_PHASE = "_context_analysis";
+    private static final String JUNIT_PHASE = "_junit_generation";
 
     // Costruttore predefinito senza parametri
     public JUnitGeneratorAction() {
         super();
         log.info("Inizializzazione JUnitGeneratorAction");
-        initChatModel();
     }
 
     // Specifica che update dovrebbe essere eseguito in background
@@ -108,19 +116,16 @@ public class JUnitGeneratorAction extends AnAction {
     private void processFileAfterToolWindowActivation(Project currentProject, ToolWindow toolWindow, VirtualFile selectedFile) {
         ApplicationManager.getApplication().invokeLater(() -> {
             // Aggiorna o crea il pannello info
-            infoPanel = createNewInfoPanel(currentProject, toolWindow);
+            // Ogni generazione è un nuovo run; i precedenti restano nella cronologia del pannello.
+            // Tutti gli aggiornamenti di questa generazione passano dal bus del suo run.
+            InfoPanels.Target target = InfoPanels.obtain(toolWindow);
+            PanelUpdateBus.RunUpdates ui = target.startRun(selectedFile != null ? selectedFile.getName() : "JUnit tests");
             log.debug("InfoWindowPanel ottenuto/creato: {}", "sì");
 
-            if (infoPanel == null) {
-                log.error("Impossibile ottenere/creare InfoWindowPanel");
-                return;
-            }
-
             // Verifica che il file sia valido
             if (selectedFile == null) {
                 log.error("Nessun file selezionato");
-                infoPanel.addNewItem("junit_error", StatusType.ERROR, "No file selected!", null, true);
-                refreshUI();
+                ui.addItem("junit_error", StatusType.ERROR, "No file selected!", null, true);
                 return;
             }
             log.debug("File selezionato: {}", selectedFile.getPath());
@@ -128,69 +133,15 @@ public class JUnitGeneratorAction extends AnAction {
             // Verifica che sia un file Java
             if (!selectedFile.isDirectory() && "java".equals(selectedFile.getExtension())) {
                 log.info("Elaborazione del file Java: {}", selectedFile.getName());
-                // Pulisce completamente il pannello prima di iniziare la generazione dei test
-                infoPanel.clearAll();
-                processJavaFileForJUnit(selectedFile, currentProject);
+                processJavaFileForJUnit(selectedFile, currentProject, ui);
             } else {
                 log.error("Il file selezionato non è un file Java: {}", selectedFile.getName());
-                infoPanel.addNewItem("junit_error", StatusType.ERROR,
+                ui.addItem("junit_error", StatusType.ERROR,
                         "Only Java files can be processed for JUnit test generation", null, true);
-                refreshUI();
             }
         });
     }
 
-    /**
-     * Crea un nuovo pannello info e lo aggiunge alla toolWindow
-     */
-    private InfoWindowPanel createNewInfoPanel(Project project, ToolWindow toolWindow) {
-        log.debug("Creazione nuovo InfoWindowPanel");
-
-        // Crea un nuovo pannello
-        InfoWindowPanel panel = new InfoWindowPanel();
-
-        // Usa la versione non deprecata di ContentFactory
-        Content content = ContentFactory.getInstance().createContent(panel, "JUnit Tests", false);
-
-        // Rimuovi eventuali contenuti esistenti
-        toolWindow.getContentManager().removeAllContents(true);
-
-        // Aggiungi il nuovo contenuto
-        toolWindow.getContentManager().addContent(content);
-        toolWindow.getContentManager().setSelectedContent(content);
-
-        log.debug("Nuovo InfoWindowPanel creato e aggiunto alla toolWindow");
-        return panel;
-    }
-
-    /**
-     * Forza l'aggiornamento dell'UI
-     */
-    private void refreshUI() {
-        if (infoPanel != null) {
-            ApplicationManager.getApplication().invokeLater(() -> {
-                infoPanel.revalidate();
-                infoPanel.repaint();
-
-                // Forza anche l'aggiornamento del parent per maggiore sicurezza
-                Container parent = infoPanel.getParent();
-                if (parent != null) {
-                    parent.revalidate();
-                    parent.repaint();
-
-                    // Aggiorna anche il parent del parent
-                    Container grandParent = parent.getParent();
-                    if (grandParent != null) {
-                        grandParent.revalidate();
-                        grandParent.repaint();
-                    }
-
-                    log.debug("UI aggiornata a tutti i livelli");
-                }
-            });
-        }
-    }
-
     @Override
     public void update(@NotNull AnActionEvent e) {
         // Verifica se c'è un progetto aperto
@@ -218,53 +169,48 @@ public class JUnitGeneratorAction extends AnAction {
 
     /**
      * Processa un file Java per generare test JUnit
+     *
+     * @param ui Bus del run avviato per questa generazione
      */
-    void processJavaFileForJUnit(VirtualFile file, Project project) {
+    void processJavaFileForJUnit(VirtualFile file, Project project, PanelUpdateBus.RunUpdates ui) {
         // ID univoco per questo file
         final String fileId = "junit_" + file.getName();
         log.info("Avvio elaborazione per generazione JUnit, file ID: {}", fileId);
 
-        // Aggiungi un elemento per il file principale (assicurandoci che sia sulla EDT)
-        ApplicationManager.getApplication().invokeLater(() -> {
-            try {
-                infoPanel.addNewItem(fileId, StatusType.LOADING,
-                        "Analyzing " + file.getName() + " for JUnit test generation", null, true);
+        // Con il merge attivo i test esistenti vengono passati al modello e poi estesi invece che sovrascritti
+        final boolean mergeExisting = JUnitGeneratorSettings.getInstance().getState().mergeExistingTests;
 
-                // Aggiungi elementi UI per le diverse fasi del processo
-                infoPanel.addNewItem(DEPENDENCY_PHASE_ID, StatusType.LOADING,
-                        "Dependency analysis - Analyzing project dependencies...",
-                        "Looking for JUnit, Mockito, and other testing libraries", false);
+        // Modulo e package del file, per raggruppare gli elementi nel pannello
+        Module module = ModuleUtilCore.findModuleForFile(file, project);
+        final String moduleName = module != null ? module.getName() : null;
+        final String packageName = file.getParent() != null
+                ? ProjectRootManager.getInstance(project).getFileIndex().getPackageNameByDirectory(file.getParent())
+                : null;
 
-                infoPanel.addNewItem(CONTEXT_PHASE_ID, StatusType.WAITING,
-                        "Context analysis - Waiting...",
-                        "Will analyze class structure and relationships", false);
+        // Aggiungi un elemento per il file principale
+        ui.addItem(fileId, StatusType.LOADING,
+                "Analyzing " + file.getName() + " for JUnit test generation", null, true, moduleName, packageName);
 
-                infoPanel.addNewItem(JUNIT_PHASE_ID, StatusType.WAITING,
-                        "JUnit generation - Waiting...",
-                        "Will generate test cases based on analysis", false);
+        // Aggiungi elementi UI per le diverse fasi del processo
+        ui.addItem(fileId + DEPENDENCY_PHASE, StatusType.LOADING,
+                "Dependency analysis - Analyzing project dependencies...",
+                "Looking for JUnit, Mockito, and other testing libraries", false, moduleName, packageName);
 
-                refreshUI();
-                log.debug("Elementi di stato aggiunti al panel");
-            } catch (Exception e) {
-                log.error("Errore durante l'aggiunta dell'elemento al panel", e);
-            }
-        });
+        ui.addItem(fileId + CONTEXT_PHASE, StatusType.WAITING,
+                "Context analysis - Waiting...",
+                "Will analyze class structure and relationships", false, moduleName, packageName);
+
+        ui.addItem(fileId + JUNIT_PHASE, StatusType.WAITING,
+                "JUnit generation - Waiting...",
+                "Will generate test cases based on analysis", false, moduleName, packageName);
 
-        // Avvia un thread separato per non bloccare l'UI
-        Thread thread = new Thread(() -> {
+        // Esegue l'elaborazione sull'executor della pipeline per non bloccare l'UI
+        PipelineExecutor.getInstance().executor().execute(() -> {
             try {
                 log.debug("Thread di elaborazione avviato per {}", file.getName());
 
                 // Aggiorna lo stato iniziale
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    try {
-                        infoPanel.updateItemText(fileId, "Reading " + file.getName());
-                        refreshUI();
-                        log.debug("Aggiornato testo elemento a 'Reading {}'", file.getName());
-                    } catch (Exception e) {
-                        log.error("Errore durante l'aggiornamento dell'elemento", e);
-                    }
-                });
+                ui.setText(fileId, "Reading " + file.getName());
 
                 // Leggi il contenuto del file
                 log.debug("Lettura del contenuto del file: {}", file.getPath());
@@ -274,266 +220,198 @@ public class JUnitGeneratorAction extends AnAction {
                 // Verifica che il file sia valido
                 if (fileContent.isEmpty()) {
                     log.error("Contenuto del file vuoto: {}", file.getPath());
-                    ApplicationManager.getApplication().invokeLater(() -> {
-                        try {
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Error: Empty file or could not read content");
-
-                            // Aggiorna stati delle fasi
-                            infoPanel.updateItemStatus(DEPENDENCY_PHASE_ID, StatusType.ERROR);
-                            infoPanel.updateItemStatus(CONTEXT_PHASE_ID, StatusType.ERROR);
-                            infoPanel.updateItemStatus(JUNIT_PHASE_ID, StatusType.ERROR);
-
-                            refreshUI();
-                        } catch (Exception e) {
-                            log.error("Errore durante l'aggiornamento dello stato dell'elemento", e);
-                        }
-                    });
+                    ui.update(fileId, StatusType.ERROR, "Error: Empty file or could not read content");
+                    ui.setStatus(fileId + DEPENDENCY_PHASE, StatusType.ERROR);
+                    ui.setStatus(fileId + CONTEXT_PHASE, StatusType.ERROR);
+                    ui.setStatus(fileId + JUNIT_PHASE, StatusType.ERROR);
                     return;
                 }
 
                 // Aggiorna con un messaggio intermedio
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    try {
-                        infoPanel.updateItemText(fileId, "Analyzing " + file.getName());
-                        refreshUI();
-                    } catch (Exception e) {
-                        log.error("Errore durante l'aggiornamento dell'elemento", e);
-                    }
-                });
+                ui.setText(fileId, "Analyzing " + file.getName());
 
                 // Crea il workflow per la generazione dei test con il listener di progresso
                 log.info("Creazione workflow per generazione test");
 
-
                 // Crea un'istanza del grafo con il listener per gli eventi
                 Graph workflow;
                 try {
-                    workflow = new Graph(model, project);
+                    // Il modello viene creato a ogni esecuzione, così vale la modalità (live, registrazione, replay)
+                    // impostata in quel momento; le generazioni avviate dall'utente usano la corsia prioritaria
+                    ChatLanguageModel model = ChatModelFactory.create(LlmScheduler.Lane.INTERACTIVE, List.of(promptCacheStats));
+                    workflow = new Graph(model, project, file);
                 } catch (Exception e) {
-                    handleGraphError("Graph initialization error", "Failed to initialize test generation workflow", e);
+                    handleGraphError(ui, fileId, "Graph initialization error", "Failed to initialize test generation workflow", e);
                     return;
                 }
 
-                // Aggiungi un observer per monitorare le transizioni del grafo
-                workflow.addGraphProgressListener(node -> {
-                    String nodeName = node.toLowerCase();
-                    log.info("Workflow transitioned to node: {}", nodeName);
-
-                    if (nodeName.contains("dependency")) {
-                        updatePhaseStatus(DEPENDENCY_PHASE_ID, "Analyzing project dependencies...", StatusType.LOADING);
-                        updatePhaseStatus(CONTEXT_PHASE_ID, "Context analysis - Waiting...", StatusType.WAITING);
-                        updatePhaseStatus(JUNIT_PHASE_ID, "JUnit generation - Waiting...", StatusType.WAITING);
-                    }
-                    else if (nodeName.contains("context")) {
-                        updatePhaseStatus(DEPENDENCY_PHASE_ID, "Dependency analysis - Completed", StatusType.SUCCESS);
-                        updatePhaseStatus(CONTEXT_PHASE_ID, "Analyzing class structure and relationships...", StatusType.LOADING);
-                        updatePhaseStatus(JUNIT_PHASE_ID, "JUnit generation - Waiting...", StatusType.WAITING);
-                    }
-                    else if (nodeName.contains("junit")) {
-                        updatePhaseStatus(DEPENDENCY_PHASE_ID, "Dependency analysis - Completed", StatusType.SUCCESS);
-                        updatePhaseStatus(CONTEXT_PHASE_ID, "Context analysis - Completed", StatusType.SUCCESS);
-                        updatePhaseStatus(JUNIT_PHASE_ID, "Generating JUnit tests...", StatusType.LOADING);
-                    }
-                });
-
-                // Aggiungi un listener per gli errori del grafo
-                workflow.addErrorListener(error -> {
-                    String phase = error.phase();
-                    String errorMessage = error.message();
-                    log.error("Graph error in phase {}: {}", phase, errorMessage, error.exception());
-
-                    // Determina la fase in cui si è verificato l'errore
-                    if (phase.contains("dependency") || phase.equals("dependency_checker")) {
-                        ApplicationManager.getApplication().invokeLater(() -> {
-                            infoPanel.updateItemStatus(DEPENDENCY_PHASE_ID, StatusType.ERROR);
-                            infoPanel.updateItemText(DEPENDENCY_PHASE_ID, "Dependency analysis - Failed: " + errorMessage);
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Error in dependency analysis: " + errorMessage);
-                            refreshUI();
-                        });
-                    }
-                    else if (phase.contains("context") || phase.equals("context_analyzer")) {
-                        ApplicationManager.getApplication().invokeLater(() -> {
-                            infoPanel.updateItemStatus(CONTEXT_PHASE_ID, StatusType.ERROR);
-                            infoPanel.updateItemText(CONTEXT_PHASE_ID, "Context analysis - Failed: " + errorMessage);
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Error in context analysis: " + errorMessage);
-                            refreshUI();
-                        });
-                    }
-                    else if (phase.contains("junit") || phase.equals("junit_generator")) {
-                        ApplicationManager.getApplication().invokeLater(() -> {
-                            infoPanel.updateItemStatus(JUNIT_PHASE_ID, StatusType.ERROR);
-                            infoPanel.updateItemText(JUNIT_PHASE_ID, "JUnit generation - Failed: " + errorMessage);
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Error in JUnit generation: " + errorMessage);
-                            refreshUI();
-                        });
-                    }
-                    else {
-                        // Errore generico o di inizializzazione
-                        ApplicationManager.getApplication().invokeLater(() -> {
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Error in test generation: " + errorMessage);
-                            refreshUI();
-                        });
+                // Tutti gli eventi del grafo confluiscono nel bus, che li applica al pannello una volta per frame
+                workflow.addEventListener(event -> {
+                    if (event instanceof ProgressEvent.NodeReached reached) {
+                        showNodeReached(ui, fileId, reached.node());
+                    } else if (event instanceof ProgressEvent.Failed failed) {
+                        showGraphError(ui, fileId, failed.error());
+                    } else if (event instanceof ProgressEvent.CandidatesEvaluated evaluated) {
+                        showCandidates(ui, fileId, evaluated.reports());
+                    } else if (event instanceof ProgressEvent.CodeProblems codeProblems) {
+                        ui.addItem(fileId + "_problems", StatusType.WARNING, "Generated test may need fixes",
+                                String.join("; ", codeProblems.problems()), false);
                     }
                 });
 
                 // Aggiorna lo stato
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    try {
-                        infoPanel.updateItemText(fileId, "Generating JUnit tests for " + file.getName() + "...");
-                        infoPanel.updateItemText(DEPENDENCY_PHASE_ID, "Starting dependency analysis...");
-                        refreshUI();
-                    } catch (Exception e) {
-                        log.error("Errore durante l'aggiornamento dell'elemento", e);
-                    }
-                });
+                ui.setText(fileId, "Generating JUnit tests for " + file.getName() + "...");
+                ui.setText(fileId + DEPENDENCY_PHASE, "Starting dependency analysis...");
 
                 // Esegui il workflow per generare i test
                 log.info("Esecuzione workflow...");
                 String generatedTests;
                 try {
-                    generatedTests = workflow.execute(fileContent);
+                    // Il thread id dipende da percorso e contenuto: un'esecuzione interrotta riprende dai checkpoint
+                    // In modalità merge anche i test esistenti fanno parte della chiave: se cambiano si rigenera
+                    String existingTests = mergeExisting
+                            ? TestRootResolver.getInstance(project).readExistingTests(file, packageName) : "";
+                    String threadId = FileCheckpointSaver.threadIdFor(file.getPath(), fileContent + existingTests);
+                    generatedTests = workflow.execute(threadId, fileContent, existingTests);
                     log.debug("Test generati, dimensione: {} caratteri", generatedTests.length());
+                    log.info("Statistiche prompt cache: {}", promptCacheStats.snapshot());
                 } catch (Exception e) {
-                    handleGraphError("Execution error", "Error executing test generation workflow", e);
+                    handleGraphError(ui, fileId, "Execution error", "Error executing test generation workflow", e);
                     return;
                 }
 
-                if (generatedTests.isEmpty() || generatedTests.contains("Nessun test JUnit generato") || generatedTests.startsWith("Errore")) {
+                if (Graph.isFailure(generatedTests)) {
                     log.error("Generazione test fallita per: {}", file.getName());
-                    ApplicationManager.getApplication().invokeLater(() -> {
-                        try {
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Failed to generate tests for " + file.getName() +
-                                    (generatedTests.startsWith("Errore") ? ": " + generatedTests : ""));
-
-                            // Aggiorna stati delle fasi
-                            infoPanel.updateItemStatus(JUNIT_PHASE_ID, StatusType.ERROR);
-                            infoPanel.updateItemText(JUNIT_PHASE_ID, "JUnit generation - Failed");
-
-                            refreshUI();
-                        } catch (Exception e) {
-                            log.error("Errore durante l'aggiornamento dello stato dell'elemento", e);
-                        }
-                    });
+                    ui.update(fileId, StatusType.ERROR, "Failed to generate tests for " + file.getName() +
+                            (generatedTests.startsWith(Graph.ERROR_PREFIX) ? ": " + generatedTests : ""));
+                    ui.update(fileId + JUNIT_PHASE, StatusType.ERROR, "JUnit generation - Failed");
                     return;
                 }
 
                 // Aggiorna lo stato delle fasi finali
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    try {
-                        infoPanel.updateItemStatus(DEPENDENCY_PHASE_ID, StatusType.SUCCESS);
-                        infoPanel.updateItemText(DEPENDENCY_PHASE_ID, "Dependency analysis - Completed");
-
-                        infoPanel.updateItemStatus(CONTEXT_PHASE_ID, StatusType.SUCCESS);
-                        infoPanel.updateItemText(CONTEXT_PHASE_ID, "Context analysis - Completed");
-
-                        infoPanel.updateItemStatus(JUNIT_PHASE_ID, StatusType.SUCCESS);
-                        infoPanel.updateItemText(JUNIT_PHASE_ID, "JUnit generation - Completed");
+                ui.update(fileId + DEPENDENCY_PHASE, StatusType.SUCCESS, "Dependency analysis - Completed");
+                ui.update(fileId + CONTEXT_PHASE, StatusType.SUCCESS, "Context analysis - Completed");
+                ui.update(fileId + JUNIT_PHASE, StatusType.SUCCESS, "JUnit generation - Completed");
+                ui.setText(fileId, "Creating test file for " + file.getName());
 
-                        infoPanel.updateItemText(fileId, "Creating test file for " + file.getName());
-                        refreshUI();
-                    } catch (Exception e) {
-                        log.error("Errore durante l'aggiornamento dell'elemento", e);
+                // Crea il file di test; il pannello si aggiorna quando le scritture sono state applicate
+                log.info("Creazione file di test per: {}", file.getName());
+                createTestFiles(project, file, generatedTests, mergeExisting).thenAccept(testFiles -> {
+                    if (testFiles.isEmpty()) {
+                        log.error("Creazione file di test fallita per: {}", file.getName());
+                        ui.update(fileId, StatusType.ERROR, "Failed to create test file for " + file.getName());
+                        return;
                     }
-                });
 
-                // Crea il file di test
-                log.info("Creazione file di test per: {}", file.getName());
-                final TestFileInfo testFileInfo;
-                try {
-                    testFileInfo = createTestFile(project, file, generatedTests);
-                } catch (Exception e) {
-                    handleGraphError("File creation error", "Error creating test file", e);
-                    return;
-                }
+                    log.info("File di test creati con successo: {}", testFiles.size());
+
+                    // Finalizza con successo
+                    ui.update(fileId, StatusType.SUCCESS, "JUnit tests generated: "
+                            + String.join(", ", testFiles.stream().map(TestFileInfo::className).toList()));
 
-                if (testFileInfo == null) {
-                    log.error("Creazione file di test fallita per: {}", file.getName());
-                    ApplicationManager.getApplication().invokeLater(() -> {
-                        try {
-                            infoPanel.updateItemStatus(fileId, StatusType.ERROR);
-                            infoPanel.updateItemText(fileId, "Failed to create test file for " + file.getName());
-                            refreshUI();
-                        } catch (Exception e) {
-                            log.error("Errore durante l'aggiornamento dello stato dell'elemento", e);
+                    // Aggiungi un pulsante per visualizzare i test
+                    log.debug("Aggiunta pulsante 'View Tests'");
+                    ui.addButton(fileId, "View Tests", actionEvent -> {
+                        for (TestFileInfo testFile : testFiles) {
+                            log.debug("Pulsante 'View Tests' cliccato, apertura file: {}", testFile.filePath());
+                            openTestFile(project, testFile.filePath());
                         }
                     });
-                    return;
-                }
-
-                log.info("File di test creato con successo: {}", testFileInfo.filePath);
-
-                // Finalizza con successo
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    try {
-                        infoPanel.updateItemStatus(fileId, StatusType.SUCCESS);
-                        infoPanel.updateItemText(fileId, "JUnit tests generated: " + testFileInfo.className);
-
-                        // Aggiungi un pulsante per visualizzare i test
-                        log.debug("Aggiunta pulsante 'View Tests'");
-                        infoPanel.addButtonToItem(fileId, "View Tests", actionEvent -> {
-                            log.debug("Pulsante 'View Tests' cliccato, apertura file: {}", testFileInfo.filePath);
-                            openTestFile(project, testFileInfo.filePath);
-                        });
-
-                        refreshUI();
-                    } catch (Exception e) {
-                        log.error("Errore durante l'aggiornamento finale dell'elemento", e);
-                    }
+                }).exceptionally(e -> {
+                    handleGraphError(ui, fileId, "File creation error", "Error creating test file",
+                            e instanceof Exception exception ? exception : new RuntimeException(e));
+                    return null;
                 });
 
             } catch (Exception e) {
                 // Gestisce gli errori generali
-                handleGraphError("General error", "Error generating JUnit tests", e);
+                handleGraphError(ui, fileId, "General error", "Error generating JUnit tests", e);
             }
         });
-        thread.start();
-        log.debug("Thread di elaborazione avviato per generazione JUnit test");
+        log.debug("Elaborazione avviata per generazione JUnit test");
     }
 
     /**
-     * Gestisce un errore del grafo e lo visualizza nel pannello
+     * Aggiorna le fasi quando il grafo raggiunge un nodo
      */
-    private void handleGraphError(String errorType, String errorDescription, Exception e) {
-        log.error("{}: {}", errorType, errorDescription, e);
-        ApplicationManager.getApplication().invokeLater(() -> {
-            try {
-                // Aggiungi un elemento di errore specifico per questo errore
-                String errorId = "error_" + System.currentTimeMillis();
-                infoPanel.addNewItem(errorId, StatusType.ERROR,
-                        errorDescription,
-                        "Error details: " + e.getMessage(), true);
-
-                // Aggiorna lo stato delle fasi
-                updatePhaseStatus(DEPENDENCY_PHASE_ID, "Dependency analysis - Error occurred", StatusType.ERROR);
-                updatePhaseStatus(CONTEXT_PHASE_ID, "Context analysis - Error occurred", StatusType.ERROR);
-                updatePhaseStatus(JUNIT_PHASE_ID, "JUnit generation - Error occurred", StatusType.ERROR);
-
-                refreshUI();
-            } catch (Exception ex) {
-                log.error("Errore durante la visualizzazione dell'errore nel pannello", ex);
-            }
-        });
+    private void showNodeReached(PanelUpdateBus.RunUpdates ui, String fileId, String node) {
+        String nodeName = node.toLowerCase();
+        log.info("Workflow transitioned to node: {}", nodeName);
+
+        if (nodeName.contains("dependency")) {
+            ui.update(fileId + DEPENDENCY_PHASE, StatusType.LOADING, "Analyzing project dependencies...");
+            ui.update(fileId + CONTEXT_PHASE, StatusType.WAITING, "Context analysis - Waiting...");
+            ui.update(fileId + JUNIT_PHASE, StatusType.WAITING, "JUnit generation - Waiting...");
+        } else if (nodeName.contains("context")) {
+            ui.update(fileId + DEPENDENCY_PHASE, StatusType.SUCCESS, "Dependency analysis - Completed");
+            ui.update(fileId + CONTEXT_PHASE, StatusType.LOADING, "Analyzing class structure and relationships...");
+            ui.update(fileId + JUNIT_PHASE, StatusType.WAITING, "JUnit generation - Waiting...");
+        } else if (nodeName.contains("junit")) {
+            ui.update(fileId + DEPENDENCY_PHASE, StatusType.SUCCESS, "Dependency analysis - Completed");
+            ui.update(fileId + CONTEXT_PHASE, StatusType.SUCCESS, "Context analysis - Completed");
+            ui.update(fileId + JUNIT_PHASE, StatusType.LOADING, "Generating JUnit tests...");
+        }
     }
 
     /**
-     * Aggiorna lo stato di una fase nel pannello
+     * Mostra un errore del grafo sulla fase in cui si è verificato
      */
-    private void updatePhaseStatus(String phaseId, String message, StatusType status) {
-        ApplicationManager.getApplication().invokeLater(() -> {
-            try {
-                infoPanel.updateItemStatus(phaseId, status);
-                infoPanel.updateItemText(phaseId, message);
-                refreshUI();
-            } catch (Exception e) {
-                log.error("Errore durante l'aggiornamento della fase {}: {}", phaseId, e.getMessage());
-            }
-        });
+    private void showGraphError(PanelUpdateBus.RunUpdates ui, String fileId, Graph.GraphError error) {
+        String phase = error.phase();
+        String errorMessage = error.message();
+        log.error("Graph error in phase {}: {}", phase, errorMessage, error.exception());
+
+        // Determina la fase in cui si è verificato l'errore
+        if (phase.contains("dependency")) {
+            ui.update(fileId + DEPENDENCY_PHASE, StatusType.ERROR, "Dependency analysis - Failed: " + errorMessage);
+            ui.update(fileId, StatusType.ERROR, "Error in dependency analysis: " + errorMessage);
+        } else if (phase.contains("context")) {
+            ui.update(fileId + CONTEXT_PHASE, StatusType.ERROR, "Context analysis - Failed: " + errorMessage);
+            ui.update(fileId, StatusType.ERROR, "Error in context analysis: " + errorMessage);
+        } else if (phase.contains("junit")) {
+            ui.update(fileId + JUNIT_PHASE, StatusType.ERROR, "JUnit generation - Failed: " + errorMessage);
+            ui.update(fileId, StatusType.ERROR, "Error in JUnit generation: " + errorMessage);
+        } else {
+            // Errore generico o di inizializzazione
+            ui.update(fileId, StatusType.ERROR, "Error in test generation: " + errorMessage);
+        }
+    }
+
+    /**
+     * Mostra tempi e punteggi dei candidati in modalità multi-candidato
+     */
+    private void showCandidates(PanelUpdateBus.RunUpdates ui, String fileId, List<CandidateReport> reports) {
+        for (CandidateReport report : reports) {
+            String candidateId = fileId + "_candidate_" + report.index();
+            StatusType status = report.selected() ? StatusType.SUCCESS
+                    : report.valid() ? StatusType.WAITING : StatusType.WARNING;
+            String description = report.error() != null
+                    ? "Generation failed: " + report.error()
+                    : String.format("Generated in %d ms, validated in %d ms - %d tests, %d/%d methods covered, %d syntax errors, %d compile errors",
+                    report.generationMillis(), report.validationMillis(), report.testMethods(),
+                    report.coveredMethods(), report.targetMethods(), report.syntaxErrors(), report.compileErrors());
+            ui.addItem(candidateId, status,
+                    String.format("Candidate #%d - score %.1f%s", report.index(), report.score(),
+                            report.selected() ? " (selected)" : ""),
+                    description, false);
+        }
+    }
+
+    /**
+     * Gestisce un errore del grafo e lo visualizza nel pannello
+     */
+    private void handleGraphError(PanelUpdateBus.RunUpdates ui, String fileId, String errorType, String errorDescription,
+                                  Exception e) {
+        log.error("{}: {}", errorType, errorDescription, e);
+
+        // Aggiungi un elemento di errore specifico per questo errore
+        String errorId = fileId + "_error_" + System.currentTimeMillis();
+        ui.addItem(errorId, StatusType.ERROR, errorDescription, "Error details: " + e.getMessage(), true);
+
+        // Aggiorna lo stato delle fasi
+        ui.update(fileId + DEPENDENCY_PHASE, StatusType.ERROR, "Dependency analysis - Error occurred");
+        ui.update(fileId + CONTEXT_PHASE, StatusType.ERROR, "Context analysis - Error occurred");
+        ui.update(fileId + JUNIT_PHASE, StatusType.ERROR, "JUnit generation - Error occurred");
     }
 
     /**
@@ -543,9 +421,11 @@ public class JUnitGeneratorAction extends AnAction {
     }
 
     /**
-     * Crea il file di test e restituisce informazioni su di esso
+     * Crea un file di test per ogni classe di test generata e restituisce le informazioni sui file scritti.
+     * La directory è la test source root del modulo del file sorgente.
      */
-    TestFileInfo createTestFile(Project project, VirtualFile sourceFile, String testCode) {
+    static CompletableFuture<List<TestFileInfo>> createTestFiles(Project project, VirtualFile sourceFile, String testCode,
+                                                                 boolean merge) {
         log.debug("Inizio creazione file di test per: {}", sourceFile.getPath());
         try {
             // Ottieni informazioni sulla classe dal file sorgente
@@ -555,7 +435,7 @@ public class JUnitGeneratorAction extends AnAction {
 
             if (!(psiFile instanceof PsiJavaFile javaFile)) {
                 log.error("Il file non è un PsiJavaFile valido: {}", sourceFile.getPath());
-                return null;
+                return CompletableFuture.completedFuture(List.of());
             }
 
             // Esegui queste operazioni all'interno di una ReadAction
@@ -571,77 +451,57 @@ public class JUnitGeneratorAction extends AnAction {
 
             if (className == null) {
                 log.error("Nessuna classe trovata nel file: {}", sourceFile.getPath());
-                return null;
+                return CompletableFuture.completedFuture(List.of());
             }
 
             String packageName = ApplicationManager.getApplication().runReadAction(
                     (Computable<String>) javaFile::getPackageName
             );
 
-            String testClassName = className + "Test";
+            // Directory dei test nel modulo del file sorgente
+            String testPath = TestRootResolver.getInstance(project).testDirectoryFor(sourceFile, packageName);
+            log.debug("Classe: {}, Package: {}, directory file di test: {}", className, packageName, testPath);
 
-            log.debug("Classe: {}, Package: {}, TestClassName: {}", className, packageName, testClassName);
+            // Con più classi top-level il modello genera una classe di test per ciascuna, ognuna va nel suo file
+            List<TestSourceSplitter.TestSource> sources = TestSourceSplitter.split(project, testCode, className + "Test");
 
-            // Determina il percorso base del progetto
-            String projectBasePath = project.getBasePath();
-            if (projectBasePath == null) {
-                log.error("Impossibile determinare il percorso base del progetto");
-                return null;
+            // Le scritture vengono accodate insieme, così finiscono nello stesso comando annullabile
+            TestFileWriter writer = TestFileWriter.getInstance(project);
+            List<CompletableFuture<VirtualFile>> writes = new ArrayList<>();
+            for (TestSourceSplitter.TestSource source : sources) {
+                writes.add(writer.write(testPath, source.fileName(), source.content(), merge));
             }
 
-            // Crea il percorso per il file di test in src/test/java
-            String testPath = projectBasePath + "/src/test/java/";
-
-            // Aggiungi il percorso del package
-            if (packageName != null && !packageName.isEmpty()) {
-                testPath += packageName.replace('.', '/') + "/";
-            }
-
-            // Aggiungi il nome del file con suffisso Test
-            testPath += testClassName + ".java";
-
-            log.debug("Percorso file di test: {}", testPath);
-
-            // Crea le directory necessarie
-            File testFile = new File(testPath);
-            File parentDir = testFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                log.debug("Creazione directory per test: {}", parentDir.getAbsolutePath());
-                boolean dirCreated = parentDir.mkdirs();
-                if (!dirCreated) {
-                    log.warn("Impossibile creare directory per test: {}", parentDir.getAbsolutePath());
+            // Le scritture si applicano sulla EDT, anche dopo un dialog modale: non le attendiamo bloccando
+            return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).handle((ignored, error) -> {
+                if (error != null) {
+                    log.error("Errore durante la scrittura del file di test", error);
+                    return List.of();
                 }
-            }
-
-            // Scrivi il contenuto nel file
-            log.debug("Scrittura contenuto in: {}", testPath);
-            Files.writeString(Paths.get(testPath), testCode);
-            log.info("File di test scritto con successo: {}", testPath);
-
-            // Aggiorna il filesystem di IntelliJ
-            VirtualFile testVirtualFile = LocalFileSystem.getInstance().refreshAndFindFileByPath(testPath);
-            if (testVirtualFile != null) {
-                log.debug("File virtuale trovato nel filesystem di IntelliJ: {}", testVirtualFile.getPath());
-            } else {
-                log.warn("File virtuale non trovato, potrebbe essere necessario un refresh manuale");
-            }
-
-            return new TestFileInfo(testClassName, testPath);
+                List<TestFileInfo> testFiles = new ArrayList<>();
+                for (int i = 0; i < sources.size(); i++) {
+                    VirtualFile testVirtualFile = writes.get(i).join();
+                    log.info("File di test scritto con successo: {}", testVirtualFile.getPath());
+                    testFiles.add(new TestFileInfo(sources.get(i).className(), testVirtualFile.getPath()));
+                }
+                return testFiles;
+            });
 
         } catch (Exception e) {
             log.error("Errore durante la creazione del file di test", e);
             log.error(e.getMessage());
-            return null;
+            return CompletableFuture.completedFuture(List.of());
         }
     }
 
     /**
      * Apre il file di test nell'editor
      */
-    void openTestFile(Project project, String filePath) {
+    static void openTestFile(Project project, String filePath) {
         log.debug("Tentativo di apertura file: {}", filePath);
         ApplicationManager.getApplication().invokeLater(() -> {
-            VirtualFile testFile = LocalFileSystem.getInstance().refreshAndFindFileByPath(filePath);
+            // Il file è stato scritto attraverso il VFS, non serve un refresh
+            VirtualFile testFile = LocalFileSystem.getInstance().findFileByPath(filePath);
             if (testFile != null) {
                 log.info("Apertura file nell'editor: {}", testFile.getPath());
                 FileEditorManager.getInstance(project).openFile(testFile, true);
@@ -666,23 +526,4 @@ public class JUnitGeneratorAction extends AnAction {
             return "";
         }
     }
-
-    /**
-     * Inizializza il modello di chat
-     */
-    private void initChatModel() {
-        String apiKey = "";
-        log.debug("Inizializzazione modello di chat");
-        try {
-            this.model = OpenAiChatModel.builder()
-                    .apiKey(apiKey)
-                    .logResponses(true)
-                    .modelName("gpt-4o")
-                    .maxRetries(2)
-                    .build();
-            log.info("Modello di chat inizializzato con successo");
-        } catch (Exception e) {
-            log.error("Errore durante l'inizializzazione del modello di chat", e);
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package action;
+
+import ai.PipelineBenchmark;
+import ai.ProgressEvent;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ui.InfoWindowPanel.StatusType;
+import ui.PanelUpdateBus;
+
+import javax.swing.*;
+
+/**
+ * Azione interna che lancia il test di carico della pipeline con un modello sintetico e riporta nel
+ * pannello info throughput, latenze, heap e thread per ogni livello di concorrenza.
+ */
+public class PipelineBenchmarkAction extends AnAction {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineBenchmarkAction.class);
+
+    private static final String SUMMARY_ID = "pipeline_benchmark_summary";
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            log.error("Progetto non trovato nell'AnActionEvent");
+            return;
+        }
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow("JUnitGenerator");
+        if (toolWindow == null) {
+            log.error("ToolWindow 'JUnitGenerator' non trovata");
+            return;
+        }
+
+        ConfigDialog dialog = new ConfigDialog(project);
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        PipelineBenchmark.Config config = dialog.config();
+
+        toolWindow.show(() -> {
+            PanelUpdateBus.RunUpdates ui = InfoPanels.obtain(toolWindow).startRun("Pipeline benchmark");
+            ui.addItem(SUMMARY_ID, StatusType.LOADING, "Running pipeline benchmark...",
+                    String.format("%d classes per level, %d ms latency, %d tokens/s, up to %d concurrent classes%s",
+                            config.classes(), config.latencyMillis(), config.tokensPerSecond(),
+                            config.maxConcurrency(), config.viaScheduler() ? ", through the request scheduler" : ""),
+                    true);
+            ProgressManager.getInstance().run(new Task.Backgroundable(project, "Pipeline benchmark", true) {
+                @Override
+                public void run(@NotNull ProgressIndicator indicator) {
+                    new PipelineBenchmark(project, config, panelUpdates(ui)).run(indicator, result -> ui.addItem(
+                            "pipeline_benchmark_" + result.concurrency(),
+                            result.failed() == 0 ? StatusType.SUCCESS : StatusType.WARNING,
+                            result.summary(),
+                            String.format("%d classes in %d ms", result.completed(), result.wallMillis()),
+                            false));
+                }
+
+                @Override
+                public void onSuccess() {
+                    ui.update(SUMMARY_ID, StatusType.SUCCESS, "Pipeline benchmark completed");
+                }
+
+                @Override
+                public void onCancel() {
+                    ui.update(SUMMARY_ID, StatusType.WARNING, "Pipeline benchmark cancelled");
+                }
+
+                @Override
+                public void onThrowable(@NotNull Throwable error) {
+                    log.error("Benchmark della pipeline fallito", error);
+                    ui.update(SUMMARY_ID, StatusType.ERROR, "Pipeline benchmark failed: " + error.getMessage());
+                }
+            });
+        });
+    }
+
+    /**
+     * Aggiornamenti delle classi sintetiche nel pannello, come quelli delle azioni reali: ogni classe ha la
+     * sua riga finché è in esecuzione, poi viene rimossa per non riempire il pannello
+     */
+    private static PipelineBenchmark.ClassUpdates panelUpdates(PanelUpdateBus.RunUpdates ui) {
+        return new PipelineBenchmark.ClassUpdates() {
+            @Override
+            public void started(String classId) {
+                ui.addItem(classId, StatusType.LOADING, classId, "Synthetic class", false);
+            }
+
+            @Override
+            public void event(String classId, ProgressEvent event) {
+                if (event instanceof ProgressEvent.NodeReached reached) {
+                    ui.setText(classId, classId + " - " + reached.node().replace('_', ' '));
+                }
+            }
+
+            @Override
+            public void finished(String classId, boolean failed) {
+                ui.removeItem(classId);
+            }
+        };
+    }
+
+    /**
+     * Parametri del benchmark
+     */
+    private static final class ConfigDialog extends DialogWrapper {
+
+        private final JBIntSpinner classes = new JBIntSpinner(32, 1, 10_000);
+        private final JBIntSpinner methodsPerClass = new JBIntSpinner(5, 1, 200);
+        private final JBIntSpinner latencyMillis = new JBIntSpinner(500, 0, 60_000, 50);
+        private final JBIntSpinner tokensPerSecond = new JBIntSpinner(80, 1, 100_000, 10);
+        private final JBIntSpinner maxConcurrency = new JBIntSpinner(64, 1, 256);
+        private final JBCheckBox viaScheduler = new JBCheckBox("Route model requests through the request scheduler", true);
+
+        ConfigDialog(Project project) {
+            super(project);
+            setTitle("Pipeline Benchmark");
+            init();
+        }
+
+        @Override
+        protected @Nullable JComponent createCenterPanel() {
+            return FormBuilder.createFormBuilder()
+                    .addLabeledComponent("Synthetic classes per level:", classes)
+                    .addLabeledComponent("Methods per class:", methodsPerClass)
+                    .addLabeledComponent("Simulated latency (ms):", latencyMillis)
+                    .addLabeledComponent("Simulated tokens per second:", tokensPerSecond)
+                    .addLabeledComponent("Max concurrency (levels 1, 2, 4, ... up to this):", maxConcurrency)
+                    .addComponent(viaScheduler)
+                    .getPanel();
+        }
+
+        PipelineBenchmark.Config config() {
+            return new PipelineBenchmark.Config(classes.getNumber(), methodsPerClass.getNumber(),
+                    latencyMillis.getNumber(), tokensPerSecond.getNumber(), maxConcurrency.getNumber(),
+                    viaScheduler.isSelected());
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package ai;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.StateGraph;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+import org.bsc.langgraph4j.checkpoint.MemorySaver;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Checkpoint saver persistente su disco, condiviso da tutte le esecuzioni del grafo di un progetto.
+ * <p>
+ * I checkpoint restano in memoria come in {@link MemorySaver}, ma ogni modifica viene anche accodata a un
+ * log append-only serializzato con {@link StateSerializer}. All'apertura del progetto il log viene
+ * rigiocato, così un'esecuzione interrotta (crash o riavvio dell'IDE) può riprendere dall'ultimo nodo
+ * completato invece di ripetere le fasi LLM già concluse. Il log viene compattato, all'apertura e durante
+ * la sessione, quando contiene molti record non più validi.
+ * <p>
+ * Di un thread concluso si conserva solo il risultato (vedi {@link #retainResult}), e solo per gli ultimi
+ * {@value #MAX_RETAINED_RESULTS} thread conclusi: i più vecchi vengono rimossi, in memoria e nel log.
+ * Memoria e dimensione del log non crescono quindi con il numero di classi generate.
+ */
+public class FileCheckpointSaver extends MemorySaver implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileCheckpointSaver.class);
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_CLEAR = 2;
+
+    // Soglia oltre la quale il log viene riscritto con i soli checkpoint ancora validi, se i record non più
+    // validi sono la maggioranza
+    static final int COMPACTION_MIN_RECORDS = 256;
+
+    // Risultati conservati al massimo: un thread concluso serve solo finché l'azione o il pre-generatore
+    // non ne ha letto il risultato
+    static final int MAX_RETAINED_RESULTS = 32;
+
+    private static final String DEFAULT_THREAD_ID = "$default";
+
+    private final StateSerializer serializer = new StateSerializer();
+    private final Path logFile;
+    private final Object writeLock = new Object();
+    private DataOutputStream out;
+
+    // Record nel log e quanti di questi non sono più validi; protetti da writeLock
+    private int records;
+    private int deadRecords;
+
+    // Thread con checkpoint in memoria, nell'ordine dell'ultima scrittura; protetto da writeLock
+    private final LinkedHashSet<String> liveThreads = new LinkedHashSet<>();
+
+    // Thread conclusi con il solo risultato, dal meno recente; protetto dal proprio lock
+    private final LinkedHashSet<String> completedThreads = new LinkedHashSet<>();
+
+    // Record finale del log incompleto, trovato dal replay
+    private boolean truncated;
+
+    public FileCheckpointSaver(@NotNull Project project) {
+        this(PathManager.getSystemDir()
+                .resolve("junit-generator")
+                .resolve("checkpoints")
+                .resolve(project.getLocationHash() + ".log"));
+    }
+
+    FileCheckpointSaver(@NotNull Path logFile) {
+        this.logFile = logFile;
+        try {
+            Files.createDirectories(logFile.getParent());
+            replay();
+            // Un record troncato va eliminato prima di accodarne di nuovi
+            if (truncated || needsCompaction()) {
+                compact();
+            }
+            out = openForAppend();
+        } catch (IOException e) {
+            log.error("Impossibile aprire il log dei checkpoint {}, i checkpoint resteranno solo in memoria", logFile, e);
+        }
+    }
+
+    public static FileCheckpointSaver getInstance(@NotNull Project project) {
+        return project.getService(FileCheckpointSaver.class);
+    }
+
+    @Override
+    public RunnableConfig put(RunnableConfig config, Checkpoint checkpoint) throws Exception {
+        RunnableConfig result = super.put(config, checkpoint);
+        String threadId = config.threadId().orElse(DEFAULT_THREAD_ID);
+        append(RECORD_PUT, threadId, checkpoint, 0);
+        return result;
+    }
+
+    @Override
+    public boolean clear(RunnableConfig config) {
+        // I record dei checkpoint rimossi, e quello della rimozione stessa, non servono più al replay
+        int removed = list(config).size();
+        boolean cleared = super.clear(config);
+        String threadId = config.threadId().orElse(DEFAULT_THREAD_ID);
+        synchronized (completedThreads) {
+            completedThreads.remove(threadId);
+        }
+        try {
+            append(RECORD_CLEAR, threadId, null, removed + 1);
+        } catch (IOException e) {
+            log.warn("Impossibile registrare la rimozione dei checkpoint per il thread {}", threadId, e);
+        }
+        compactIfNeeded();
+        return cleared;
+    }
+
+    /**
+     * Sostituisce tutti i checkpoint di un thread con l'ultimo, ridotto alle sole chiavi indicate.
+     * Va chiamato quando il grafo è arrivato in fondo: il checkpoint rimasto basta a restituire il risultato
+     * senza rieseguire il grafo, mentre i passi intermedi e gli input non servono più. Oltre
+     * {@value #MAX_RETAINED_RESULTS} thread conclusi, quelli conclusi da più tempo vengono rimossi.
+     *
+     * @param keys Chiavi dello stato da conservare
+     */
+    public void retainResult(RunnableConfig config, String... keys) {
+        Optional<Checkpoint> last = get(config);
+        if (last.isEmpty()) {
+            return;
+        }
+        Map<String, Object> retained = new HashMap<>();
+        for (String key : keys) {
+            Object value = last.get().getState().get(key);
+            if (value != null) {
+                retained.put(key, value);
+            }
+        }
+        Checkpoint result = Checkpoint.builder()
+                .id(last.get().getId())
+                .nodeId(last.get().getNodeId())
+                .nextNodeId(last.get().getNextNodeId())
+                .state(retained)
+                .build();
+
+        String threadId = config.threadId().orElse(DEFAULT_THREAD_ID);
+        clear(config);
+        try {
+            put(config, result);
+        } catch (Exception e) {
+            log.warn("Impossibile salvare il risultato del thread {}", threadId, e);
+            return;
+        }
+        for (String evicted : markCompleted(threadId)) {
+            log.debug("Rimozione del risultato del thread concluso {}", evicted);
+            clear(RunnableConfig.builder().threadId(evicted).build());
+        }
+    }
+
+    /**
+     * Registra un thread come il concluso più di recente
+     *
+     * @return I thread conclusi da più tempo oltre il limite, da rimuovere
+     */
+    private List<String> markCompleted(String threadId) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (completedThreads) {
+            completedThreads.remove(threadId);
+            completedThreads.add(threadId);
+            Iterator<String> oldest = completedThreads.iterator();
+            while (completedThreads.size() > MAX_RETAINED_RESULTS) {
+                evicted.add(oldest.next());
+                oldest.remove();
+            }
+        }
+        return evicted;
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (writeLock) {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    log.warn("Errore durante la chiusura del log dei checkpoint", e);
+                }
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * @param dead Record del log che questo rende non più validi
+     */
+    private void append(byte type, String threadId, Checkpoint checkpoint, int dead) throws IOException {
+        byte[] record = encode(type, threadId, checkpoint);
+        synchronized (writeLock) {
+            liveThreads.remove(threadId);
+            if (type == RECORD_PUT) {
+                liveThreads.add(threadId);
+            }
+            if (out == null) {
+                return;
+            }
+            out.writeInt(record.length);
+            out.write(record);
+            out.flush();
+            records++;
+            deadRecords += dead;
+        }
+    }
+
+    private boolean needsCompaction() {
+        return records > COMPACTION_MIN_RECORDS && deadRecords > records - deadRecords;
+    }
+
+    /**
+     * Compatta il log durante la sessione quando i record non più validi superano la soglia, così il log
+     * non cresce con il numero di esecuzioni prima della prossima apertura del progetto
+     */
+    private void compactIfNeeded() {
+        synchronized (writeLock) {
+            if (out == null || !needsCompaction()) {
+                return;
+            }
+            try {
+                out.close();
+                compact();
+            } catch (IOException e) {
+                log.warn("Compattazione del log dei checkpoint {} fallita", logFile, e);
+            }
+            try {
+                out = openForAppend();
+            } catch (IOException e) {
+                log.error("Impossibile riaprire il log dei checkpoint {}, i checkpoint resteranno solo in memoria", logFile, e);
+                out = null;
+            }
+        }
+    }
+
+    private byte[] encode(byte type, String threadId, Checkpoint checkpoint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeByte(type);
+            oos.writeUTF(threadId);
+            if (checkpoint != null) {
+                oos.writeUTF(checkpoint.getId());
+                writeNullableString(oos, checkpoint.getNodeId());
+                writeNullableString(oos, checkpoint.getNextNodeId());
+                serializer.write(new State(checkpoint.getState()), oos);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rigioca il log ricostruendo i checkpoint in memoria
+     */
+    private void replay() throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+
+        // Per ogni thread, i checkpoint in ordine cronologico indicizzati per id
+        Map<String, LinkedHashMap<String, Checkpoint>> threads = new LinkedHashMap<>();
+        int records = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    // Record troncato da un crash durante la scrittura: lo ignoriamo
+                    log.warn("Record finale del log dei checkpoint incompleto, verrà scartato");
+                    truncated = true;
+                    break;
+                }
+                records++;
+
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+                    byte type = ois.readByte();
+                    String threadId = ois.readUTF();
+                    if (type == RECORD_CLEAR) {
+                        threads.remove(threadId);
+                        continue;
+                    }
+                    Checkpoint checkpoint = Checkpoint.builder()
+                            .id(ois.readUTF())
+                            .nodeId(readNullableString(ois))
+                            .nextNodeId(readNullableString(ois))
+                            .state(serializer.read(ois).data())
+                            .build();
+                    // Un thread riscritto si sposta in fondo: l'ordine di threads è quello dell'ultima scrittura
+                    LinkedHashMap<String, Checkpoint> checkpoints = threads.remove(threadId);
+                    if (checkpoints == null) {
+                        checkpoints = new LinkedHashMap<>();
+                    }
+                    checkpoints.put(checkpoint.getId(), checkpoint);
+                    threads.put(threadId, checkpoints);
+                } catch (ClassNotFoundException | IOException e) {
+                    log.warn("Record del log dei checkpoint non leggibile, verrà scartato: {}", e.getMessage());
+                }
+            }
+        }
+
+        // Dei thread conclusi si ripristinano solo i più recenti, gli altri spariscono alla compattazione
+        List<String> completed = new ArrayList<>();
+        for (Map.Entry<String, LinkedHashMap<String, Checkpoint>> thread : threads.entrySet()) {
+            Checkpoint last = null;
+            for (Checkpoint checkpoint : thread.getValue().values()) {
+                last = checkpoint;
+            }
+            if (last != null && StateGraph.END.equals(last.getNextNodeId())) {
+                completed.add(thread.getKey());
+            }
+        }
+        for (String threadId : completed.subList(0, Math.max(0, completed.size() - MAX_RETAINED_RESULTS))) {
+            threads.remove(threadId);
+        }
+        synchronized (completedThreads) {
+            for (String threadId : completed) {
+                if (threads.containsKey(threadId)) {
+                    completedThreads.add(threadId);
+                }
+            }
+        }
+
+        int restored = 0;
+        for (Map.Entry<String, LinkedHashMap<String, Checkpoint>> thread : threads.entrySet()) {
+            RunnableConfig config = RunnableConfig.builder().threadId(thread.getKey()).build();
+            for (Checkpoint checkpoint : thread.getValue().values()) {
+                try {
+                    super.put(config, checkpoint);
+                    restored++;
+                } catch (Exception e) {
+                    log.warn("Impossibile ripristinare il checkpoint {} del thread {}", checkpoint.getId(), thread.getKey(), e);
+                }
+            }
+        }
+        log.info("Log dei checkpoint {} rigiocato: {} record, {} checkpoint ripristinati per {} thread",
+                logFile, records, restored, threads.size());
+        synchronized (writeLock) {
+            liveThreads.addAll(threads.keySet());
+            this.records = records;
+            this.deadRecords = records - restored;
+        }
+    }
+
+    /**
+     * Riscrive il log con i soli checkpoint ancora presenti in memoria. Durante la sessione va chiamato
+     * tenendo writeLock, con il log chiuso.
+     */
+    private void compact() throws IOException {
+        Path tmp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        int written = 0;
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            for (String threadId : liveThreads) {
+                RunnableConfig config = RunnableConfig.builder().threadId(threadId).build();
+                List<Checkpoint> checkpoints = new ArrayList<>(list(config));
+                // list() restituisce i checkpoint dal più recente: li riscriviamo in ordine cronologico
+                Collections.reverse(checkpoints);
+                for (Checkpoint checkpoint : checkpoints) {
+                    byte[] record = encode(RECORD_PUT, threadId, checkpoint);
+                    compacted.writeInt(record.length);
+                    compacted.write(record);
+                    written++;
+                }
+            }
+        }
+        Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Log dei checkpoint compattato: {}, {} record su {}", logFile, written, records);
+        records = written;
+        deadRecords = 0;
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)));
+    }
+
+    private static void writeNullableString(ObjectOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Calcola un thread id stabile per un file: stesso percorso e stesso contenuto danno lo stesso id,
+     * quindi una nuova esecuzione sullo stesso file riprende dai checkpoint esistenti.
+     */
+    public static String threadIdFor(String filePath, String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            return filePath + "@" + HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
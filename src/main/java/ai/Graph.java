@@ -1,24 +1,31 @@
 package ai;
 
+import ai.agents.CandidateReport;
 import ai.agents.ContextAnalizerAgent;
 import ai.agents.DependencyAgent;
 import ai.agents.JunitGeneratorAgent;
+import ai.agents.TemplateTestGenerator;
+import ai.tools.DependencySearchTool;
 import com.intellij.openapi.project.Project;
-import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.ChatMessage;
-import dev.langchain4j.data.message.UserMessage;
+import com.intellij.openapi.vfs.VirtualFile;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.bsc.async.AsyncGenerator;
 import org.bsc.langgraph4j.*;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
-import org.bsc.langgraph4j.checkpoint.MemorySaver;
+import org.bsc.langgraph4j.action.NodeAction;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import settings.JUnitGeneratorSettings;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 import static org.bsc.langgraph4j.StateGraph.END;
@@ -28,56 +35,144 @@ public class Graph {
 
     Logger log = LoggerFactory.getLogger(Graph.class);
 
+    // Chiavi fornite nello stato iniziale e chiavi lette al termine dell'esecuzione
+    private static final Set<String> INPUT_KEYS = Set.of(State.CODE, State.PROJECT_DEPENDENCIES, State.EXISTING_TESTS,
+            State.TARGET_METHODS);
+    private static final Set<String> OUTPUT_KEYS = Set.of(State.GENERATED_TESTS);
+
+    // Prefisso del risultato di un'esecuzione fallita, seguito dal messaggio dell'errore
+    public static final String ERROR_PREFIX = "Errore";
+
+    // Risultato di un'esecuzione arrivata in fondo senza test generati
+    private static final String NO_TESTS_RESULT = "Nessun test JUnit generato";
+
+    // Esecuzioni in corso per chiave (thread id e opzioni di generazione), condivise da tutto l'IDE
+    private static final SingleFlight<String, String> GENERATIONS = new SingleFlight<>("generation");
+
+    // Grafi in attesa di ciascuna esecuzione in corso: ricevono tutti gli eventi dell'esecuzione condivisa
+    private static final ConcurrentHashMap<String, List<Graph>> WAITERS = new ConcurrentHashMap<>();
+
+    // Ultimo nodo raggiunto da ciascuna esecuzione in corso, inviato a chi si aggancia quando è già partita
+    private static final ConcurrentHashMap<String, ProgressEvent> LAST_NODE = new ConcurrentHashMap<>();
+
     private final CompiledGraph<State> compiledGraph;
 
-    // Lista di listener per monitorare il progresso del grafo
-    private final List<Consumer<String>> progressListeners = new ArrayList<>();
+    // Checkpoint persistenti del progetto, permettono di riprendere un'esecuzione interrotta
+    private final FileCheckpointSaver checkpointSaver;
+
+    // Riepilogo delle dipendenze del progetto, parte del prefisso statico dei prompt
+    private final String projectDependencies;
 
-    // Lista di listener per gli errori
-    private final List<Consumer<GraphError>> errorListeners = new ArrayList<>();
+    private final JunitGeneratorAgent junitGenerator;
+    private final Project project;
+    private final PipelineExecutor executor;
+    private final JUnitGeneratorSettings.Options options;
+
+    // Listener del flusso di eventi di avanzamento; le notifiche arrivano dai thread della pipeline
+    private final List<Consumer<ProgressEvent>> eventListeners = new CopyOnWriteArrayList<>();
+
+    // Chiave dell'esecuzione che questo grafo sta eseguendo per sé e per gli eventuali grafi in attesa
+    private volatile String runningKey;
 
     public Graph(ChatLanguageModel model, Project project) throws GraphStateException {
-        var memory = new MemorySaver();
+        this(model, project, (VirtualFile) null);
+    }
+
+    public Graph(ChatLanguageModel model, Project project, JUnitGeneratorSettings.Options options) throws GraphStateException {
+        this(model, project, options, null);
+    }
+
+    /**
+     * @param sourceFile File sotto test: le dipendenze sono quelle del suo modulo Maven; null per il modulo radice
+     */
+    public Graph(ChatLanguageModel model, Project project, VirtualFile sourceFile) throws GraphStateException {
+        this(model, project, JUnitGeneratorSettings.getInstance().getState().copy(), sourceFile);
+    }
+
+    public Graph(ChatLanguageModel model, Project project, JUnitGeneratorSettings.Options options,
+                 VirtualFile sourceFile) throws GraphStateException {
+        this.options = options;
+        this.project = project;
+        this.executor = PipelineExecutor.getInstance();
+        checkpointSaver = FileCheckpointSaver.getInstance(project);
         try {
+            DependencySearchTool dependencySearchTool = new DependencySearchTool(project, sourceFile);
+            projectDependencies = dependencySearchTool.projectDependencySummary();
+
             ContextAnalizerAgent contextAnalyzer = new ContextAnalizerAgent(model, project);
-            JunitGeneratorAgent junitGenerator = new JunitGeneratorAgent(model);
-            DependencyAgent dependencyAgent = new DependencyAgent(model, project);
+            junitGenerator = new JunitGeneratorAgent(model, project, options, executor.nestedExecutor());
+            junitGenerator.setCandidateListener(reports -> publish(new ProgressEvent.CandidatesEvaluated(reports)));
+            junitGenerator.setProblemListener(problems -> publish(new ProgressEvent.CodeProblems(problems)));
+            DependencyAgent dependencyAgent = new DependencyAgent(model, dependencySearchTool);
 
             // Creiamo un flusso lineare: dependency_checker -> context_analyzer -> junit_generator -> END
+            List<NodeContract> flow = List.of(DependencyAgent.CONTRACT, ContextAnalizerAgent.CONTRACT, JunitGeneratorAgent.CONTRACT);
+
+            // Verifichiamo che ogni output prodotto venga effettivamente usato prima di compilare il grafo
+            State.validateFlow(flow, INPUT_KEYS, OUTPUT_KEYS);
+
             StateGraph<State> workflow = new StateGraph<>(State.SCHEMA, new StateSerializer())
-                    .addNode("dependency_checker", AsyncNodeAction.node_async(dependencyAgent))
-                    .addNode("context_analyzer", AsyncNodeAction.node_async(contextAnalyzer))
-                    .addNode("junit_generator", AsyncNodeAction.node_async(junitGenerator))
-                    .addEdge(START, "dependency_checker")
-                    .addEdge("dependency_checker", "context_analyzer")
-                    .addEdge("context_analyzer", "junit_generator")
-                    .addEdge("junit_generator", END);
+                    .addNode(DependencyAgent.CONTRACT.node(), node(DependencyAgent.CONTRACT, dependencyAgent))
+                    .addNode(ContextAnalizerAgent.CONTRACT.node(), node(ContextAnalizerAgent.CONTRACT, contextAnalyzer))
+                    .addNode(JunitGeneratorAgent.CONTRACT.node(), node(JunitGeneratorAgent.CONTRACT, junitGenerator))
+                    .addEdge(START, DependencyAgent.CONTRACT.node())
+                    .addEdge(DependencyAgent.CONTRACT.node(), ContextAnalizerAgent.CONTRACT.node())
+                    .addEdge(ContextAnalizerAgent.CONTRACT.node(), JunitGeneratorAgent.CONTRACT.node())
+                    .addEdge(JunitGeneratorAgent.CONTRACT.node(), END);
 
             var compileConfig = CompileConfig.builder()
-                    .checkpointSaver(memory)
+                    .checkpointSaver(checkpointSaver)
                     .build();
 
             compiledGraph = workflow.compile(compileConfig);
         } catch (Exception e) {
             log.error("Errore durante l'inizializzazione del grafo", e);
-            notifyErrorListeners(new GraphError("initialization", "Errore durante l'inizializzazione del grafo: " + e.getMessage(), e));
+            publish(new ProgressEvent.Failed(new GraphError("initialization", "Errore durante l'inizializzazione del grafo: " + e.getMessage(), e)));
             throw e;
         }
     }
 
+    /**
+     * Avvolge un nodo verificando a ogni esecuzione che il suo output rispetti il contratto dichiarato.
+     * Il nodo gira sul thread che esegue il grafo: accodarlo sull'executor della pipeline, mentre quel
+     * thread lo attende, potrebbe esaurire il pool limitato usato senza virtual thread.
+     */
+    private AsyncNodeAction<State> node(NodeContract contract, NodeAction<State> action) {
+        return state -> {
+            try {
+                return CompletableFuture.completedFuture(contract.checkOutput(action.apply(state)));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        };
+    }
+
     /**
      * Classe per rappresentare un errore del grafo
      */
     public record GraphError(String phase, String message, Exception exception) {
     }
 
+    /**
+     * Aggiunge un listener per tutti gli eventi di avanzamento del grafo
+     *
+     * @param listener Consumer che riceverà gli eventi nell'ordine in cui vengono pubblicati
+     */
+    public void addEventListener(Consumer<ProgressEvent> listener) {
+        eventListeners.add(listener);
+    }
+
     /**
      * Aggiunge un listener per monitorare il progresso dell'esecuzione del grafo
      *
      * @param listener Consumer che riceverà il nome del nodo corrente
      */
     public void addGraphProgressListener(Consumer<String> listener) {
-        progressListeners.add(listener);
+        addEventListener(event -> {
+            if (event instanceof ProgressEvent.NodeReached reached) {
+                listener.accept(reached.node());
+            }
+        });
     }
 
     /**
@@ -86,97 +181,288 @@ public class Graph {
      * @param listener Consumer che riceverà l'errore
      */
     public void addErrorListener(Consumer<GraphError> listener) {
-        errorListeners.add(listener);
+        addEventListener(event -> {
+            if (event instanceof ProgressEvent.Failed failed) {
+                listener.accept(failed.error());
+            }
+        });
     }
 
     /**
-     * Notifica tutti i listener del progresso
+     * Aggiunge un listener per l'esito dei candidati generati in modalità multi-candidato
      *
-     * @param nodeName Nome del nodo corrente
+     * @param listener Consumer che riceverà tempi e punteggi di tutti i candidati
      */
-    private void notifyProgressListeners(String nodeName) {
-        for (Consumer<String> listener : progressListeners) {
-            try {
-                listener.accept(nodeName);
-            } catch (Exception e) {
-                log.error("Errore durante la notifica del listener di progresso: {}", e.getMessage());
+    public void addCandidateListener(Consumer<List<CandidateReport>> listener) {
+        addEventListener(event -> {
+            if (event instanceof ProgressEvent.CandidatesEvaluated evaluated) {
+                listener.accept(evaluated.reports());
             }
-        }
+        });
     }
 
     /**
-     * Notifica tutti i listener degli errori
+     * Pubblica un evento ai listener di questo grafo e, durante un'esecuzione condivisa, a quelli di tutti
+     * i grafi che ne attendono il risultato
      *
-     * @param error Errore da notificare
+     * @param event Evento da pubblicare
+     */
+    private void publish(ProgressEvent event) {
+        String key = runningKey;
+        List<Graph> waiters = key != null ? WAITERS.get(key) : null;
+        if (waiters == null) {
+            notifyListeners(event);
+            return;
+        }
+        if (event instanceof ProgressEvent.NodeReached) {
+            LAST_NODE.put(key, event);
+        }
+        for (Graph waiter : waiters) {
+            waiter.notifyListeners(event);
+        }
+    }
+
+    /**
+     * Notifica un evento ai listener di questo grafo; un listener che fallisce non blocca gli altri
      */
-    private void notifyErrorListeners(GraphError error) {
-        for (Consumer<GraphError> listener : errorListeners) {
+    private void notifyListeners(ProgressEvent event) {
+        for (Consumer<ProgressEvent> listener : eventListeners) {
             try {
-                listener.accept(error);
+                listener.accept(event);
             } catch (Exception e) {
-                log.error("Errore durante la notifica del listener di errore: {}", e.getMessage());
+                log.error("Errore durante la notifica dell'evento {}: {}", event.getClass().getSimpleName(), e.getMessage());
             }
         }
     }
 
     public String execute(String message) {
+        return execute(UUID.randomUUID().toString(), message);
+    }
+
+    /**
+     * Verifica se il risultato di {@link #execute} segnala un fallimento invece di contenere dei test
+     */
+    public static boolean isFailure(String result) {
+        return result == null || result.isEmpty() || result.startsWith(ERROR_PREFIX) || result.equals(NO_TESTS_RESULT);
+    }
+
+    /**
+     * Esegue il grafo usando un thread id stabile (vedi {@link FileCheckpointSaver#threadIdFor}).
+     * Se per il thread esiste già un checkpoint l'esecuzione riprende dall'ultimo nodo completato,
+     * e se il grafo era già arrivato in fondo (ad esempio con una pre-generazione, vedi {@link #prepare})
+     * il risultato viene restituito senza nuove chiamate al modello.
+     * Il risultato restituito viene consumato: i checkpoint del thread vengono eliminati, quindi una nuova
+     * chiamata sullo stesso contenuto genera di nuovo i test. Le chiamate concorrenti con lo stesso thread id
+     * e le stesse opzioni di generazione condividono un'unica esecuzione, di cui tutti i grafi in attesa
+     * ricevono gli eventi. Un grafo esegue una generazione alla volta.
+     *
+     * @param threadId Identificativo del thread dei checkpoint
+     * @param message  Codice della classe da testare
+     * @return Codice dei test generati o un messaggio di errore, riconoscibile con {@link #isFailure}
+     */
+    public String execute(String threadId, String message) {
+        return execute(threadId, message, "");
+    }
+
+    /**
+     * Come {@link #execute(String, String)}, passando al generatore i test già presenti per la classe
+     * così che generi solo i casi mancanti. Il thread id deve dipendere anche dai test esistenti.
+     *
+     * @param existingTests Contenuto del file di test esistente, vuoto se non c'è
+     */
+    public String execute(String threadId, String message, String existingTests) {
+        return execute(threadId, message, existingTests, "");
+    }
+
+    /**
+     * Come {@link #execute(String, String, String)}, limitando la generazione ai metodi indicati.
+     * Il thread id deve dipendere anche dall'elenco dei metodi.
+     *
+     * @param targetMethods Metodi da testare, uno per riga; vuoto per testare tutta la classe
+     */
+    public String execute(String threadId, String message, String existingTests, String targetMethods) {
+        String result = run(threadId, message, existingTests, targetMethods);
+        discardResult(runKey(threadId));
+        return result;
+    }
+
+    /**
+     * Genera i test senza consumarli: il risultato resta nei checkpoint del thread e viene restituito dalla
+     * prossima {@link #execute} con lo stesso thread id. Usato dalla pre-generazione in idle.
+     *
+     * @return Codice dei test generati o un messaggio di errore
+     */
+    public String prepare(String threadId, String message, String existingTests) {
+        return run(threadId, message, existingTests, "");
+    }
+
+    private String run(String threadId, String message, String existingTests, String targetMethods) {
+        // Record, enum e classi valore non hanno comportamento da analizzare: i test escono da un template
+        if (options.templateFastPath) {
+            Optional<String> template = TemplateTestGenerator.generate(project, message, projectDependencies);
+            if (template.isPresent()) {
+                log.info("Classe banale, test generati senza chiamate al modello");
+                publish(new ProgressEvent.NodeReached(JunitGeneratorAgent.CONTRACT.node()));
+                return template.get();
+            }
+        }
+
+        // Se lo stesso file con lo stesso contenuto è già in generazione, ci agganciamo a quella esecuzione
+        String key = runKey(threadId);
+        subscribe(key);
+        try {
+            return GENERATIONS.execute(key, () -> {
+                runningKey = key;
+                try {
+                    return doExecute(key, message, existingTests, targetMethods);
+                } finally {
+                    runningKey = null;
+                    LAST_NODE.remove(key);
+                }
+            });
+        } finally {
+            unsubscribe(key);
+        }
+    }
+
+    /**
+     * Elimina tutti i checkpoint di un thread, anche quelli di un'esecuzione interrotta
+     */
+    public void discard(String threadId) {
+        checkpointSaver.clear(RunnableConfig.builder().threadId(runKey(threadId)).build());
+    }
+
+    /**
+     * Chiave dell'esecuzione e del thread dei checkpoint: le opzioni che cambiano il risultato ne fanno parte,
+     * così generazioni con opzioni diverse non condividono né l'esecuzione né i checkpoint
+     */
+    private String runKey(String threadId) {
+        return threadId + "#" + options.generationKey();
+    }
+
+    private void subscribe(String key) {
+        WAITERS.compute(key, (k, waiters) -> {
+            List<Graph> list = waiters != null ? waiters : new CopyOnWriteArrayList<>();
+            list.add(this);
+            return list;
+        });
+        // Chi si aggancia a un'esecuzione già partita riceve subito il nodo in corso
+        ProgressEvent lastNode = LAST_NODE.get(key);
+        if (lastNode != null) {
+            notifyListeners(lastNode);
+        }
+    }
+
+    private void unsubscribe(String key) {
+        WAITERS.computeIfPresent(key, (k, waiters) -> {
+            waiters.remove(this);
+            return waiters.isEmpty() ? null : waiters;
+        });
+    }
+
+    /**
+     * Elimina il risultato di un thread arrivato in fondo. I checkpoint di un'esecuzione interrotta restano,
+     * così la prossima chiamata riprende dall'ultimo nodo completato.
+     */
+    private void discardResult(String threadId) {
+        RunnableConfig config = RunnableConfig.builder()
+                .threadId(threadId)
+                .build();
+        try {
+            Optional<Checkpoint> last = checkpointSaver.get(config);
+            if (last.isPresent() && END.equals(last.get().getNextNodeId())) {
+                checkpointSaver.clear(config);
+            }
+        } catch (Exception e) {
+            log.warn("Impossibile eliminare il risultato del thread '{}': {}", threadId, e.getMessage());
+        }
+    }
+
+    private String doExecute(String threadId, String message, String existingTests, String targetMethods) {
         log.info("Iniziando l'esecuzione del grafo con messaggio di lunghezza: {}", message.length());
 
         var runnableConfig = RunnableConfig.builder()
-                .threadId(UUID.randomUUID().toString())
+                .threadId(threadId)
                 .build();
 
         try {
-            // Inizializziamo lo stato con il codice dell'utente
-            Map<String, Object> initialState = Map.of("messages", UserMessage.from(message), "code", message);
+            Optional<Checkpoint> lastCheckpoint = checkpointSaver.get(runnableConfig);
+
+            AsyncGenerator<NodeOutput<State>> result;
+            if (lastCheckpoint.isPresent() && END.equals(lastCheckpoint.get().getNextNodeId())) {
+                log.info("Esecuzione già completata per il thread '{}', riutilizzo il risultato salvato", threadId);
+                publish(new ProgressEvent.NodeReached(JunitGeneratorAgent.CONTRACT.node()));
+                return extractGeneration(new State(lastCheckpoint.get().getState()).generatedTests().orElse(null));
+            } else if (lastCheckpoint.isPresent()) {
+                log.info("Ripresa dell'esecuzione del thread '{}' dal nodo '{}'", threadId, lastCheckpoint.get().getNextNodeId());
+                // Un input nullo fa ripartire il grafo dall'ultimo checkpoint salvato
+                result = compiledGraph.stream((Map<String, Object>) null, runnableConfig);
+            } else {
+                // Inizializziamo lo stato con il codice dell'utente
+                Map<String, Object> initialState = Map.of(
+                        State.CODE, message,
+                        State.PROJECT_DEPENDENCIES, projectDependencies,
+                        State.EXISTING_TESTS, existingTests,
+                        State.TARGET_METHODS, targetMethods);
 
-            AsyncGenerator<NodeOutput<State>> result = compiledGraph.stream(initialState, runnableConfig);
+                // In modalità speculativa il generatore parte subito, in parallelo alle analisi
+                if (options.speculativeGeneration) {
+                    junitGenerator.startDraft(message, projectDependencies, existingTests, targetMethods);
+                }
+
+                result = compiledGraph.stream(initialState, runnableConfig);
+            }
 
-            ChatMessage generation = null;
+            String generation = null;
             for (NodeOutput<State> r : result) {
                 String nodeName = r.node();
                 log.info("Esecuzione nodo: '{}'", nodeName);
 
                 // Notifica i listener del progresso
-                notifyProgressListeners(nodeName);
+                publish(new ProgressEvent.NodeReached(nodeName));
 
                 try {
                     // Per l'ultima iterazione (nodo junit_generator), otteniamo il risultato finale
-                    if (nodeName.equals("junit_generator")) {
-                        generation = r.state().lastMessage().orElseThrow();
+                    if (nodeName.equals(JunitGeneratorAgent.CONTRACT.node())) {
+                        generation = r.state().generatedTests().orElseThrow();
                     }
 
-                    log.info("Completato nodo '{}': {}", nodeName,
-                            r.state().lastMessage().isPresent() ? r.state().lastMessage().get().type() : "no message");
+                    log.info("Completato nodo '{}'", nodeName);
                 } catch (Exception e) {
                     log.error("Errore nel nodo '{}': {}", nodeName, e.getMessage());
-                    notifyErrorListeners(new GraphError(nodeName, "Errore nel nodo '" + nodeName + "': " + e.getMessage(), e));
+                    publish(new ProgressEvent.Failed(new GraphError(nodeName, "Errore nel nodo '" + nodeName + "': " + e.getMessage(), e)));
                     throw e;
                 }
             }
 
             log.info("Esecuzione del grafo completata");
 
-            if (generation == null) {
-                String errorMsg = "Nessun risultato generato dal grafo";
-                log.error(errorMsg);
-                notifyErrorListeners(new GraphError("execution", errorMsg, new IllegalStateException(errorMsg)));
-                return "Nessun test JUnit generato";
+            // Per riprendere o riusare il thread basta il risultato: codice, analisi e passi intermedi non servono più
+            if (generation != null) {
+                checkpointSaver.retainResult(runnableConfig, State.GENERATED_TESTS);
             }
 
-            return switch (generation.type()) {
-                case USER -> ((UserMessage) generation).singleText();
-                case AI -> ((AiMessage) generation).text();
-                default -> {
-                    String errorMsg = "Tipo di messaggio non previsto: " + generation.type();
-                    notifyErrorListeners(new GraphError("execution", errorMsg, new IllegalStateException(errorMsg)));
-                    yield "Errore: " + errorMsg;
-                }
-            };
+            return extractGeneration(generation);
         } catch (Exception e) {
             log.error("Errore durante l'esecuzione del grafo", e);
-            notifyErrorListeners(new GraphError("execution", "Errore durante l'esecuzione del grafo: " + e.getMessage(), e));
-            return "Errore durante la generazione dei test JUnit: " + e.getMessage();
+            publish(new ProgressEvent.Failed(new GraphError("execution", "Errore durante l'esecuzione del grafo: " + e.getMessage(), e)));
+            return ERROR_PREFIX + " durante la generazione dei test JUnit: " + e.getMessage();
+        } finally {
+            // Una bozza ancora in corso (nodo precedente fallito, generatore non raggiunto) non serve più
+            junitGenerator.cancelDraft(message);
+        }
+    }
+
+    /**
+     * Restituisce i test generati dal grafo, segnalando l'errore se mancano
+     */
+    private String extractGeneration(String generation) {
+        if (generation == null) {
+            String errorMsg = "Nessun risultato generato dal grafo";
+            log.error(errorMsg);
+            publish(new ProgressEvent.Failed(new GraphError("execution", errorMsg, new IllegalStateException(errorMsg))));
+            return NO_TESTS_RESULT;
         }
+        return generation;
     }
 }
\ No newline at end of file
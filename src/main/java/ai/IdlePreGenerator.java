@@ -0,0 +1,221 @@
+package ai;
+
+import ai.model.ChatModelFactory;
+import ai.model.LlmScheduler;
+import ai.tools.MavenModuleIndex;
+import com.intellij.ide.IdeEventQueue;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import files.TestRootResolver;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import settings.JUnitGeneratorSettings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Prepara in background la generazione dei test per le classi modificate dall'ultimo commit.
+ * <p>
+ * Quando l'IDE resta inattivo per {@link #IDLE_THRESHOLD_MILLIS} vengono lette dalle change list del VCS
+ * le classi Java modificate e, su un solo thread a bassa priorità, vengono eseguiti i passi deterministici:
+ * analisi del pom.xml (in cache finché il pom non cambia), risoluzione della test root del modulo e
+ * lettura dei test esistenti. Se l'opzione è attiva viene eseguito anche l'intero grafo, sulla corsia batch
+ * dello scheduler: il risultato resta nei checkpoint persistenti con lo stesso thread id usato dall'azione,
+ * quindi "Generate JUnit Tests" sulla stessa classe restituisce subito il test già generato (una sola volta:
+ * l'azione consuma il risultato, e una seconda richiesta lo rigenera).
+ * <p>
+ * Appena l'utente torna attivo non vengono avviate nuove classi; una generazione già in corso termina
+ * in corsia batch, dove le richieste interattive hanno comunque la precedenza.
+ */
+public class IdlePreGenerator implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(IdlePreGenerator.class);
+
+    // Inattività minima dell'utente prima di iniziare il lavoro in background
+    private static final long IDLE_THRESHOLD_MILLIS = 60_000;
+
+    // Intervallo di controllo dell'inattività
+    private static final long CHECK_INTERVAL_SECONDS = 30;
+
+    // Numero massimo di classi preparate per ogni periodo di inattività
+    private static final int MAX_FILES_PER_PASS = 5;
+
+    private final Project project;
+    private final ExecutorService worker = AppExecutorUtil.createBoundedApplicationPoolExecutor("JUnitGenerator Idle", 1);
+    private final AtomicBoolean passRunning = new AtomicBoolean();
+
+    // Chiavi (modalità + thread id) già preparate: un file viene ripreparato solo se cambia il suo contenuto
+    private final Set<String> prepared = ConcurrentHashMap.newKeySet();
+
+    private volatile ScheduledFuture<?> idleCheck;
+    private volatile boolean disposed;
+
+    public IdlePreGenerator(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static IdlePreGenerator getInstance(@NotNull Project project) {
+        return project.getService(IdlePreGenerator.class);
+    }
+
+    /**
+     * Avvia il controllo periodico dell'inattività. Chiamato all'apertura del progetto.
+     */
+    public void start() {
+        if (idleCheck != null || disposed) {
+            return;
+        }
+        idleCheck = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::checkIdle, CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        log.debug("Pre-generazione in idle attiva per il progetto {}", project.getName());
+    }
+
+    private void checkIdle() {
+        if (disposed || project.isDisposed() || DumbService.isDumb(project)) {
+            return;
+        }
+        JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState();
+        if (!options.idleWarmUp && !options.idlePreGeneration) {
+            return;
+        }
+        if (!isUserIdle() || !passRunning.compareAndSet(false, true)) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                runPass(options.copy());
+            } catch (Exception e) {
+                log.warn("Pre-generazione in idle interrotta: {}", e.getMessage(), e);
+            } finally {
+                passRunning.set(false);
+            }
+        });
+    }
+
+    private static boolean isUserIdle() {
+        return IdeEventQueue.getInstance().getIdleTime() >= IDLE_THRESHOLD_MILLIS;
+    }
+
+    private void runPass(JUnitGeneratorSettings.Options options) {
+        List<VirtualFile> files = changedSourceFiles();
+        if (files.isEmpty()) {
+            return;
+        }
+        log.debug("Pre-generazione in idle: {} classi modificate", files.size());
+
+        // L'indice dei moduli Maven resta in memoria e viene riusato dal grafo al prossimo avvio
+        MavenModuleIndex.getInstance(project).rootModule();
+
+        // Un modello per passata, con la modalità impostata in questo momento; il lavoro in background
+        // non deve mai rallentare le generazioni avviate dall'utente
+        ChatLanguageModel model = options.idlePreGeneration
+                ? ChatModelFactory.create(LlmScheduler.Lane.BATCH, List.of())
+                : null;
+
+        int processed = 0;
+        for (VirtualFile file : files) {
+            if (processed >= MAX_FILES_PER_PASS || disposed || !isUserIdle()) {
+                break;
+            }
+            if (prepare(file, options, model)) {
+                processed++;
+            }
+        }
+        if (processed > 0) {
+            log.info("Pre-generazione in idle: preparate {} classi", processed);
+        }
+    }
+
+    /**
+     * Prepara un file modificato
+     *
+     * @return true se il file è stato preparato, false se era già pronto o non leggibile
+     */
+    private boolean prepare(VirtualFile file, JUnitGeneratorSettings.Options options, ChatLanguageModel model) {
+        String content;
+        try {
+            content = new String(file.contentsToByteArray(), file.getCharset());
+        } catch (IOException e) {
+            log.debug("Impossibile leggere {}: {}", file.getPath(), e.getMessage());
+            return false;
+        }
+        if (content.isEmpty()) {
+            return false;
+        }
+
+        String packageName = ReadAction.compute(() -> file.getParent() != null
+                ? ProjectRootManager.getInstance(project).getFileIndex().getPackageNameByDirectory(file.getParent())
+                : null);
+
+        // Stessa chiave dell'azione: test root e test esistenti fanno parte del thread id in modalità merge
+        TestRootResolver resolver = TestRootResolver.getInstance(project);
+        String existingTests = options.mergeExistingTests ? resolver.readExistingTests(file, packageName) : "";
+        resolver.testDirectoryFor(file, packageName);
+        String threadId = FileCheckpointSaver.threadIdFor(file.getPath(), content + existingTests);
+
+        String key = (options.idlePreGeneration ? "graph:" : "warm:") + threadId;
+        if (!prepared.add(key)) {
+            return false;
+        }
+        if (!options.idlePreGeneration) {
+            return true;
+        }
+
+        try {
+            log.info("Pre-generazione in idle dei test per {}", file.getName());
+            new Graph(model, project, options, file).prepare(threadId, content, existingTests);
+            return true;
+        } catch (Exception e) {
+            // Al prossimo periodo di inattività il file viene ritentato, riprendendo dai checkpoint salvati
+            prepared.remove(key);
+            log.warn("Pre-generazione in idle fallita per {}: {}", file.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * File Java sorgenti (non di test) modificati rispetto all'ultimo commit, i più recenti per primi
+     */
+    private List<VirtualFile> changedSourceFiles() {
+        return ReadAction.compute(() -> {
+            ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+            List<VirtualFile> files = new ArrayList<>();
+            for (VirtualFile file : ChangeListManager.getInstance(project).getAffectedFiles()) {
+                if (file.isValid() && !file.isDirectory() && "java".equals(file.getExtension())
+                        && fileIndex.isInSourceContent(file) && !fileIndex.isInTestSourceContent(file)) {
+                    files.add(file);
+                }
+            }
+            files.sort(Comparator.comparingLong(VirtualFile::getTimeStamp).reversed());
+            return files;
+        });
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        if (idleCheck != null) {
+            idleCheck.cancel(false);
+        }
+        worker.shutdownNow();
+        prepared.clear();
+    }
+}
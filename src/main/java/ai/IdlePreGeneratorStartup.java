@@ -0,0 +1,16 @@
+package ai;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Avvia la pre-generazione in idle all'apertura del progetto
+ */
+public class IdlePreGeneratorStartup implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        IdlePreGenerator.getInstance(project).start();
+    }
+}
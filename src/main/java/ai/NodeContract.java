@@ -0,0 +1,30 @@
+package ai;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dichiarazione delle chiavi dello stato lette e scritte da un nodo del grafo.
+ * I contratti vengono verificati alla compilazione del grafo con {@link State#validateFlow}
+ * e, durante l'esecuzione, sull'output effettivo di ogni nodo.
+ *
+ * @param node   Nome del nodo nel grafo
+ * @param reads  Chiavi dello stato lette dal nodo
+ * @param writes Chiavi dello stato che il nodo può scrivere
+ */
+public record NodeContract(String node, Set<String> reads, Set<String> writes) {
+
+    /**
+     * Verifica che l'output di un nodo rispetti il contratto
+     *
+     * @throws IllegalStateException se il nodo scrive chiavi non dichiarate
+     */
+    public Map<String, Object> checkOutput(Map<String, Object> output) {
+        for (String key : output.keySet()) {
+            if (!writes.contains(key)) {
+                throw new IllegalStateException(String.format("Il nodo '%s' ha scritto la chiave non dichiarata '%s'", node, key));
+            }
+        }
+        return output;
+    }
+}
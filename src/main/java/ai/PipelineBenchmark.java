@@ -0,0 +1,267 @@
+package ai;
+
+import ai.model.LlmScheduler;
+import ai.model.StubChatModel;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import settings.JUnitGeneratorSettings;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Test di carico della pipeline: esegue N classi sintetiche attraverso {@link Graph} a livelli di
+ * concorrenza crescenti, con un {@link StubChatModel} al posto del provider.
+ * <p>
+ * Per ogni livello misura throughput, percentili della latenza per classe, picco di heap usata e di
+ * thread di piattaforma (esclusi quelli che guidano il benchmark), e la heap ancora occupata dopo una
+ * garbage collection a fine livello: se cresce con il numero di classi eseguite, qualcosa (stato del
+ * grafo, checkpoint, cache) trattiene i risultati.
+ * <p>
+ * Gli eventi di ogni grafo vanno a un {@link ClassUpdates}, come quelli delle azioni reali vanno al
+ * pannello info: così le misure includono anche il costo degli aggiornamenti dell'interfaccia.
+ * <p>
+ * Il modello sintetico può passare dallo scheduler delle richieste, così si vede a quale livello il collo
+ * di bottiglia diventa lo scheduler, i tool (che chiedono read action) o il resto della pipeline.
+ * I checkpoint delle esecuzioni di prova vengono eliminati al termine.
+ */
+public class PipelineBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineBenchmark.class);
+
+    // Intervallo di campionamento di heap e thread
+    private static final long SAMPLE_INTERVAL_MILLIS = 50;
+
+    private final Project project;
+    private final Config config;
+    private final ClassUpdates updates;
+
+    /**
+     * Riceve gli aggiornamenti delle classi eseguite. Può essere chiamato da più thread insieme.
+     */
+    public interface ClassUpdates {
+
+        ClassUpdates NONE = new ClassUpdates() {
+            @Override
+            public void started(String classId) {
+            }
+
+            @Override
+            public void event(String classId, ProgressEvent event) {
+            }
+
+            @Override
+            public void finished(String classId, boolean failed) {
+            }
+        };
+
+        void started(String classId);
+
+        void event(String classId, ProgressEvent event);
+
+        void finished(String classId, boolean failed);
+    }
+
+    /**
+     * @param classes          Classi sintetiche eseguite a ogni livello
+     * @param methodsPerClass  Metodi pubblici di ogni classe sintetica
+     * @param latencyMillis    Tempo simulato al primo token
+     * @param tokensPerSecond  Velocità simulata di generazione
+     * @param maxConcurrency   Livello massimo; i livelli sono le potenze di due fino a questo valore
+     * @param viaScheduler     Se far passare le richieste da {@link LlmScheduler}
+     */
+    public record Config(int classes, int methodsPerClass, long latencyMillis, int tokensPerSecond,
+                         int maxConcurrency, boolean viaScheduler) {
+
+        List<Integer> concurrencyLevels() {
+            List<Integer> levels = new ArrayList<>();
+            for (int level = 1; level < maxConcurrency; level *= 2) {
+                levels.add(level);
+            }
+            levels.add(maxConcurrency);
+            return levels;
+        }
+    }
+
+    /**
+     * Risultato di un livello di concorrenza
+     */
+    public record LevelResult(int concurrency, int completed, int failed, long wallMillis,
+                              long p50Millis, long p95Millis, long p99Millis, long peakHeapBytes,
+                              long retainedHeapBytes, int peakThreads) {
+
+        public double throughput() {
+            return wallMillis == 0 ? 0 : completed * 1000.0 / wallMillis;
+        }
+
+        public String summary() {
+            return String.format(Locale.ROOT,
+                    "concurrency %d: %.2f classes/s, p50 %d ms, p95 %d ms, p99 %d ms, heap %d MB (retained %d MB), threads %d, failed %d",
+                    concurrency, throughput(), p50Millis, p95Millis, p99Millis, peakHeapBytes / (1024 * 1024),
+                    retainedHeapBytes / (1024 * 1024), peakThreads, failed);
+        }
+    }
+
+    public PipelineBenchmark(Project project, Config config) {
+        this(project, config, ClassUpdates.NONE);
+    }
+
+    public PipelineBenchmark(Project project, Config config, ClassUpdates updates) {
+        this.project = project;
+        this.config = config;
+        this.updates = updates;
+    }
+
+    /**
+     * Esegue tutti i livelli in sequenza
+     *
+     * @param onLevel Riceve il risultato di ogni livello appena completato
+     */
+    public List<LevelResult> run(ProgressIndicator indicator, Consumer<LevelResult> onLevel) {
+        ChatLanguageModel stub = new StubChatModel(config.latencyMillis(), config.tokensPerSecond());
+        ChatLanguageModel model = config.viaScheduler()
+                ? LlmScheduler.getInstance().wrap(stub, LlmScheduler.Lane.BATCH)
+                : stub;
+
+        // Le classi sintetiche vanno tutte al modello: niente template
+        JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState().copy();
+        options.templateFastPath = false;
+
+        List<Integer> levels = config.concurrencyLevels();
+        List<LevelResult> results = new ArrayList<>();
+        for (int i = 0; i < levels.size(); i++) {
+            indicator.checkCanceled();
+            indicator.setText("Concurrency " + levels.get(i));
+            indicator.setFraction((double) i / levels.size());
+            LevelResult result = runLevel(model, options, levels.get(i), indicator);
+            log.info("Benchmark della pipeline, {}", result.summary());
+            results.add(result);
+            onLevel.accept(result);
+        }
+        return results;
+    }
+
+    private LevelResult runLevel(ChatLanguageModel model, JUnitGeneratorSettings.Options options, int concurrency,
+                                 ProgressIndicator indicator) {
+        // Parte da un heap il più possibile pulito, così il picco riflette il livello corrente
+        System.gc();
+
+        AtomicLong peakHeap = new AtomicLong();
+        AtomicInteger peakThreads = new AtomicInteger();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Runtime runtime = Runtime.getRuntime();
+        ScheduledFuture<?> sampler = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+            peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        }, 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        ExecutorService drivers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Long>> runs = new ArrayList<>();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < config.classes(); i++) {
+                String code = syntheticClass(concurrency, i);
+                String classId = "benchmark_" + concurrency + "_" + i;
+                runs.add(drivers.submit(() -> runClass(model, options, classId, code, failed)));
+            }
+            List<Long> latencies = new ArrayList<>();
+            for (Future<Long> run : runs) {
+                indicator.checkCanceled();
+                latencies.add(run.get());
+            }
+            long wall = (System.nanoTime() - start) / 1_000_000;
+            Collections.sort(latencies);
+            // Tutte le esecuzioni del livello sono concluse: quello che resta dopo la GC è trattenuto
+            System.gc();
+            long retainedHeap = runtime.totalMemory() - runtime.freeMemory();
+            // I thread del pool dei driver esistono solo per il benchmark: non fanno parte della pipeline
+            int driverThreads = Math.min(concurrency, config.classes());
+            return new LevelResult(concurrency, latencies.size() - failed.get(), failed.get(), wall,
+                    percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                    peakHeap.get(), retainedHeap, Math.max(0, peakThreads.get() - driverThreads));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Esecuzione del benchmark fallita", e.getCause());
+        } finally {
+            drivers.shutdownNow();
+            sampler.cancel(false);
+        }
+    }
+
+    /**
+     * Esegue una classe e ne restituisce la latenza; i fallimenti vengono contati, non propagati
+     */
+    private long runClass(ChatLanguageModel model, JUnitGeneratorSettings.Options options, String classId, String code,
+                          AtomicInteger failed) {
+        String threadId = "benchmark-" + UUID.randomUUID();
+        long start = System.nanoTime();
+        Graph graph = null;
+        boolean success = false;
+        try {
+            updates.started(classId);
+            graph = new Graph(model, project, options);
+            graph.addEventListener(event -> updates.event(classId, event));
+            String result = graph.execute(threadId, code);
+            success = !Graph.isFailure(result);
+            if (!success) {
+                failed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.debug("Classe sintetica fallita: {}", e.getMessage());
+            failed.incrementAndGet();
+        } finally {
+            updates.finished(classId, !success);
+            // Un'esecuzione fallita lascia i checkpoint dei nodi completati: le classi sintetiche non verranno riprese
+            if (graph != null) {
+                graph.discard(threadId);
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    /**
+     * Classe sintetica con stato e metodi pubblici; il nome è unico per livello, così nessuna esecuzione
+     * viene deduplicata con un'altra
+     */
+    private String syntheticClass(int concurrency, int index) {
+        String className = "SyntheticService" + concurrency + "x" + index;
+        StringBuilder code = new StringBuilder()
+                .append("package benchmark;\n\n")
+                .append("import java.util.HashMap;\nimport java.util.Map;\n\n")
+                .append("public class ").append(className).append(" {\n\n")
+                .append("    private final Map<String, Integer> counters = new HashMap<>();\n")
+                .append("    private int total;\n\n");
+        for (int method = 0; method < config.methodsPerClass(); method++) {
+            code.append("    public int update").append(method).append("(String key, int delta) {\n")
+                    .append("        if (key == null || key.isEmpty()) {\n")
+                    .append("            throw new IllegalArgumentException(\"key\");\n")
+                    .append("        }\n")
+                    .append("        int value = counters.merge(key, delta * ").append(method + 1).append(", Integer::sum);\n")
+                    .append("        total += delta;\n")
+                    .append("        return value;\n")
+                    .append("    }\n\n");
+        }
+        return code.append("    public int total() {\n        return total;\n    }\n}\n").toString();
+    }
+}
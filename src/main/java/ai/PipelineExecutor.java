@@ -0,0 +1,90 @@
+package ai;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor dedicato alla pipeline di generazione: nodi del grafo, chiamate HTTP al modello e
+ * scrittura dei file. Il lavoro è quasi tutto I/O bloccante, quindi non deve girare nel common pool
+ * né nei pool condivisi dell'IDE.
+ * <p>
+ * Sui runtime che li supportano (JDK 21+) usa un virtual thread per task, così centinaia di generazioni
+ * concorrenti costano poco; altrimenti ripiega su un pool limitato di thread di piattaforma.
+ * <p>
+ * Con il pool limitato il lavoro annidato (candidati, parti e bozze che un'esecuzione attende) non può
+ * andare sullo stesso pool: con tante esecuzioni concorrenti tutti i thread resterebbero bloccati in
+ * attesa di task accodati dietro di loro. Per questo ha un executor separato e non limitato, vedi
+ * {@link #nestedExecutor()}. I nodi del grafo girano invece direttamente sul thread dell'esecuzione.
+ */
+public class PipelineExecutor implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineExecutor.class);
+
+    // Dimensione del pool di ripiego quando i virtual thread non sono disponibili
+    private static final int FALLBACK_POOL_SIZE = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+    private final ExecutorService executor;
+    private final ExecutorService nestedExecutor;
+    private final boolean virtualThreads;
+
+    public PipelineExecutor() {
+        ExecutorService virtual = createVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtual != null
+                ? virtual
+                : AppExecutorUtil.createBoundedApplicationPoolExecutor("JUnitGenerator Pipeline", FALLBACK_POOL_SIZE);
+        // I virtual thread non esauriscono nulla: il lavoro annidato può usare lo stesso executor
+        nestedExecutor = virtual != null
+                ? virtual
+                : Executors.newCachedThreadPool(ConcurrencyUtil.newNamedThreadFactory("JUnitGenerator Pipeline Worker"));
+        log.info("Executor della pipeline inizializzato ({})",
+                virtualThreads ? "virtual thread" : "pool limitato a " + FALLBACK_POOL_SIZE + " thread");
+    }
+
+    public static PipelineExecutor getInstance() {
+        return ApplicationManager.getApplication().getService(PipelineExecutor.class);
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Executor per il lavoro che un'esecuzione della pipeline avvia e poi attende (candidati, parti di una
+     * classe grande, bozze speculative). Non va usato per avviare esecuzioni: quelle vanno su {@link #executor()}.
+     */
+    public ExecutorService nestedExecutor() {
+        return nestedExecutor;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        nestedExecutor.shutdownNow();
+    }
+
+    /**
+     * Il plugin è compilato per Java 17, quindi l'executor a virtual thread viene creato via reflection
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Virtual thread non disponibili, uso un pool limitato: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ai;
+
+import ai.agents.CandidateReport;
+
+import java.util.List;
+
+/**
+ * Eventi di avanzamento pubblicati dal {@link Graph} durante un'esecuzione.
+ * La UI li riceve come un unico flusso tipizzato tramite {@link Graph#addEventListener}.
+ */
+public sealed interface ProgressEvent {
+
+    /**
+     * Il grafo ha raggiunto un nodo
+     *
+     * @param node Nome del nodo
+     */
+    record NodeReached(String node) implements ProgressEvent {
+    }
+
+    /**
+     * Errore in una fase del grafo
+     *
+     * @param error Dettagli dell'errore
+     */
+    record Failed(Graph.GraphError error) implements ProgressEvent {
+    }
+
+    /**
+     * Esito dei candidati generati in modalità multi-candidato
+     *
+     * @param reports Tempi e punteggi di tutti i candidati
+     */
+    record CandidatesEvaluated(List<CandidateReport> reports) implements ProgressEvent {
+    }
+
+    /**
+     * Problemi strutturali rimasti nel test generato, segnalati prima che venga scritto
+     *
+     * @param problems Descrizione dei problemi
+     */
+    record CodeProblems(List<String> problems) implements ProgressEvent {
+    }
+}
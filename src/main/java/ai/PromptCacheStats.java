@@ -0,0 +1,97 @@
+package ai;
+
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listener del modello che raccoglie le statistiche del prompt caching.
+ * <p>
+ * Quando il provider riporta i token serviti dalla cache (ad esempio {@code cached_tokens} di OpenAI)
+ * vengono accumulati insieme ai token di input totali e alla latenza delle risposte, così da poter
+ * verificare l'effetto del prefisso statico dei prompt durante le esecuzioni batch.
+ */
+public class PromptCacheStats implements ChatModelListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PromptCacheStats.class);
+
+    private static final String START_TIME_ATTRIBUTE = "prompt_cache_stats.start";
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestsWithCacheHit = new AtomicLong();
+    private final AtomicLong inputTokens = new AtomicLong();
+    private final AtomicLong cachedInputTokens = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+    /**
+     * Fotografia delle statistiche raccolte fino a un certo momento
+     */
+    public record Snapshot(long requests, long requestsWithCacheHit, long inputTokens,
+                           long cachedInputTokens, long totalLatencyMillis) {
+
+        public double cachedTokenRatio() {
+            return inputTokens == 0 ? 0 : (double) cachedInputTokens / inputTokens;
+        }
+
+        public long averageLatencyMillis() {
+            return requests == 0 ? 0 : totalLatencyMillis / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d richieste (%d con cache hit), %d/%d token di input dalla cache (%.1f%%), latenza media %d ms",
+                    requests, requestsWithCacheHit, cachedInputTokens, inputTokens,
+                    cachedTokenRatio() * 100, averageLatencyMillis());
+        }
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        requestContext.attributes().put(START_TIME_ATTRIBUTE, System.nanoTime());
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        requests.incrementAndGet();
+
+        Object start = responseContext.attributes().get(START_TIME_ATTRIBUTE);
+        if (start instanceof Long startNanos) {
+            totalLatencyMillis.addAndGet((System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        TokenUsage tokenUsage = responseContext.chatResponse().tokenUsage();
+        if (tokenUsage == null) {
+            return;
+        }
+
+        if (tokenUsage.inputTokenCount() != null) {
+            inputTokens.addAndGet(tokenUsage.inputTokenCount());
+        }
+
+        // Solo alcuni provider riportano i token serviti dalla cache
+        if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage
+                && openAiTokenUsage.inputTokensDetails() != null
+                && openAiTokenUsage.inputTokensDetails().cachedTokens() != null) {
+            int cached = openAiTokenUsage.inputTokensDetails().cachedTokens();
+            cachedInputTokens.addAndGet(cached);
+            if (cached > 0) {
+                requestsWithCacheHit.incrementAndGet();
+            }
+            log.debug("Prompt cache: {} token di input su {} serviti dalla cache", cached, tokenUsage.inputTokenCount());
+        }
+    }
+
+    /**
+     * Restituisce le statistiche accumulate
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(requests.get(), requestsWithCacheHit.get(), inputTokens.get(),
+                cachedInputTokens.get(), totalLatencyMillis.get());
+    }
+}
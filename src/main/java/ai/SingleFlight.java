@@ -0,0 +1,66 @@
+package ai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplica le esecuzioni concorrenti con la stessa chiave: il primo chiamante esegue il lavoro,
+ * quelli che arrivano mentre è ancora in corso attendono e ricevono lo stesso risultato (o la stessa
+ * eccezione). A esecuzione conclusa la chiave viene liberata, quindi non è una cache.
+ *
+ * @param <K> Tipo della chiave
+ * @param <V> Tipo del risultato
+ */
+public final class SingleFlight<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(SingleFlight.class);
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param name Nome usato nei log per distinguere le diverse istanze
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            log.info("[{}] Esecuzione già in corso per '{}', attendo il suo risultato", name, key);
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            V result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Numero di esecuzioni attualmente in corso
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
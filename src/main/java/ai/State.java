@@ -1,45 +1,148 @@
 package ai;
 
-
-import dev.langchain4j.agent.tool.ToolExecutionRequest;
-import dev.langchain4j.data.message.ChatMessage;
-import org.bsc.langgraph4j.langchain4j.serializer.std.ChatMesssageSerializer;
-import org.bsc.langgraph4j.langchain4j.serializer.std.ToolExecutionRequestSerializer;
-import org.bsc.langgraph4j.prebuilt.MessagesState;
+import org.bsc.langgraph4j.GraphStateException;
 import org.bsc.langgraph4j.serializer.std.ObjectStreamStateSerializer;
+import org.bsc.langgraph4j.state.AgentState;
+import org.bsc.langgraph4j.state.Channel;
+import org.bsc.langgraph4j.state.Channels;
 
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 
-public class State extends MessagesState<ChatMessage>{
+/**
+ * Stato del grafo: un valore per chiave, senza cronologia dei messaggi.
+ * <p>
+ * Ogni testo (codice, analisi, test generati) compare una sola volta, sotto la propria chiave: i
+ * checkpoint salvati a ogni passo condividono le stesse istanze invece di accumulare copie in una lista
+ * di messaggi che cresce con i nodi eseguiti.
+ */
+public class State extends AgentState {
 
-    public Optional<String> next() {
-        return this.value("next");
-    }
+    // Chiavi dei canali dello stato
+    public static final String CODE = "code";
+    public static final String PROJECT_DEPENDENCIES = "project_dependencies";
+    public static final String DEPENDENCY_ANALYSIS = "dependency_analysis";
+    public static final String CONTEXT_ANALYSIS = "context_analysis";
+    public static final String EXISTING_TESTS = "existing_tests";
+    public static final String TARGET_METHODS = "target_methods";
+    public static final String GENERATED_TESTS = "generated_tests";
+
+    /**
+     * Tipi ammessi per ciascun canale. È la definizione dichiarativa dello stato: ogni chiave scritta
+     * da un nodo deve comparire qui, altrimenti il grafo non viene compilato.
+     */
+    public static final Map<String, Class<?>> CHANNEL_TYPES = Map.of(
+            CODE, String.class,
+            PROJECT_DEPENDENCIES, String.class,
+            DEPENDENCY_ANALYSIS, String.class,
+            CONTEXT_ANALYSIS, String.class,
+            EXISTING_TESTS, String.class,
+            TARGET_METHODS, String.class,
+            GENERATED_TESTS, String.class
+    );
+
+    public static final Map<String, Channel<?>> SCHEMA = buildSchema();
 
     public Optional<String> code() {
-        return this.value("code");
+        return this.value(CODE);
+    }
+
+    public Optional<String> projectDependencies() {
+        return this.value(PROJECT_DEPENDENCIES);
     }
 
     public Optional<String> dependencyAnalysis() {
-        return this.value("dependency_analysis");
+        return this.value(DEPENDENCY_ANALYSIS);
+    }
+
+    public Optional<String> contextAnalysis() {
+        return this.value(CONTEXT_ANALYSIS);
+    }
+
+    public Optional<String> existingTests() {
+        return this.value(EXISTING_TESTS);
+    }
+
+    public Optional<String> targetMethods() {
+        return this.value(TARGET_METHODS);
     }
 
-    public Optional<String> instruction() {
-        return this.value("instruction");
+    public Optional<String> generatedTests() {
+        return this.value(GENERATED_TESTS);
     }
 
     public State(Map<String, Object> initData) {
         super( initData  );
     }
+
+    private static Map<String, Channel<?>> buildSchema() {
+        Map<String, Channel<?>> schema = new HashMap<>();
+        CHANNEL_TYPES.forEach((key, type) -> schema.put(key, typedChannel(key, type)));
+        return Map.copyOf(schema);
+    }
+
+    /**
+     * Canale con sovrascrittura del valore che rifiuta valori del tipo sbagliato
+     */
+    private static Channel<Object> typedChannel(String key, Class<?> type) {
+        return Channels.base((Object oldValue, Object newValue) -> {
+            if (newValue != null && !type.isInstance(newValue)) {
+                throw new IllegalArgumentException(String.format("Valore di tipo %s non ammesso per il canale '%s' (atteso %s)",
+                        newValue.getClass().getName(), key, type.getName()));
+            }
+            return newValue;
+        });
+    }
+
+    /**
+     * Verifica il flusso dei dati di una sequenza lineare di nodi rispetto allo schema.
+     * <p>
+     * Il grafo non viene compilato se un nodo legge una chiave che nessuno ha prodotto prima di lui,
+     * se scrive una chiave fuori dallo schema, oppure se produce una chiave che nessun nodo successivo
+     * (né il chiamante del grafo) legge: quest'ultimo caso significa pagare una fase LLM il cui risultato
+     * viene scartato.
+     *
+     * @param nodes   Contratti dei nodi nell'ordine di esecuzione
+     * @param inputs  Chiavi fornite nello stato iniziale
+     * @param outputs Chiavi lette dal chiamante al termine del grafo
+     */
+    public static void validateFlow(List<NodeContract> nodes, Set<String> inputs, Set<String> outputs) throws GraphStateException {
+        List<String> problems = new ArrayList<>();
+        Set<String> available = new HashSet<>(inputs);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeContract node = nodes.get(i);
+
+            for (String read : node.reads()) {
+                if (!available.contains(read)) {
+                    problems.add(String.format("il nodo '%s' legge '%s' che non viene prodotto prima di lui", node.node(), read));
+                }
+            }
+
+            for (String write : node.writes()) {
+                if (!CHANNEL_TYPES.containsKey(write)) {
+                    problems.add(String.format("il nodo '%s' scrive '%s' che non è definito nello schema", node.node(), write));
+                    continue;
+                }
+                boolean consumed = outputs.contains(write);
+                for (int j = i + 1; j < nodes.size() && !consumed; j++) {
+                    consumed = nodes.get(j).reads().contains(write);
+                }
+                if (!consumed) {
+                    problems.add(String.format("l'output '%s' del nodo '%s' non viene mai letto", write, node.node()));
+                }
+            }
+            available.addAll(node.writes());
+        }
+
+        if (!problems.isEmpty()) {
+            throw new GraphStateException("Flusso dello stato non valido: " + String.join("; ", problems));
+        }
+    }
 }
 
 class StateSerializer extends ObjectStreamStateSerializer<State> {
 
     public StateSerializer() {
         super(State::new);
-
-        mapper().register(ToolExecutionRequest.class, new ToolExecutionRequestSerializer());
-        mapper().register(ChatMessage.class, new ChatMesssageSerializer());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,217 @@
+package ai.agents;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.resolve.FileContextUtil;
+import com.intellij.psi.javadoc.PsiDocComment;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.TypeConversionUtil;
+import files.TestRootResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vcs.ChangedMethodsCollector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Valida un candidato di test senza eseguirlo. Il codice viene analizzato dal parser Java dell'IDE e
+ * risolto nel contesto della test root del modulo della classe sotto test: oltre agli errori di sintassi
+ * vengono contati i simboli non risolti, le chiamate con argomenti non compatibili e le inizializzazioni
+ * con tipi incompatibili, cioè gli errori che il compilatore segnalerebbe più spesso in un test generato.
+ * La copertura è stimata dai metodi della classe sotto test a cui le chiamate dei test si risolvono.
+ * <p>
+ * Durante l'indicizzazione la risoluzione non è disponibile: si contano solo gli errori di sintassi e la
+ * copertura si basa sui nomi dei metodi richiamati.
+ */
+final class CandidateEvaluator {
+
+    private static final Logger log = LoggerFactory.getLogger(CandidateEvaluator.class);
+
+    private final Project project;
+
+    CandidateEvaluator(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Risultato dell'analisi di un candidato
+     *
+     * @param compileErrors Errori di risoluzione e di tipo; sempre 0 se la risoluzione non era disponibile
+     */
+    record Evaluation(int syntaxErrors, int compileErrors, int testMethods, int assertions, int coveredMethods,
+                      int targetMethods) {
+
+        /**
+         * I candidati con errori di sintassi o di compilazione o senza test sono sempre peggiori di quelli
+         * validi; tra quelli validi vince la copertura stimata, poi il numero di test e di asserzioni.
+         */
+        double score() {
+            if (syntaxErrors > 0 || compileErrors > 0 || testMethods == 0) {
+                return -(syntaxErrors + compileErrors);
+            }
+            double coverage = targetMethods == 0 ? 0 : (double) coveredMethods / targetMethods;
+            return coverage * 100 + Math.min(testMethods, 50) * 0.5 + Math.min(assertions, 100) * 0.1;
+        }
+    }
+
+    Evaluation evaluate(String code, String testCode) {
+        return ReadAction.compute(() -> {
+            PsiFileFactory factory = PsiFileFactory.getInstance(project);
+            PsiFile source = factory.createFileFromText("Source.java", JavaFileType.INSTANCE, code);
+            PsiFile test = factory.createFileFromText("CandidateTest.java", JavaFileType.INSTANCE, testCode);
+
+            int syntaxErrors = PsiTreeUtil.findChildrenOfType(test, PsiErrorElement.class).size();
+
+            // Il candidato viene risolto come se fosse nella test root: vede la classe sotto test e le librerie di test
+            PsiClass classUnderTest = DumbService.isDumb(project) ? null : findClassUnderTest(source);
+            if (classUnderTest != null) {
+                FileContextUtil.setFileContext(test, testContext(classUnderTest));
+            }
+
+            // Metodi della classe sotto test che i test dovrebbero esercitare
+            Set<String> targetMethods = new HashSet<>();
+            for (PsiMethod method : PsiTreeUtil.findChildrenOfType(source, PsiMethod.class)) {
+                if (!method.isConstructor() && !method.hasModifierProperty(PsiModifier.PRIVATE)
+                        && method.getContainingClass() != null) {
+                    targetMethods.add(classUnderTest != null ? ChangedMethodsCollector.signature(method) : method.getName());
+                }
+            }
+
+            Set<String> calledMethods = new HashSet<>();
+            int assertions = 0;
+            for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(test, PsiMethodCallExpression.class)) {
+                String name = call.getMethodExpression().getReferenceName();
+                if (name == null) {
+                    continue;
+                }
+                if (classUnderTest == null) {
+                    calledMethods.add(name);
+                } else {
+                    PsiMethod target = call.resolveMethod();
+                    if (target != null && target.getContainingClass() != null
+                            && target.getContainingClass().isEquivalentTo(classUnderTest)) {
+                        calledMethods.add(ChangedMethodsCollector.signature(target));
+                    }
+                }
+                if (name.startsWith("assert") || name.equals("verify") || name.equals("fail")) {
+                    assertions++;
+                }
+            }
+
+            int testMethods = 0;
+            for (PsiMethod method : PsiTreeUtil.findChildrenOfType(test, PsiMethod.class)) {
+                if (isTestMethod(method)) {
+                    testMethods++;
+                }
+            }
+
+            List<String> compileErrors = classUnderTest != null ? compileErrors(test) : List.of();
+            if (!compileErrors.isEmpty()) {
+                log.debug("Errori di compilazione nel candidato: {}", String.join("; ", compileErrors));
+            }
+
+            calledMethods.retainAll(targetMethods);
+            return new Evaluation(syntaxErrors, compileErrors.size(), testMethods, assertions, calledMethods.size(),
+                    targetMethods.size());
+        });
+    }
+
+    /**
+     * Classe del progetto corrispondente alla prima classe top-level del sorgente
+     */
+    private PsiClass findClassUnderTest(PsiFile source) {
+        if (!(source instanceof PsiJavaFile javaFile) || javaFile.getClasses().length == 0) {
+            return null;
+        }
+        String name = javaFile.getClasses()[0].getName();
+        if (name == null) {
+            return null;
+        }
+        String qualifiedName = javaFile.getPackageName().isEmpty() ? name : javaFile.getPackageName() + "." + name;
+        return JavaPsiFacade.getInstance(project).findClass(qualifiedName, GlobalSearchScope.projectScope(project));
+    }
+
+    /**
+     * Test root del modulo della classe sotto test; se non esiste ancora, la directory della classe stessa
+     * (in quel caso le librerie di test possono non essere visibili e risultano come simboli non risolti)
+     */
+    private PsiElement testContext(PsiClass classUnderTest) {
+        PsiFile sourceFile = classUnderTest.getContainingFile();
+        VirtualFile virtualFile = sourceFile.getVirtualFile();
+        if (virtualFile != null) {
+            String testRoot = TestRootResolver.getInstance(project).testDirectoryFor(virtualFile, "");
+            VirtualFile testRootFile = LocalFileSystem.getInstance().findFileByPath(testRoot);
+            PsiDirectory directory = testRootFile != null ? PsiManager.getInstance(project).findDirectory(testRootFile) : null;
+            if (directory != null) {
+                return directory;
+            }
+        }
+        return sourceFile.getContainingDirectory() != null ? sourceFile.getContainingDirectory() : sourceFile;
+    }
+
+    /**
+     * Errori che il compilatore segnalerebbe: simboli non risolti, chiamate senza un metodo applicabile
+     * agli argomenti e variabili inizializzate con un valore di tipo incompatibile
+     */
+    private static List<String> compileErrors(PsiFile test) {
+        List<String> errors = new ArrayList<>();
+        for (PsiJavaCodeReferenceElement reference : PsiTreeUtil.findChildrenOfType(test, PsiJavaCodeReferenceElement.class)) {
+            if (reference instanceof PsiMethodReferenceExpression
+                    || PsiTreeUtil.getParentOfType(reference, PsiDocComment.class) != null) {
+                continue;
+            }
+            if (reference.getParent() instanceof PsiMethodCallExpression call && call.getMethodExpression() == reference) {
+                JavaResolveResult result = call.resolveMethodGenerics();
+                if (result.getElement() == null) {
+                    errors.add("metodo non risolto: " + reference.getText());
+                } else if (!result.isValidResult()) {
+                    errors.add("argomenti non compatibili: " + call.getText());
+                }
+            } else if (reference.multiResolve(false).length == 0) {
+                errors.add("simbolo non risolto: " + reference.getText());
+            }
+        }
+
+        for (PsiLocalVariable variable : PsiTreeUtil.findChildrenOfType(test, PsiLocalVariable.class)) {
+            PsiExpression initializer = variable.getInitializer();
+            if (initializer == null || variable.getTypeElement().isInferredType()) {
+                continue;
+            }
+            PsiType type = variable.getType();
+            PsiType initializerType = initializer.getType();
+            // I tipi non risolti sono già contati come simboli non risolti
+            if (initializerType == null || !resolved(type) || !resolved(initializerType)) {
+                continue;
+            }
+            if (!TypeConversionUtil.isAssignable(type, initializerType)) {
+                errors.add("tipo incompatibile: " + variable.getText());
+            }
+        }
+        return errors;
+    }
+
+    private static boolean resolved(PsiType type) {
+        PsiType component = type.getDeepComponentType();
+        return !(component instanceof PsiClassType classType) || classType.resolve() != null;
+    }
+
+    static boolean isTestMethod(PsiMethod method) {
+        for (PsiAnnotation annotation : method.getModifierList().getAnnotations()) {
+            PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+            String name = reference != null ? reference.getReferenceName() : null;
+            if ("Test".equals(name) || "ParameterizedTest".equals(name) || "RepeatedTest".equals(name)) {
+                return true;
+            }
+        }
+        return method.getName().startsWith("test");
+    }
+}
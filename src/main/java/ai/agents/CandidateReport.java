@@ -0,0 +1,34 @@
+package ai.agents;
+
+/**
+ * Esito della validazione di un candidato generato in modalità multi-candidato
+ *
+ * @param index            Indice del candidato (da 1)
+ * @param generationMillis Tempo impiegato dal modello per generare il candidato
+ * @param validationMillis Tempo impiegato per la validazione
+ * @param syntaxErrors     Numero di errori di sintassi trovati dal parser Java
+ * @param compileErrors    Simboli non risolti ed errori di tipo nel contesto della test root
+ * @param testMethods      Numero di metodi di test
+ * @param coveredMethods   Metodi della classe sotto test richiamati dai test
+ * @param targetMethods    Metodi non privati della classe sotto test
+ * @param score            Punteggio complessivo, più alto è meglio
+ * @param selected         Se il candidato è stato scelto
+ * @param error            Messaggio di errore se la generazione è fallita, altrimenti null
+ */
+public record CandidateReport(int index, long generationMillis, long validationMillis, int syntaxErrors,
+                              int compileErrors, int testMethods, int coveredMethods, int targetMethods, double score,
+                              boolean selected, String error) {
+
+    public boolean valid() {
+        return error == null && syntaxErrors == 0 && compileErrors == 0 && testMethods > 0;
+    }
+
+    public double methodCoverage() {
+        return targetMethods == 0 ? 0 : (double) coveredMethods / targetMethods;
+    }
+
+    CandidateReport asSelected() {
+        return new CandidateReport(index, generationMillis, validationMillis, syntaxErrors, compileErrors, testMethods,
+                coveredMethods, targetMethods, score, true, error);
+    }
+}
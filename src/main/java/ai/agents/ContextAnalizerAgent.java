@@ -1,9 +1,9 @@
 package ai.agents;
 
+import ai.NodeContract;
 import ai.State;
 import ai.tools.SearchContextTool;
 import com.intellij.openapi.project.Project;
-import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.SystemMessage;
@@ -14,15 +14,23 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static ai.Prompt.CONTEXT_ANALYZER_PROMPT;
+import static ai.Prompt.CONTEXT_ANALYZER_USER_PROMPT;
 
 public class ContextAnalizerAgent implements NodeAction<State> {
     private static final Logger log = LoggerFactory.getLogger(ContextAnalizerAgent.class);
 
+    public static final NodeContract CONTRACT = new NodeContract("context_analyzer",
+            Set.of(State.CODE, State.PROJECT_DEPENDENCIES),
+            Set.of(State.CONTEXT_ANALYSIS));
+
     interface Service {
         @SystemMessage(CONTEXT_ANALYZER_PROMPT)
-        String evaluate(@dev.langchain4j.service.UserMessage @V("code") String code);
+        @dev.langchain4j.service.UserMessage(CONTEXT_ANALYZER_USER_PROMPT)
+        String evaluate(@V("code") String code,
+                        @V("project_dependencies") String projectDependencies);
     }
 
     final Service service;
@@ -42,22 +50,14 @@ public class ContextAnalizerAgent implements NodeAction<State> {
         // Otteniamo il codice dallo stato
         String code = state.code().orElseThrow(() -> new IllegalStateException("Codice non trovato nello stato"));
 
-        // Otteniamo l'analisi delle dipendenze (se disponibile)
-        String dependencyAnalysis = state.instruction().orElse("Analisi dipendenze non disponibile");
+        String projectDependencies = state.projectDependencies().orElse("Nessuna dipendenza disponibile");
 
         // Eseguiamo l'analisi del contesto
-        String contextAnalysis = service.evaluate(code);
+        String contextAnalysis = service.evaluate(code, projectDependencies);
         log.debug("Analisi contesto completata");
 
-        // Preserviamo il codice originale e l'analisi delle dipendenze nello stato
-        result.put("code", code);
-        result.put("dependency_analysis", dependencyAnalysis);
-
         // Aggiungiamo il risultato dell'analisi del contesto
-        result.put("context_analysis", contextAnalysis);
-
-        // Aggiungiamo un messaggio per aggiornare lo stato
-        result.put("messages", AiMessage.from(contextAnalysis));
+        result.put(State.CONTEXT_ANALYSIS, contextAnalysis);
 
         return result;
     }
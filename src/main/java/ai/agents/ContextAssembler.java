@@ -0,0 +1,354 @@
+package ai.agents;
+
+import ai.model.ChatModelFactory;
+import ai.tools.ClassSignatureIndex;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vcs.ChangedMethodsCollector;
+
+import java.util.*;
+
+import static ai.Prompt.JUNIT_GENERATOR_PROMPT;
+import static ai.Prompt.JUNIT_GENERATOR_USER_PROMPT;
+
+/**
+ * Adatta i dati della generazione alla finestra di contesto del modello.
+ * <p>
+ * I token vengono contati in locale. Se tutto rientra nel budget l'input resta invariato; altrimenti il
+ * contenuto viene ordinato per importanza: prima il codice dei metodi da testare (il resto della classe
+ * resta come scheletro con i corpi omessi), poi le firme delle classi collaboratrici del progetto, poi
+ * le analisi e infine i test esistenti, troncati per ultimi. Se anche così la classe non rientra, o se i
+ * metodi da testare sono troppi per una sola risposta, vengono divisi in cluster che condividono le stesse
+ * fixture e si ottiene un input per cluster, da generare separatamente.
+ */
+final class ContextAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextAssembler.class);
+
+    // Tokenizer locale: conteggio esatto per i modelli OpenAI, buona stima per gli altri
+    private static final Tokenizer TOKENIZER = new OpenAiTokenizer(ChatModelFactory.MODEL_NAME);
+
+    // Quota massima del budget destinata al codice: il resto serve a collaboratori e analisi
+    private static final double CODE_SHARE = 0.6;
+
+    // Sotto questa soglia una sezione troncata non è più utile e viene omessa del tutto
+    private static final int MIN_SECTION_TOKENS = 64;
+
+    private static final String ELIDED_BODY = "{ /* corpo omesso */ }";
+    private static final String TRUNCATED = "\n[... troncato per rientrare nella finestra di contesto]";
+    private static final String OMITTED = "[omesso per rientrare nella finestra di contesto]";
+
+    private final Project project;
+
+    // Oltre questo numero di metodi da testare la risposta rischia di superare il limite di token in uscita
+    private final int maxMethodsPerRequest;
+
+    // Token disponibili per le sezioni variabili, al netto dei template e della risposta
+    private final int budget;
+
+    /**
+     * Metodo della classe sotto test con l'intervallo del suo corpo nel sorgente
+     *
+     * @param fields  Campi della classe usati nel corpo
+     * @param callees Firme dei metodi della stessa classe chiamati nel corpo
+     */
+    private record MethodBody(String signature, int bodyStart, int bodyEnd, int tokens, boolean target,
+                              Set<String> fields, Set<String> callees) {
+    }
+
+    /**
+     * Classe sotto test scomposta in scheletro e corpi dei metodi
+     */
+    private record ParsedClass(String code, List<MethodBody> methods, List<String> imports) {
+
+        /**
+         * I metodi indicati insieme a quelli della stessa classe che chiamano, anche indirettamente
+         */
+        List<MethodBody> withCallees(Collection<MethodBody> selected) {
+            Map<String, MethodBody> bySignature = new HashMap<>();
+            for (MethodBody method : methods) {
+                bySignature.put(method.signature(), method);
+            }
+            Set<MethodBody> result = new LinkedHashSet<>();
+            Deque<MethodBody> pending = new ArrayDeque<>(selected);
+            while (!pending.isEmpty()) {
+                MethodBody method = pending.pop();
+                if (result.add(method)) {
+                    for (String callee : method.callees()) {
+                        MethodBody called = bySignature.get(callee);
+                        if (called != null) {
+                            pending.push(called);
+                        }
+                    }
+                }
+            }
+            return new ArrayList<>(result);
+        }
+
+        /**
+         * Sorgente con i soli corpi dei metodi indicati; gli altri vengono sostituiti da un segnaposto
+         */
+        String codeWith(Collection<MethodBody> kept) {
+            StringBuilder result = new StringBuilder(code);
+            List<MethodBody> elided = new ArrayList<>(methods);
+            elided.removeAll(kept);
+            // Sostituzioni dalla fine per non spostare gli offset delle precedenti
+            elided.sort(Comparator.comparingInt(MethodBody::bodyStart).reversed());
+            for (MethodBody method : elided) {
+                result.replace(method.bodyStart(), method.bodyEnd(), ELIDED_BODY);
+            }
+            return result.toString();
+        }
+    }
+
+    /**
+     * @param contextWindowTokens  Finestra di contesto del modello
+     * @param reservedOutputTokens Token lasciati alla risposta
+     * @param maxMethodsPerRequest Metodi da testare oltre i quali la generazione viene divisa in cluster
+     */
+    ContextAssembler(Project project, int contextWindowTokens, int reservedOutputTokens, int maxMethodsPerRequest) {
+        this.project = project;
+        this.maxMethodsPerRequest = Math.max(1, maxMethodsPerRequest);
+        this.budget = contextWindowTokens - reservedOutputTokens
+                - countTokens(JUNIT_GENERATOR_PROMPT) - countTokens(JUNIT_GENERATOR_USER_PROMPT);
+    }
+
+    static int countTokens(String text) {
+        return text == null || text.isEmpty() ? 0 : TOKENIZER.estimateTokenCountInText(text);
+    }
+
+    /**
+     * @return l'input originale se rientra nella finestra, altrimenti uno o più input ridotti
+     */
+    List<GenerationInput> fit(GenerationInput input) {
+        int available = budget - countTokens(input.projectDependencies());
+        int total = countTokens(input.code()) + countTokens(input.dependencyAnalysis()) + countTokens(input.contextAnalysis())
+                + countTokens(input.existingTests()) + countTokens(input.targetMethods());
+        // Primo passaggio senza risolvere i riferimenti: basta per contare i metodi da testare
+        ParsedClass outline = ReadAction.compute(() -> parse(input.code(), input.targetMethods(), false));
+        long targetCount = outline == null ? 0 : outline.methods().stream().filter(MethodBody::target).count();
+        if (total <= available && targetCount <= maxMethodsPerRequest) {
+            return List.of(input);
+        }
+        if (outline == null || outline.methods().isEmpty()) {
+            log.info("Input di {} token oltre il budget di {}: riduzione del contesto", total, available);
+            return List.of(trim(input, input.code(), input.targetMethods(), "", available));
+        }
+        ParsedClass parsed = ReadAction.compute(() -> parse(input.code(), input.targetMethods(), true));
+        List<MethodBody> targets = parsed.methods().stream().filter(MethodBody::target).toList();
+        if (targets.isEmpty()) {
+            targets = parsed.methods();
+        }
+
+        if (total <= available) {
+            // Il contesto rientra ma i metodi sono troppi per una sola risposta: il codice resta completo
+            List<List<MethodBody>> clusters = clusters(parsed, targets);
+            log.info("{} metodi da testare divisi in {} cluster", targets.size(), clusters.size());
+            List<GenerationInput> inputs = new ArrayList<>();
+            for (List<MethodBody> cluster : clusters) {
+                inputs.add(new GenerationInput(input.code(), input.dependencyAnalysis(), input.contextAnalysis(),
+                        input.projectDependencies(), input.existingTests(), signatures(cluster)));
+            }
+            return inputs;
+        }
+        log.info("Input di {} token oltre il budget di {}: riduzione del contesto", total, available);
+        String collaborators = collaborators(parsed.imports());
+
+        List<List<MethodBody>> groups = groups(parsed, clusters(parsed, targets), (int) (available * CODE_SHARE));
+        List<GenerationInput> inputs = new ArrayList<>();
+        for (List<MethodBody> group : groups) {
+            // Con un solo gruppo l'elenco dei metodi da testare resta quello richiesto
+            String targetMethods = groups.size() == 1 ? input.targetMethods() : signatures(group);
+            inputs.add(trim(input, parsed.codeWith(parsed.withCallees(group)), targetMethods, collaborators, available));
+        }
+        if (inputs.size() > 1) {
+            log.info("Classe troppo grande per una sola richiesta: {} metodi divisi in {} gruppi", targets.size(), inputs.size());
+        }
+        return inputs;
+    }
+
+    /**
+     * Cluster di metodi da testare che condividono campi e metodi di supporto della classe
+     */
+    private List<List<MethodBody>> clusters(ParsedClass parsed, List<MethodBody> targets) {
+        Map<String, MethodBody> bySignature = new LinkedHashMap<>();
+        List<MethodClusters.Member> members = new ArrayList<>();
+        for (MethodBody target : targets) {
+            Set<String> fields = new HashSet<>();
+            for (MethodBody method : parsed.withCallees(List.of(target))) {
+                fields.addAll(method.fields());
+            }
+            bySignature.put(target.signature(), target);
+            members.add(new MethodClusters.Member(target.signature(), fields));
+        }
+        List<List<MethodBody>> clusters = new ArrayList<>();
+        for (List<String> cluster : MethodClusters.cluster(members, maxMethodsPerRequest)) {
+            clusters.add(cluster.stream().map(bySignature::get).toList());
+        }
+        return clusters;
+    }
+
+    /**
+     * Divide ulteriormente i cluster, nell'ordine del sorgente, finché il codice di ogni gruppo rientra nel budget
+     */
+    private List<List<MethodBody>> groups(ParsedClass parsed, List<List<MethodBody>> clusters, int codeBudget) {
+        int skeletonTokens = countTokens(parsed.codeWith(List.of()));
+        List<List<MethodBody>> groups = new ArrayList<>();
+        for (List<MethodBody> cluster : clusters) {
+            List<MethodBody> current = new ArrayList<>();
+            int currentTokens = skeletonTokens;
+            for (MethodBody method : cluster) {
+                // Un metodo che da solo supera il budget finisce comunque in un gruppo, con le analisi ridotte
+                if (!current.isEmpty() && currentTokens + method.tokens() > codeBudget) {
+                    groups.add(current);
+                    current = new ArrayList<>();
+                    currentTokens = skeletonTokens;
+                }
+                current.add(method);
+                currentTokens += method.tokens();
+            }
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    private static String signatures(List<MethodBody> methods) {
+        return String.join("\n", methods.stream().map(MethodBody::signature).toList());
+    }
+
+    /**
+     * Riempie il budget rimasto dopo il codice seguendo l'ordine di importanza delle sezioni
+     */
+    private static GenerationInput trim(GenerationInput input, String code, String targetMethods,
+                                        String collaborators, int available) {
+        int remaining = available - countTokens(code) - countTokens(targetMethods);
+
+        String fittedCollaborators = fitText(collaborators, remaining);
+        remaining -= countTokens(fittedCollaborators);
+        String contextAnalysis = fitText(input.contextAnalysis(), remaining);
+        remaining -= countTokens(contextAnalysis);
+        String dependencyAnalysis = fitText(input.dependencyAnalysis(), remaining);
+        remaining -= countTokens(dependencyAnalysis);
+        String existingTests = fitText(input.existingTests(), remaining);
+
+        if (!fittedCollaborators.isEmpty() && !OMITTED.equals(fittedCollaborators)) {
+            contextAnalysis = "Firme delle classi collaboratrici nel progetto:\n" + fittedCollaborators + "\n\n" + contextAnalysis;
+        }
+        return new GenerationInput(code, dependencyAnalysis, contextAnalysis, input.projectDependencies(),
+                existingTests, targetMethods);
+    }
+
+    /**
+     * Tronca il testo a fine riga in modo che rientri nei token indicati
+     */
+    private static String fitText(String text, int tokens) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        int count = countTokens(text);
+        if (count <= tokens) {
+            return text;
+        }
+        if (tokens < MIN_SECTION_TOKENS) {
+            return OMITTED;
+        }
+        // Stima proporzionale della lunghezza, poi riduzione finché il conteggio non rientra
+        int length = (int) ((long) text.length() * (tokens - countTokens(TRUNCATED)) / count);
+        String truncated = text.substring(0, Math.max(0, length));
+        while (!truncated.isEmpty() && countTokens(truncated) + countTokens(TRUNCATED) > tokens) {
+            truncated = truncated.substring(0, truncated.length() * 9 / 10);
+        }
+        int lastLine = truncated.lastIndexOf('\n');
+        if (lastLine > 0) {
+            truncated = truncated.substring(0, lastLine);
+        }
+        return truncated + TRUNCATED;
+    }
+
+    /**
+     * @param references Se leggere i riferimenti dei corpi per ricavare campi usati e metodi chiamati
+     */
+    private ParsedClass parse(String code, String targetMethods, boolean references) {
+        if (!(PsiFileFactory.getInstance(project).createFileFromText("Source.java", JavaFileType.INSTANCE, code)
+                instanceof PsiJavaFile file)) {
+            return null;
+        }
+        Set<String> requested = new HashSet<>(Arrays.asList(targetMethods.split("\n")));
+
+        List<MethodBody> methods = new ArrayList<>();
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(file, PsiMethod.class)) {
+            PsiCodeBlock body = method.getBody();
+            // Solo i metodi delle classi con nome: quelli di classi anonime e locali fanno parte di un altro corpo
+            if (body == null || method.getContainingClass() == null || method.getContainingClass().getName() == null
+                    || PsiTreeUtil.getParentOfType(method, PsiCodeBlock.class) != null) {
+                continue;
+            }
+            String signature = ChangedMethodsCollector.signature(method);
+            boolean target = requested.contains(signature)
+                    || requested.contains(JunitGeneratorAgent.ALL_METHODS) && !method.hasModifierProperty(PsiModifier.PRIVATE);
+
+            // Campi e metodi della stessa classe, cercati per nome nelle classi che contengono il metodo:
+            // resolve() passerebbe dagli indici, non disponibili in dumb mode
+            Set<String> fields = new HashSet<>();
+            Set<String> callees = new HashSet<>();
+            Collection<PsiReferenceExpression> expressions = references
+                    ? PsiTreeUtil.findChildrenOfType(body, PsiReferenceExpression.class) : List.of();
+            for (PsiReferenceExpression reference : expressions) {
+                String name = reference.getReferenceName();
+                PsiExpression qualifier = reference.getQualifierExpression();
+                if (name == null || qualifier != null && !(qualifier instanceof PsiThisExpression)) {
+                    continue;
+                }
+                boolean call = reference.getParent() instanceof PsiMethodCallExpression;
+                for (PsiClass owner = method.getContainingClass(); owner != null; owner = owner.getContainingClass()) {
+                    if (call) {
+                        PsiMethod[] called = owner.findMethodsByName(name, false);
+                        for (PsiMethod candidate : called) {
+                            callees.add(ChangedMethodsCollector.signature(candidate));
+                        }
+                        if (called.length > 0) {
+                            break;
+                        }
+                    } else if (owner.findFieldByName(name, false) != null) {
+                        fields.add(name);
+                        break;
+                    }
+                }
+            }
+            methods.add(new MethodBody(signature, body.getTextRange().getStartOffset(), body.getTextRange().getEndOffset(),
+                    countTokens(body.getText()), target, Set.copyOf(fields), Set.copyOf(callees)));
+        }
+
+        List<String> imports = new ArrayList<>();
+        PsiImportList importList = file.getImportList();
+        if (importList != null) {
+            for (PsiImportStatement statement : importList.getImportStatements()) {
+                if (!statement.isOnDemand() && statement.getQualifiedName() != null) {
+                    imports.add(statement.getQualifiedName());
+                }
+            }
+        }
+        return new ParsedClass(code, methods, imports);
+    }
+
+    /**
+     * Firme delle classi importate che appartengono al progetto, lette dall'indice delle firme
+     */
+    private String collaborators(List<String> imports) {
+        StringBuilder collaborators = new StringBuilder();
+        for (String qualifiedName : imports) {
+            ClassSignatureIndex.find(project, qualifiedName).ifPresent(signature -> collaborators
+                    .append("- ").append(qualifiedName).append(": ")
+                    .append(String.join("; ", signature.methods()))
+                    .append("\n"));
+        }
+        return collaborators.toString().strip();
+    }
+}
@@ -1,9 +1,8 @@
 package ai.agents;
 
+import ai.NodeContract;
 import ai.State;
 import ai.tools.DependencySearchTool;
-import com.intellij.openapi.project.Project;
-import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.SystemMessage;
@@ -14,23 +13,31 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static ai.Prompt.DEPENDENCY_PROMPT;
+import static ai.Prompt.DEPENDENCY_USER_PROMPT;
 
 public class DependencyAgent implements NodeAction<State> {
     private static final Logger log = LoggerFactory.getLogger(DependencyAgent.class);
 
+    public static final NodeContract CONTRACT = new NodeContract("dependency_checker",
+            Set.of(State.CODE, State.PROJECT_DEPENDENCIES),
+            Set.of(State.DEPENDENCY_ANALYSIS));
+
     interface Service {
         @SystemMessage(DEPENDENCY_PROMPT)
-        String searchDependency(@dev.langchain4j.service.UserMessage  @V("code") String code);
+        @dev.langchain4j.service.UserMessage(DEPENDENCY_USER_PROMPT)
+        String searchDependency(@V("code") String code,
+                                @V("project_dependencies") String projectDependencies);
     }
 
     final Service service;
 
-    public DependencyAgent(ChatLanguageModel model, Project project) {
+    public DependencyAgent(ChatLanguageModel model, DependencySearchTool dependencySearchTool) {
         service = AiServices.builder(Service.class)
                 .chatLanguageModel(model)
-                .tools(new DependencySearchTool(project))
+                .tools(dependencySearchTool)
                 .build();
     }
 
@@ -42,18 +49,14 @@ public class DependencyAgent implements NodeAction<State> {
         // Otteniamo il codice dallo stato
         String code = state.code().orElseThrow(() -> new IllegalStateException("Codice non trovato nello stato"));
 
+        String projectDependencies = state.projectDependencies().orElse("Nessuna dipendenza disponibile");
+
         // Analizziamo le dipendenze
-        String analysisResult = service.searchDependency(code);
+        String analysisResult = service.searchDependency(code, projectDependencies);
         log.debug("Analisi dipendenze completata");
 
-        // Preserviamo il codice originale nello stato
-        result.put("code", code);
-
         // Aggiungiamo il risultato dell'analisi
-        result.put("instruction", analysisResult);
-
-        // Aggiungiamo un messaggio per aggiornare lo stato
-        result.put("messages", AiMessage.from(analysisResult));
+        result.put(State.DEPENDENCY_ANALYSIS, analysisResult);
 
         return result;
     }
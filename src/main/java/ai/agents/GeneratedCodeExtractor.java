@@ -0,0 +1,169 @@
+package ai.agents;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Estrae il codice Java dalla risposta del modello e lo normalizza prima che venga scritto su file.
+ * <p>
+ * La risposta può contenere blocchi markdown di qualsiasi tipo (```java, ```, ~~~), più blocchi,
+ * testo prima e dopo il codice. Ogni porzione candidata viene analizzata con il parser Java dell'IDE
+ * e viene scelta la più grande senza errori di sintassi, o quella con meno errori. Package e nome della
+ * classe di test vengono allineati a quelli attesi per la classe sotto test, e i problemi strutturali
+ * rimasti vengono riportati al chiamante.
+ */
+final class GeneratedCodeExtractor {
+
+    // Blocchi delimitati da ``` o ~~~, con linguaggio opzionale
+    private static final Pattern FENCED_BLOCK = Pattern.compile(
+            "(?m)^[ \\t]*(```|~~~)[\\w+#.-]*[ \\t]*\\r?\\n(.*?)^[ \\t]*\\1[ \\t]*$", Pattern.DOTALL);
+
+    // Prima riga che può aprire una compilation unit: package, import, annotazione o dichiarazione di classe
+    private static final Pattern UNIT_START = Pattern.compile(
+            "(?m)^[ \\t]*(?:package\\s|import\\s|@[A-Za-z]|(?:public\\s+|final\\s+|abstract\\s+)*class\\s)");
+
+    private final Project project;
+
+    GeneratedCodeExtractor(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Codice estratto con i problemi strutturali che restano
+     *
+     * @param code     Codice Java normalizzato
+     * @param problems Problemi rilevati: errori di sintassi, classe o test mancanti
+     */
+    record Extraction(String code, List<String> problems) {
+    }
+
+    /**
+     * @param response   Risposta del modello
+     * @param sourceCode Codice della classe sotto test, da cui derivano package e nome attesi
+     */
+    Extraction extract(String response, String sourceCode) {
+        List<String> candidates = candidates(response);
+        return ReadAction.compute(() -> {
+            PsiFileFactory factory = PsiFileFactory.getInstance(project);
+
+            PsiJavaFile best = null;
+            int bestErrors = Integer.MAX_VALUE;
+            for (String candidate : candidates) {
+                if (!(factory.createFileFromText("GeneratedTest.java", JavaFileType.INSTANCE, candidate) instanceof PsiJavaFile file)
+                        || file.getClasses().length == 0) {
+                    continue;
+                }
+                int errors = PsiTreeUtil.findChildrenOfType(file, PsiErrorElement.class).size();
+                if (best == null || errors < bestErrors
+                        || errors == bestErrors && file.getTextLength() > best.getTextLength()) {
+                    best = file;
+                    bestErrors = errors;
+                }
+            }
+            if (best == null) {
+                return new Extraction(response.strip(), List.of("nessuna classe Java trovata nella risposta"));
+            }
+
+            String code = normalize(best, factory.createFileFromText("Source.java", JavaFileType.INSTANCE, sourceCode));
+            return new Extraction(code, problems(best));
+        });
+    }
+
+    /**
+     * Porzioni della risposta che possono contenere la compilation unit, in un solo passaggio sul testo
+     */
+    private static List<String> candidates(String response) {
+        List<String> candidates = new ArrayList<>();
+        Matcher fenced = FENCED_BLOCK.matcher(response);
+        while (fenced.find()) {
+            candidates.add(fenced.group(2));
+        }
+        if (candidates.isEmpty()) {
+            // Senza blocchi: dal primo inizio plausibile di codice fino all'ultima graffa chiusa
+            Matcher start = UNIT_START.matcher(response);
+            int end = response.lastIndexOf('}');
+            if (start.find() && end > start.start()) {
+                candidates.add(response.substring(start.start(), end + 1));
+            }
+            candidates.add(response);
+        }
+        return candidates;
+    }
+
+    /**
+     * Allinea package e nome della classe di test a quelli della classe sotto test
+     */
+    private static String normalize(PsiJavaFile generated, PsiFile source) {
+        String text = generated.getText().strip();
+        if (!(source instanceof PsiJavaFile sourceFile) || sourceFile.getClasses().length == 0) {
+            return text + "\n";
+        }
+        // Le sostituzioni vanno applicate dalla fine per non spostare gli offset delle precedenti
+        List<Replacement> replacements = new ArrayList<>();
+
+        // Con una sola classe generata il nome deve essere quello atteso dal writer; con più classi
+        // ogni classe di test corrisponde già a una classe del sorgente
+        PsiClass[] classes = generated.getClasses();
+        String expectedName = sourceFile.getClasses()[0].getName() + "Test";
+        if (classes.length == 1 && classes[0].getNameIdentifier() != null && !expectedName.equals(classes[0].getName())) {
+            String oldName = classes[0].getName();
+            for (PsiIdentifier identifier : PsiTreeUtil.findChildrenOfType(classes[0], PsiIdentifier.class)) {
+                if (identifier.getText().equals(oldName) && (identifier.getParent() == classes[0]
+                        || identifier.getParent() instanceof PsiMethod method && method.isConstructor()
+                        || identifier.getParent() instanceof PsiJavaCodeReferenceElement)) {
+                    replacements.add(new Replacement(identifier.getTextRange(), expectedName));
+                }
+            }
+        }
+
+        String expectedPackage = sourceFile.getPackageName();
+        PsiPackageStatement packageStatement = generated.getPackageStatement();
+        String prefix = "";
+        if (packageStatement != null && !packageStatement.getPackageName().equals(expectedPackage)) {
+            replacements.add(new Replacement(packageStatement.getTextRange(),
+                    expectedPackage.isEmpty() ? "" : "package " + expectedPackage + ";"));
+        } else if (packageStatement == null && !expectedPackage.isEmpty()) {
+            prefix = "package " + expectedPackage + ";\n\n";
+        }
+
+        StringBuilder normalized = new StringBuilder(generated.getText());
+        replacements.sort((first, second) -> Integer.compare(second.range().getStartOffset(), first.range().getStartOffset()));
+        for (Replacement replacement : replacements) {
+            normalized.replace(replacement.range().getStartOffset(), replacement.range().getEndOffset(), replacement.text());
+        }
+        return prefix + normalized.toString().strip() + "\n";
+    }
+
+    private record Replacement(TextRange range, String text) {
+    }
+
+    private static List<String> problems(PsiJavaFile file) {
+        List<String> problems = new ArrayList<>();
+        Collection<PsiErrorElement> errors = PsiTreeUtil.findChildrenOfType(file, PsiErrorElement.class);
+        if (!errors.isEmpty()) {
+            PsiErrorElement first = errors.iterator().next();
+            problems.add(String.format("%d errori di sintassi, il primo: %s", errors.size(), first.getErrorDescription()));
+        }
+        boolean hasTests = false;
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(file, PsiMethod.class)) {
+            if (CandidateEvaluator.isTestMethod(method)) {
+                hasTests = true;
+                break;
+            }
+        }
+        if (!hasTests) {
+            problems.add("nessun metodo di test nella classe generata");
+        }
+        return problems;
+    }
+}
@@ -0,0 +1,115 @@
+package ai.agents;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import files.TestMemberKeys;
+
+import java.util.*;
+
+/**
+ * Unisce in una sola classe i test generati separatamente per gruppi di metodi della stessa classe.
+ * <p>
+ * La prima classe fa da base; delle altre vengono aggiunti solo gli import, i campi, i metodi e le
+ * classi interne che mancano, così fixture e metodi di setup comuni compaiono una volta sola. Un metodo
+ * di test con la stessa firma di uno già presente ma un corpo diverso viene rinominato, non scartato.
+ * Lavora sul testo, senza modificare file: il risultato passa poi dal normale flusso di scrittura.
+ * Import e membri vengono riconosciuti con le stesse chiavi del merge con il file esistente
+ * ({@link TestMemberKeys}).
+ */
+final class GeneratedTestMerger {
+
+    private GeneratedTestMerger() {
+    }
+
+    static String merge(Project project, List<String> sources) {
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        return ReadAction.compute(() -> {
+            PsiFileFactory factory = PsiFileFactory.getInstance(project);
+            List<PsiJavaFile> files = new ArrayList<>();
+            for (String source : sources) {
+                if (factory.createFileFromText("GeneratedTest.java", JavaFileType.INSTANCE, source) instanceof PsiJavaFile file
+                        && file.getClasses().length > 0) {
+                    files.add(file);
+                }
+            }
+            if (files.isEmpty()) {
+                return sources.get(0);
+            }
+
+            PsiJavaFile base = files.get(0);
+            PsiClass baseClass = base.getClasses()[0];
+            Set<String> imports = TestMemberKeys.imports(base);
+            Set<String> members = new HashSet<>();
+            for (PsiElement member : baseClass.getChildren()) {
+                String key = TestMemberKeys.memberKey(member);
+                if (key != null) {
+                    members.add(key);
+                }
+            }
+            Set<String> texts = new HashSet<>();
+            for (PsiMethod method : baseClass.getMethods()) {
+                texts.add(TestMemberKeys.normalize(method.getText()));
+            }
+
+            StringBuilder addedImports = new StringBuilder();
+            StringBuilder addedMembers = new StringBuilder();
+            for (PsiJavaFile file : files.subList(1, files.size())) {
+                PsiImportList importList = file.getImportList();
+                if (importList != null) {
+                    for (PsiImportStatementBase statement : importList.getAllImportStatements()) {
+                        if (imports.add(TestMemberKeys.normalize(statement.getText()))) {
+                            addedImports.append("\n").append(statement.getText());
+                        }
+                    }
+                }
+                for (PsiElement member : file.getClasses()[0].getChildren()) {
+                    String key = TestMemberKeys.memberKey(member);
+                    if (key != null && members.add(key)) {
+                        texts.add(TestMemberKeys.normalize(member.getText()));
+                        addedMembers.append("\n\n    ").append(member.getText());
+                    } else if (key != null && member instanceof PsiMethod method && CandidateEvaluator.isTestMethod(method)
+                            && method.getNameIdentifier() != null && texts.add(TestMemberKeys.normalize(method.getText()))) {
+                        addedMembers.append("\n\n    ").append(renamed(method, members));
+                    }
+                }
+            }
+
+            // Inserimenti dalla fine: prima i membri prima della graffa di chiusura, poi gli import
+            StringBuilder merged = new StringBuilder(base.getText());
+            PsiElement closingBrace = baseClass.getRBrace();
+            if (closingBrace != null) {
+                merged.insert(closingBrace.getTextRange().getStartOffset(), addedMembers.append("\n").toString());
+            }
+            merged.insert(importsEnd(base), addedImports.toString());
+            return merged.toString();
+        });
+    }
+
+    /**
+     * Testo del metodo di test con un nome libero, ottenuto aggiungendo un suffisso numerico
+     */
+    private static String renamed(PsiMethod method, Set<String> members) {
+        String signature = TestMemberKeys.signature(method);
+        String suffix = signature.substring(signature.indexOf('('));
+        int index = 2;
+        while (!members.add("method:" + method.getName() + "_" + index + suffix)) {
+            index++;
+        }
+        int nameStart = method.getNameIdentifier().getStartOffsetInParent();
+        String text = method.getText();
+        return text.substring(0, nameStart) + method.getName() + "_" + index + text.substring(nameStart + method.getName().length());
+    }
+
+    private static int importsEnd(PsiJavaFile file) {
+        PsiImportList importList = file.getImportList();
+        if (importList != null && importList.getTextLength() > 0) {
+            return importList.getTextRange().getEndOffset();
+        }
+        PsiPackageStatement packageStatement = file.getPackageStatement();
+        return packageStatement != null ? packageStatement.getTextRange().getEndOffset() : 0;
+    }
+}
@@ -0,0 +1,12 @@
+package ai.agents;
+
+/**
+ * Dati passati al modello per una generazione di test
+ */
+record GenerationInput(String code, String dependencyAnalysis, String contextAnalysis,
+                       String projectDependencies, String existingTests, String targetMethods) {
+
+    String generate(JunitGeneratorAgent.Service service) {
+        return service.generate(code, dependencyAnalysis, contextAnalysis, projectDependencies, existingTests, targetMethods);
+    }
+}
@@ -1,7 +1,8 @@
 package ai.agents;
 
+import ai.NodeContract;
 import ai.State;
-import dev.langchain4j.data.message.AiMessage;
+import com.intellij.openapi.project.Project;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.SystemMessage;
@@ -9,31 +10,95 @@ import dev.langchain4j.service.V;
 import org.bsc.langgraph4j.action.NodeAction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import settings.JUnitGeneratorSettings;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
 
 import static ai.Prompt.JUNIT_GENERATOR_PROMPT;
+import static ai.Prompt.JUNIT_GENERATOR_USER_PROMPT;
 
 public class JunitGeneratorAgent implements NodeAction<State> {
 
     private static final Logger log = LoggerFactory.getLogger(JunitGeneratorAgent.class);
 
+    public static final NodeContract CONTRACT = new NodeContract("junit_generator",
+            Set.of(State.CODE, State.PROJECT_DEPENDENCIES, State.DEPENDENCY_ANALYSIS, State.CONTEXT_ANALYSIS,
+                    State.EXISTING_TESTS, State.TARGET_METHODS),
+            Set.of(State.GENERATED_TESTS));
+
     interface Service {
         @SystemMessage(JUNIT_GENERATOR_PROMPT)
-        String generate(@dev.langchain4j.service.UserMessage  @V("code") String code,
+        @dev.langchain4j.service.UserMessage(JUNIT_GENERATOR_USER_PROMPT)
+        String generate(@V("code") String code,
                         @V("dependency_analysis") String dependencyAnalysis,
-                        @V("context_analysis") String contextAnalysis);
+                        @V("context_analysis") String contextAnalysis,
+                        @V("project_dependencies") String projectDependencies,
+                        @V("existing_tests") String existingTests,
+                        @V("target_methods") String targetMethods);
     }
 
+    // Valore passato al modello quando la classe non ha ancora test
+    private static final String NO_EXISTING_TESTS = "Nessun test esistente";
+
+    // Valore passato al modello quando vanno testati tutti i metodi della classe
+    static final String ALL_METHODS = "Tutti i metodi della classe";
+
     final Service service;
 
-    public JunitGeneratorAgent(ChatLanguageModel model) {
+    // Bozze speculative in corso, indicizzate per codice sorgente; annullarle interrompe la chiamata al modello
+    private final Map<String, FutureTask<GeneratedCodeExtractor.Extraction>> drafts = new ConcurrentHashMap<>();
+
+    // Numero di candidati generati in parallelo; con 1 si usa la generazione singola
+    private final int candidateCount;
+    private final CandidateEvaluator candidateEvaluator;
+    private final GeneratedCodeExtractor extractor;
+    private final ContextAssembler contextAssembler;
+    private final Project project;
+
+    // Executor per bozze e candidati, che eseguono chiamate bloccanti al modello
+    private final Executor executor;
+    private Consumer<List<CandidateReport>> candidateListener = reports -> {};
+    private Consumer<List<String>> problemListener = problems -> {};
+
+    /**
+     * Candidato generato insieme al suo esito di validazione
+     */
+    private record Candidate(GeneratedCodeExtractor.Extraction extraction, CandidateReport report) {
+    }
+
+    public JunitGeneratorAgent(ChatLanguageModel model, Project project, JUnitGeneratorSettings.Options options, Executor executor) {
         service = AiServices.builder(Service.class)
                 .chatLanguageModel(model)
                 .build();
+        this.project = project;
+        this.candidateCount = Math.max(1, options.candidateCount);
+        this.candidateEvaluator = new CandidateEvaluator(project);
+        this.extractor = new GeneratedCodeExtractor(project);
+        this.contextAssembler = new ContextAssembler(project, options.contextWindowTokens, options.reservedOutputTokens,
+                options.maxMethodsPerRequest);
+        this.executor = executor;
+    }
+
+    /**
+     * Imposta il listener che riceve l'esito di tutti i candidati quando la modalità multi-candidato è attiva
+     */
+    public void setCandidateListener(Consumer<List<CandidateReport>> candidateListener) {
+        this.candidateListener = candidateListener;
+    }
+
+    /**
+     * Imposta il listener che riceve i problemi strutturali rimasti nel test scelto, prima che venga scritto
+     */
+    public void setProblemListener(Consumer<List<String>> problemListener) {
+        this.problemListener = problemListener;
     }
 
     @Override
@@ -44,42 +109,219 @@ public class JunitGeneratorAgent implements NodeAction<State> {
         // Otteniamo il codice e le analisi precedenti dallo stato
         String code = state.code().orElseThrow(() -> new IllegalStateException("Codice non trovato nello stato"));
         String dependencyAnalysis = state.dependencyAnalysis().orElse("Analisi dipendenze non disponibile");
-        String contextAnalysis = state.instruction().orElse("Analisi contesto non disponibile");
+        String contextAnalysis = state.contextAnalysis().orElse("Analisi contesto non disponibile");
+        String projectDependencies = state.projectDependencies().orElse("Nessuna dipendenza disponibile");
+        String existingTests = existingTestsOrDefault(state.existingTests().orElse(null));
+        String targetMethods = targetMethodsOrDefault(state.targetMethods().orElse(null));
+        List<GenerationInput> inputs = contextAssembler.fit(new GenerationInput(code, dependencyAnalysis, contextAnalysis,
+                projectDependencies, existingTests, targetMethods));
+        GenerationInput input = inputs.get(0);
 
-        log.info("Generazione JUnit tests con tutte le informazioni disponibili");
-        String junitTests = service.generate(code, dependencyAnalysis, contextAnalysis);
+        GeneratedCodeExtractor.Extraction junitTests = null;
+        if (inputs.size() > 1) {
+            // Classe troppo grande per una sola richiesta: niente bozze né candidati, una parte per cluster di metodi
+            cancelDraft(code);
+            junitTests = generateChunks(inputs, code, projectDependencies);
+        }
+
+        // Se è stata avviata una bozza speculativa la usiamo, a meno che le analisi rivelino differenze rilevanti
+        FutureTask<GeneratedCodeExtractor.Extraction> draft = drafts.remove(code);
+        if (draft != null && junitTests == null) {
+            try {
+                GeneratedCodeExtractor.Extraction draftTests = draft.get();
+                SpeculationCheck.Outcome outcome = SpeculationCheck.compare(draftTests.code(), code, dependencyAnalysis, contextAnalysis);
+                if (outcome.material()) {
+                    log.info("Bozza speculativa scartata: {}", String.join("; ", outcome.reasons()));
+                } else {
+                    log.info("Bozza speculativa confermata dalle analisi, nessuna rigenerazione necessaria");
+                    junitTests = draftTests;
+                }
+            } catch (ExecutionException e) {
+                log.warn("Bozza speculativa fallita, procedo con la generazione completa: {}", e.getCause().getMessage());
+            } catch (CancellationException e) {
+                log.info("Bozza speculativa annullata, procedo con la generazione completa");
+            }
+        }
 
-        // Verifica se il risultato contiene codice Java valido
-        junitTests = ensureValidJavaCode(junitTests);
+        if (junitTests == null && candidateCount > 1) {
+            junitTests = generateBestCandidate(input);
+        } else if (junitTests == null) {
+            log.info("Generazione JUnit tests con tutte le informazioni disponibili");
+            // Estrae il codice Java dalla risposta e lo allinea a package e nome attesi
+            junitTests = extractor.extract(input.generate(service), code);
+        }
 
         log.info("JUnit tests generati con successo");
+        if (!junitTests.problems().isEmpty()) {
+            log.warn("Problemi nel test generato: {}", String.join("; ", junitTests.problems()));
+            try {
+                problemListener.accept(junitTests.problems());
+            } catch (Exception e) {
+                log.error("Errore durante la notifica dei problemi: {}", e.getMessage());
+            }
+        }
 
-        // Aggiungiamo il messaggio finale con i test JUnit
-        result.put("messages", AiMessage.from(junitTests));
+        // Il codice dei test è l'output finale del grafo
+        result.put(State.GENERATED_TESTS, junitTests.code());
 
         return result;
     }
 
     /**
-     * Assicura che l'output sia un codice Java valido, rimuovendo eventuali blocchi di codice
-     * o altri elementi non validi, e formattando i commenti correttamente.
+     * Genera {@code candidateCount} candidati in parallelo, li valida man mano che arrivano e restituisce
+     * quello con il punteggio migliore. L'esito di tutti i candidati viene inviato al listener.
      */
-    private String ensureValidJavaCode(String code) {
-        log.debug("Verifica e pulizia del codice Java generato");
+    private GeneratedCodeExtractor.Extraction generateBestCandidate(GenerationInput input) {
+        log.info("Generazione di {} candidati in parallelo", candidateCount);
+
+        List<CompletableFuture<Candidate>> futures = new ArrayList<>();
+        for (int i = 1; i <= candidateCount; i++) {
+            final int index = i;
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> generateCandidate(index, input),
+                    executor));
+        }
 
-        // Rimuovi eventuali blocchi di codice markdown ```java ... ```
-        Pattern codeBlockPattern = Pattern.compile("```java\\s*\\n([\\s\\S]*?)```", Pattern.MULTILINE);
-        Matcher codeBlockMatcher = codeBlockPattern.matcher(code);
+        List<Candidate> candidates = futures.stream().map(CompletableFuture::join).toList();
 
-        if (codeBlockMatcher.find()) {
-            log.debug("Trovato blocco di codice markdown, estraendo solo il codice Java");
-            code = codeBlockMatcher.group(1);
+        Candidate best = candidates.stream()
+                .filter(candidate -> candidate.report().error() == null)
+                .max(Comparator.comparingDouble(candidate -> candidate.report().score()))
+                .orElse(null);
+
+        // L'esito dei candidati viene notificato anche quando sono falliti tutti, prima di segnalare l'errore
+        List<CandidateReport> reports = candidates.stream()
+                .map(candidate -> candidate == best ? candidate.report().asSelected() : candidate.report())
+                .toList();
+        try {
+            candidateListener.accept(reports);
+        } catch (Exception e) {
+            log.error("Errore durante la notifica dei candidati: {}", e.getMessage());
+        }
+        if (best == null) {
+            throw new IllegalStateException("Nessun candidato generato con successo: " + candidates.get(0).report().error());
         }
 
-        // Rimuovi eventuali intestazioni o testo esplicativo all'inizio
-        code = code.replaceAll("^\\s*(?:#.*|Here's the.*|The following.*)[^\\n]*\\n+", "");
+        log.info("Scelto il candidato #{} con punteggio {}", best.report().index(), best.report().score());
+        return best.extraction();
+    }
+
+    /**
+     * Genera in parallelo i test di ogni cluster di metodi e li unisce in una sola classe. Se la classe non ha
+     * ancora test, tutte le parti partono dallo stesso scheletro di setup, che fa da base dell'unione.
+     * Le parti procedono in parallelo fino al limite di richieste concorrenti dello scheduler.
+     */
+    private GeneratedCodeExtractor.Extraction generateChunks(List<GenerationInput> inputs, String code, String projectDependencies) {
+        log.info("Generazione in {} parti in parallelo", inputs.size());
+        List<String> parts = new ArrayList<>();
+        Optional<String> skeleton = NO_EXISTING_TESTS.equals(inputs.get(0).existingTests())
+                ? SetupSkeleton.build(project, code, projectDependencies)
+                : Optional.empty();
+        skeleton.ifPresent(parts::add);
+
+        List<CompletableFuture<GeneratedCodeExtractor.Extraction>> futures = new ArrayList<>();
+        for (GenerationInput input : inputs) {
+            GenerationInput part = skeleton.map(shared -> new GenerationInput(input.code(), input.dependencyAnalysis(),
+                    input.contextAnalysis(), input.projectDependencies(), shared, input.targetMethods())).orElse(input);
+            futures.add(CompletableFuture.supplyAsync(() -> extractor.extract(part.generate(service), part.code()), executor));
+        }
+
+        List<String> problems = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                GeneratedCodeExtractor.Extraction part = futures.get(i).join();
+                parts.add(part.code());
+                problems.addAll(part.problems());
+            } catch (CompletionException e) {
+                // Una parte fallita non invalida le altre: i suoi metodi restano senza test
+                log.warn("Generazione della parte {} fallita: {}", i + 1, e.getMessage());
+                problems.add("test non generati per: " + inputs.get(i).targetMethods().replace('\n', ','));
+            }
+        }
+        if (parts.isEmpty() || skeleton.isPresent() && parts.size() == 1) {
+            throw new IllegalStateException("Nessuna parte dei test generata con successo");
+        }
+        // Il risultato unito ripassa dall'estrattore, che normalizza package e nome sul sorgente completo
+        GeneratedCodeExtractor.Extraction merged = extractor.extract(GeneratedTestMerger.merge(project, parts), code);
+        List<String> allProblems = new ArrayList<>(merged.problems());
+        problems.stream().distinct().filter(problem -> !allProblems.contains(problem)).forEach(allProblems::add);
+        return new GeneratedCodeExtractor.Extraction(merged.code(), allProblems);
+    }
+
+    private Candidate generateCandidate(int index, GenerationInput input) {
+        long start = System.nanoTime();
+        GeneratedCodeExtractor.Extraction tests;
+        try {
+            tests = extractor.extract(input.generate(service), input.code());
+        } catch (Exception e) {
+            log.warn("Generazione del candidato #{} fallita: {}", index, e.getMessage());
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            return new Candidate(null, new CandidateReport(index, elapsed, 0, 0, 0, 0, 0, 0,
+                    Double.NEGATIVE_INFINITY, false, e.getMessage()));
+        }
+        long generated = System.nanoTime();
+
+        CandidateEvaluator.Evaluation evaluation = candidateEvaluator.evaluate(input.code(), tests.code());
+        long validated = System.nanoTime();
+
+        CandidateReport report = new CandidateReport(index,
+                (generated - start) / 1_000_000,
+                (validated - generated) / 1_000_000,
+                evaluation.syntaxErrors(),
+                evaluation.compileErrors(),
+                evaluation.testMethods(),
+                evaluation.coveredMethods(),
+                evaluation.targetMethods(),
+                evaluation.score(),
+                false,
+                null);
+        log.debug("Candidato #{} validato: {}", index, report);
+        return new Candidate(tests, report);
+    }
+
+    /**
+     * Avvia in background la generazione speculativa di una bozza basata solo sul codice e sul
+     * riepilogo deterministico delle dipendenze del progetto. La bozza viene confrontata con le
+     * analisi complete quando il nodo junit_generator viene eseguito.
+     */
+    public void startDraft(String code, String projectDependencies, String existingTests, String targetMethods) {
+        log.info("Avvio generazione speculativa dei test");
+        List<GenerationInput> inputs = contextAssembler.fit(new GenerationInput(code,
+                "Analisi dipendenze non ancora disponibile, usa le dipendenze dichiarate nel progetto:\n" + projectDependencies,
+                "Analisi contesto non ancora disponibile, deducila dal codice",
+                projectDependencies,
+                existingTestsOrDefault(existingTests),
+                targetMethodsOrDefault(targetMethods)));
+        if (inputs.size() > 1) {
+            log.info("Classe troppo grande per una bozza speculativa, attendo le analisi");
+            return;
+        }
+        GenerationInput input = inputs.get(0);
+        FutureTask<GeneratedCodeExtractor.Extraction> draft = new FutureTask<>(() -> extractor.extract(input.generate(service), code));
+        FutureTask<GeneratedCodeExtractor.Extraction> previous = drafts.put(code, draft);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        executor.execute(draft);
+    }
+
+    /**
+     * Annulla la bozza speculativa del codice indicato, se è ancora in corso. Il grafo la chiama quando
+     * l'esecuzione termina senza passare dal generatore (errore di un nodo precedente) e dopo ogni esecuzione,
+     * così nessuna chiamata al modello prosegue per un risultato che verrebbe scartato.
+     */
+    public void cancelDraft(String code) {
+        FutureTask<GeneratedCodeExtractor.Extraction> draft = drafts.remove(code);
+        if (draft != null && draft.cancel(true)) {
+            log.info("Bozza speculativa annullata");
+        }
+    }
+
+    private static String existingTestsOrDefault(String existingTests) {
+        return existingTests == null || existingTests.isBlank() ? NO_EXISTING_TESTS : existingTests;
+    }
 
-        log.debug("Codice Java pulito e validato");
-        return code;
+    private static String targetMethodsOrDefault(String targetMethods) {
+        return targetMethods == null || targetMethods.isBlank() ? ALL_METHODS : targetMethods;
     }
-}
\ No newline at end of file
+}
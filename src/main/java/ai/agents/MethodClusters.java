@@ -0,0 +1,122 @@
+package ai.agents;
+
+import java.util.*;
+
+/**
+ * Raggruppa i metodi da testare in cluster che condividono le stesse fixture.
+ * <p>
+ * Le caratteristiche di un metodo sono i campi della classe che usa, direttamente o attraverso i
+ * metodi della stessa classe che chiama. Ogni metodo, nell'ordine del sorgente, va nel cluster più
+ * simile (indice di Jaccard sui campi) che ha ancora posto, altrimenti ne apre uno nuovo; i cluster
+ * troppo piccoli vengono poi uniti al più affine, così il numero di richieste resta contenuto.
+ */
+final class MethodClusters {
+
+    // Somiglianza minima perché un metodo entri in un cluster esistente
+    private static final double MIN_SIMILARITY = 0.34;
+
+    private MethodClusters() {
+    }
+
+    /**
+     * Metodo da raggruppare
+     *
+     * @param signature Firma del metodo
+     * @param fields    Campi della classe usati dal metodo e dai metodi che chiama
+     */
+    record Member(String signature, Set<String> fields) {
+    }
+
+    private static final class Cluster {
+        final List<Member> members = new ArrayList<>();
+        final Set<String> fields = new HashSet<>();
+
+        void add(Member member) {
+            members.add(member);
+            fields.addAll(member.fields());
+        }
+    }
+
+    /**
+     * @param members Metodi da raggruppare, nell'ordine del sorgente
+     * @param maxSize Numero massimo di metodi per cluster
+     * @return Firme dei metodi di ogni cluster, nell'ordine del sorgente
+     */
+    static List<List<String>> cluster(List<Member> members, int maxSize) {
+        int limit = Math.max(1, maxSize);
+        List<Cluster> clusters = new ArrayList<>();
+        for (Member member : members) {
+            Cluster best = null;
+            double bestSimilarity = -1;
+            for (Cluster cluster : clusters) {
+                double similarity = similarity(cluster.fields, member.fields());
+                if (cluster.members.size() < limit && similarity > bestSimilarity) {
+                    best = cluster;
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best == null || bestSimilarity < MIN_SIMILARITY) {
+                best = new Cluster();
+                clusters.add(best);
+            }
+            best.add(member);
+        }
+
+        // I cluster piccoli costano una richiesta intera: vengono uniti al cluster più affine con posto
+        int minSize = Math.max(1, limit / 3);
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            clusters.sort(Comparator.comparingInt(cluster -> cluster.members.size()));
+            for (Cluster small : clusters) {
+                if (small.members.size() >= minSize) {
+                    break;
+                }
+                Cluster target = null;
+                double targetSimilarity = -1;
+                for (Cluster other : clusters) {
+                    double similarity = similarity(other.fields, small.fields);
+                    if (other != small && other.members.size() + small.members.size() <= limit
+                            && similarity > targetSimilarity) {
+                        target = other;
+                        targetSimilarity = similarity;
+                    }
+                }
+                if (target != null) {
+                    small.members.forEach(target::add);
+                    clusters.remove(small);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+
+        Map<String, Integer> order = new HashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            order.put(members.get(i).signature(), i);
+        }
+        List<List<String>> result = new ArrayList<>();
+        for (Cluster cluster : clusters) {
+            List<String> signatures = new ArrayList<>();
+            for (Member member : cluster.members) {
+                signatures.add(member.signature());
+            }
+            signatures.sort(Comparator.comparingInt(order::get));
+            result.add(signatures);
+        }
+        result.sort(Comparator.comparingInt(signatures -> order.get(signatures.get(0))));
+        return result;
+    }
+
+    private static double similarity(Set<String> first, Set<String> second) {
+        if (first.isEmpty() && second.isEmpty()) {
+            // Metodi senza stato: stanno bene insieme
+            return 1;
+        }
+        Set<String> union = new HashSet<>(first);
+        union.addAll(second);
+        Set<String> intersection = new HashSet<>(first);
+        intersection.retainAll(second);
+        return (double) intersection.size() / union.size();
+    }
+}
@@ -0,0 +1,127 @@
+package ai.agents;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Scheletro di classe di test condiviso dalle generazioni in più parti della stessa classe.
+ * <p>
+ * Contiene gli import, l'istanza della classe sotto test e un metodo di setup che la crea: i parametri
+ * del costruttore con un valore di esempio noto lo usano, gli altri diventano mock se il progetto usa
+ * Mockito. Con JUnit 5 i mock vengono inizializzati da {@code MockitoExtension} solo se il progetto ha
+ * mockito-junit-jupiter, altrimenti da {@code MockitoAnnotations.openMocks} nel setup. Ogni parte riceve
+ * lo scheletro come test esistente e genera solo i propri metodi di test, che vengono poi uniti allo
+ * scheletro; così tutte le parti usano le stesse fixture.
+ */
+final class SetupSkeleton {
+
+    private SetupSkeleton() {
+    }
+
+    /**
+     * @return vuoto se la classe non può essere istanziata dallo scheletro (astratta, interfaccia, costruttori privati)
+     */
+    static Optional<String> build(Project project, String code, String projectDependencies) {
+        boolean junit4 = TemplateTestGenerator.usesJUnit4(projectDependencies);
+        boolean mockito = projectDependencies != null && projectDependencies.contains("mockito");
+        // L'estensione JUnit 5 di Mockito è in un artefatto separato da mockito-core
+        boolean mockitoExtension = projectDependencies != null && projectDependencies.contains("mockito-junit-jupiter");
+        return ReadAction.compute(() -> {
+            if (!(PsiFileFactory.getInstance(project).createFileFromText("Source.java", JavaFileType.INSTANCE, code)
+                    instanceof PsiJavaFile javaFile) || javaFile.getClasses().length == 0) {
+                return Optional.empty();
+            }
+            PsiClass psiClass = javaFile.getClasses()[0];
+            if (psiClass.getName() == null || psiClass.isInterface() || psiClass.isEnum() || psiClass.isRecord()
+                    || psiClass.hasModifierProperty(PsiModifier.ABSTRACT)) {
+                return Optional.empty();
+            }
+
+            // Il costruttore non privato con più parametri è quello che inietta i collaboratori
+            PsiMethod constructor = null;
+            for (PsiMethod candidate : psiClass.getConstructors()) {
+                if (!candidate.hasModifierProperty(PsiModifier.PRIVATE) && (constructor == null
+                        || candidate.getParameterList().getParametersCount() > constructor.getParameterList().getParametersCount())) {
+                    constructor = candidate;
+                }
+            }
+            if (constructor == null && psiClass.getConstructors().length > 0) {
+                return Optional.empty();
+            }
+
+            List<String> mocks = new ArrayList<>();
+            List<String> arguments = new ArrayList<>();
+            PsiParameter[] parameters = constructor != null ? constructor.getParameterList().getParameters() : new PsiParameter[0];
+            for (PsiParameter parameter : parameters) {
+                String raw = parameter.getTypeElement() != null ? parameter.getTypeElement().getText() : parameter.getType().getPresentableText();
+                int generic = raw.indexOf('<');
+                String simple = (generic >= 0 ? raw.substring(0, generic) : raw).trim();
+                simple = simple.substring(simple.lastIndexOf('.') + 1);
+                String[] values = TemplateTestGenerator.sampleValues(raw, simple);
+                if (values != null) {
+                    arguments.add(values[0]);
+                } else if (mockito && !(parameter.getType() instanceof PsiPrimitiveType) && !raw.contains("[")) {
+                    mocks.add("    @Mock\n    private " + raw + " " + parameter.getName() + ";\n\n");
+                    arguments.add(parameter.getName());
+                } else if (parameter.getType() instanceof PsiPrimitiveType) {
+                    return Optional.empty();
+                } else {
+                    arguments.add("null");
+                }
+            }
+
+            String className = psiClass.getName();
+            String subject = Character.toLowerCase(className.charAt(0)) + className.substring(1);
+            StringBuilder skeleton = new StringBuilder();
+            if (!javaFile.getPackageName().isEmpty()) {
+                skeleton.append("package ").append(javaFile.getPackageName()).append(";\n\n");
+            }
+            // Gli import del sorgente rendono visibili i tipi dei collaboratori
+            PsiImportList importList = javaFile.getImportList();
+            if (importList != null) {
+                for (PsiImportStatement statement : importList.getImportStatements()) {
+                    skeleton.append(statement.getText()).append('\n');
+                }
+            }
+            if (junit4) {
+                skeleton.append("import org.junit.Before;\nimport org.junit.Test;\n");
+                if (!mocks.isEmpty()) {
+                    skeleton.append("import org.junit.runner.RunWith;\nimport org.mockito.Mock;\nimport org.mockito.junit.MockitoJUnitRunner;\n");
+                }
+                skeleton.append("\nimport static org.junit.Assert.*;\n\n");
+                if (!mocks.isEmpty()) {
+                    skeleton.append("@RunWith(MockitoJUnitRunner.class)\n");
+                }
+            } else {
+                skeleton.append("import org.junit.jupiter.api.BeforeEach;\nimport org.junit.jupiter.api.Test;\n");
+                if (!mocks.isEmpty() && mockitoExtension) {
+                    skeleton.append("import org.junit.jupiter.api.extension.ExtendWith;\nimport org.mockito.Mock;\nimport org.mockito.junit.jupiter.MockitoExtension;\n");
+                } else if (!mocks.isEmpty()) {
+                    skeleton.append("import org.mockito.Mock;\nimport org.mockito.MockitoAnnotations;\n");
+                }
+                skeleton.append("\nimport static org.junit.jupiter.api.Assertions.*;\n\n");
+                if (!mocks.isEmpty() && mockitoExtension) {
+                    skeleton.append("@ExtendWith(MockitoExtension.class)\n");
+                }
+            }
+            skeleton.append("public class ").append(className).append("Test {\n\n");
+            mocks.forEach(skeleton::append);
+            skeleton.append("    private ").append(className).append(' ').append(subject).append(";\n\n")
+                    .append(junit4 ? "    @Before\n    public void setUp() {\n" : "    @BeforeEach\n    void setUp() {\n");
+            if (!junit4 && !mocks.isEmpty() && !mockitoExtension) {
+                // Senza l'estensione i campi @Mock vanno inizializzati a mano prima di creare la classe sotto test
+                skeleton.append("        MockitoAnnotations.openMocks(this);\n");
+            }
+            skeleton.append("        ").append(subject).append(" = new ").append(className)
+                    .append('(').append(String.join(", ", arguments)).append(");\n")
+                    .append("    }\n}\n");
+            return Optional.of(skeleton.toString());
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package ai.agents;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Confronta una bozza di test generata in modo speculativo con le analisi completate, per decidere
+ * se la bozza può essere usata così com'è oppure va rigenerata.
+ * <p>
+ * Sono considerate rilevanti solo le differenze che renderebbero la bozza sbagliata: un framework di
+ * test diverso da quello indicato dall'analisi delle dipendenze, una libreria di mock non disponibile,
+ * oppure collaboratori che l'analisi del contesto indica di simulare e che la bozza non usa.
+ */
+final class SpeculationCheck {
+
+    enum Framework { JUNIT5, JUNIT4, TESTNG }
+
+    private static final Pattern TYPE_NAME = Pattern.compile("\\b[A-Z][A-Za-z0-9]+\\b");
+    private static final Pattern MOCK_WORD = Pattern.compile("(?i)\\b(mock|stub|simula)");
+
+    // Nomi troppo generici per indicare un collaboratore della classe
+    private static final Set<String> IGNORED_TYPES = Set.of(
+            "String", "Object", "Integer", "Long", "Boolean", "Double", "List", "Map", "Set", "Optional",
+            "Exception", "RuntimeException", "Override", "Test", "Mock", "Mockito", "JUnit", "Java");
+
+    private SpeculationCheck() {
+    }
+
+    /**
+     * Risultato del confronto
+     *
+     * @param material Se true la bozza va rigenerata
+     * @param reasons  Motivi della rigenerazione
+     */
+    record Outcome(boolean material, List<String> reasons) {
+    }
+
+    static Outcome compare(String draft, String code, String dependencyAnalysis, String contextAnalysis) {
+        List<String> reasons = new ArrayList<>();
+
+        Optional<Framework> expected = frameworkInAnalysis(dependencyAnalysis);
+        Optional<Framework> used = frameworkInTest(draft);
+        if (expected.isPresent() && used.isPresent() && expected.get() != used.get()) {
+            reasons.add("framework di test diverso: " + used.get() + " invece di " + expected.get());
+        }
+
+        boolean draftUsesMockito = draft.contains("org.mockito");
+        if (draftUsesMockito && !dependencyAnalysis.toLowerCase(Locale.ROOT).contains("mockito")) {
+            reasons.add("la bozza usa Mockito ma l'analisi delle dipendenze non lo indica");
+        }
+
+        Set<String> missingCollaborators = collaboratorsToMock(code, contextAnalysis);
+        missingCollaborators.removeIf(draft::contains);
+        if (!missingCollaborators.isEmpty()) {
+            reasons.add("collaboratori da simulare non presenti nella bozza: " + String.join(", ", missingCollaborators));
+        }
+
+        return new Outcome(!reasons.isEmpty(), reasons);
+    }
+
+    static Optional<Framework> frameworkInAnalysis(String analysis) {
+        String text = analysis.toLowerCase(Locale.ROOT);
+        if (text.contains("junit-jupiter") || text.contains("junit 5") || text.contains("junit5") || text.contains("jupiter")) {
+            return Optional.of(Framework.JUNIT5);
+        }
+        if (text.contains("testng")) {
+            return Optional.of(Framework.TESTNG);
+        }
+        if (text.contains("junit 4") || text.contains("junit4") || text.contains("junit:junit")) {
+            return Optional.of(Framework.JUNIT4);
+        }
+        return Optional.empty();
+    }
+
+    static Optional<Framework> frameworkInTest(String test) {
+        if (test.contains("org.junit.jupiter")) {
+            return Optional.of(Framework.JUNIT5);
+        }
+        if (test.contains("org.testng")) {
+            return Optional.of(Framework.TESTNG);
+        }
+        if (test.contains("org.junit.Test") || test.contains("org.junit.Before") || test.contains("org.junit.Assert")) {
+            return Optional.of(Framework.JUNIT4);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Tipi citati dall'analisi del contesto in frasi che parlano di mock e presenti nel codice sorgente
+     */
+    static Set<String> collaboratorsToMock(String code, String contextAnalysis) {
+        Set<String> collaborators = new TreeSet<>();
+        for (String line : contextAnalysis.split("\\R")) {
+            if (!MOCK_WORD.matcher(line).find()) {
+                continue;
+            }
+            Matcher matcher = TYPE_NAME.matcher(line);
+            while (matcher.find()) {
+                String type = matcher.group();
+                if (!IGNORED_TYPES.contains(type) && Pattern.compile("\\b" + type + "\\b").matcher(code).find()) {
+                    collaborators.add(type);
+                }
+            }
+        }
+        return collaborators;
+    }
+}
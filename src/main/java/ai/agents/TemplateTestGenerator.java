@@ -0,0 +1,596 @@
+package ai.agents;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Genera in modo deterministico, senza chiamate al modello, i test delle classi banali: record, enum,
+ * bean Lombok ({@code @Data}, {@code @Value}, {@code @Builder}) e classi valore con soli costruttori,
+ * getter, setter, equals/hashCode e toString.
+ * <p>
+ * La classe viene analizzata a livello di PSI sul testo del sorgente, quindi non serve che il progetto
+ * sia indicizzato. Se anche una sola classe top-level del file ha comportamento proprio (altri metodi,
+ * ereditarietà, costruttori con logica) il file non è banale e va generato con il grafo.
+ */
+public final class TemplateTestGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(TemplateTestGenerator.class);
+
+    private static final Set<String> OBJECT_METHODS = Set.of("equals", "hashCode", "toString");
+
+    private TemplateTestGenerator() {
+    }
+
+    /**
+     * Modo in cui il test costruisce un'istanza della classe
+     */
+    private enum Creation { CONSTRUCTOR, BUILDER, SETTERS }
+
+    /**
+     * Proprietà della classe con i due valori di esempio usati nei test
+     *
+     * @param getter Nome del getter, null se non c'è
+     * @param setter Nome del setter, null se non c'è
+     * @param first  Valore usato dall'istanza di esempio
+     * @param second Valore diverso, uguale a {@code first} se il tipo non ne ha uno noto
+     */
+    private record Property(String name, String type, boolean primitive, String getter, String setter,
+                            String first, String second) {
+
+        boolean varies() {
+            return !first.equals(second);
+        }
+    }
+
+    /**
+     * Descrizione della classe sufficiente a scriverne i test
+     */
+    private static final class Model {
+        final String className;
+        final List<Property> properties = new ArrayList<>();
+        Creation creation = Creation.SETTERS;
+        // Proprietà passate al costruttore o al builder, nell'ordine dei parametri
+        final List<Property> initialized = new ArrayList<>();
+        boolean equalsDefined;
+        // equals e hashCode confrontano tutte le proprietà (record, Lombok)
+        boolean equalsOnAllProperties;
+        boolean toStringDefined;
+        boolean toStringWithNames;
+
+        Model(String className) {
+            this.className = className;
+        }
+
+        /**
+         * Proprietà con un valore noto nell'istanza di esempio
+         */
+        List<Property> assigned() {
+            List<Property> assigned = new ArrayList<>(initialized);
+            for (Property property : properties) {
+                if (!assigned.contains(property) && property.setter() != null) {
+                    assigned.add(property);
+                }
+            }
+            return assigned;
+        }
+    }
+
+    /**
+     * @param project             Progetto corrente
+     * @param code                Sorgente della classe da testare
+     * @param projectDependencies Riepilogo delle dipendenze, per scegliere tra JUnit 4 e JUnit 5
+     * @return Il codice dei test se tutte le classi top-level del file sono banali, altrimenti vuoto
+     */
+    public static Optional<String> generate(Project project, String code, String projectDependencies) {
+        boolean junit4 = usesJUnit4(projectDependencies);
+        try {
+            return ReadAction.compute(() -> {
+                PsiFile psiFile = PsiFileFactory.getInstance(project)
+                        .createFileFromText("Source.java", JavaFileType.INSTANCE, code);
+                if (!(psiFile instanceof PsiJavaFile javaFile) || javaFile.getClasses().length == 0) {
+                    return Optional.empty();
+                }
+
+                List<String> testClasses = new ArrayList<>();
+                for (PsiClass psiClass : javaFile.getClasses()) {
+                    Optional<String> testClass = psiClass.isEnum()
+                            ? enumTests(psiClass, junit4)
+                            : analyze(psiClass).map(model -> valueTests(model, junit4));
+                    if (testClass.isEmpty()) {
+                        return Optional.empty();
+                    }
+                    testClasses.add(testClass.get());
+                }
+                log.info("Classi banali in {}: test generati da template", javaFile.getClasses()[0].getName());
+                return Optional.of(header(javaFile, junit4) + String.join("\n", testClasses));
+            });
+        } catch (RuntimeException e) {
+            log.warn("Generazione da template non riuscita, uso il modello: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * JUnit 4 solo se il progetto dichiara junit:junit e non JUnit 5
+     */
+    static boolean usesJUnit4(String projectDependencies) {
+        return projectDependencies != null
+                && projectDependencies.contains("junit:junit")
+                && !projectDependencies.contains("junit-jupiter");
+    }
+
+    private static String header(PsiJavaFile javaFile, boolean junit4) {
+        StringBuilder header = new StringBuilder();
+        if (!javaFile.getPackageName().isEmpty()) {
+            header.append("package ").append(javaFile.getPackageName()).append(";\n\n");
+        }
+        // Gli import del sorgente rendono visibili i tipi usati nei valori di esempio
+        PsiImportList importList = javaFile.getImportList();
+        if (importList != null) {
+            for (PsiImportStatement statement : importList.getImportStatements()) {
+                header.append(statement.getText()).append('\n');
+            }
+        }
+        header.append(junit4 ? "import org.junit.Test;\n\nimport static org.junit.Assert.*;\n\n"
+                : "import org.junit.jupiter.api.Test;\n\nimport static org.junit.jupiter.api.Assertions.*;\n\n");
+        return header.toString();
+    }
+
+    // --- Enum ---
+
+    private static Optional<String> enumTests(PsiClass psiClass, boolean junit4) {
+        List<String> constants = new ArrayList<>();
+        for (PsiField field : psiClass.getFields()) {
+            if (field instanceof PsiEnumConstant constant) {
+                // Una costante con corpo ridefinisce metodi: è comportamento da testare con il modello
+                if (constant.getInitializingClass() != null) {
+                    return Optional.empty();
+                }
+                constants.add(constant.getName());
+            }
+        }
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (!method.isConstructor() && getterField(method) == null) {
+                return Optional.empty();
+            }
+            if (method.isConstructor() && !assignsParametersOnly(method)) {
+                return Optional.empty();
+            }
+        }
+        if (constants.isEmpty() || psiClass.getInnerClasses().length > 0) {
+            return Optional.empty();
+        }
+
+        String name = psiClass.getName();
+        StringBuilder test = new StringBuilder("public class ").append(name).append("Test {\n\n");
+        test.append("    @Test\n    public void testValues() {\n")
+                .append("        assertEquals(").append(constants.size()).append(", ").append(name).append(".values().length);\n")
+                .append("    }\n\n");
+        test.append("    @Test\n    public void testValueOf() {\n");
+        for (String constant : constants) {
+            test.append("        assertEquals(").append(name).append('.').append(constant)
+                    .append(", ").append(name).append(".valueOf(\"").append(constant).append("\"));\n");
+        }
+        test.append("    }\n\n");
+        test.append("    @Test\n    public void testNameAndOrdinal() {\n");
+        for (int i = 0; i < constants.size(); i++) {
+            test.append("        assertEquals(\"").append(constants.get(i)).append("\", ")
+                    .append(name).append('.').append(constants.get(i)).append(".name());\n");
+            test.append("        assertEquals(").append(i).append(", ")
+                    .append(name).append('.').append(constants.get(i)).append(".ordinal());\n");
+        }
+        test.append("    }\n\n");
+        if (junit4) {
+            test.append("    @Test(expected = IllegalArgumentException.class)\n    public void testValueOfUnknown() {\n")
+                    .append("        ").append(name).append(".valueOf(\"UNKNOWN_CONSTANT\");\n");
+        } else {
+            test.append("    @Test\n    public void testValueOfUnknown() {\n")
+                    .append("        assertThrows(IllegalArgumentException.class, () -> ")
+                    .append(name).append(".valueOf(\"UNKNOWN_CONSTANT\"));\n");
+        }
+        test.append("    }\n}\n");
+        return Optional.of(test.toString());
+    }
+
+    // --- Record, Lombok e classi valore ---
+
+    private static Optional<Model> analyze(PsiClass psiClass) {
+        if (psiClass.isInterface() || psiClass.isAnnotationType() || psiClass.hasTypeParameters()
+                || psiClass.hasModifierProperty(PsiModifier.ABSTRACT) || psiClass.getName() == null
+                || psiClass.getInnerClasses().length > 0
+                || psiClass.getExtendsList() != null && psiClass.getExtendsList().getReferenceElements().length > 0) {
+            return Optional.empty();
+        }
+        return psiClass.isRecord() ? analyzeRecord(psiClass) : analyzeBean(psiClass);
+    }
+
+    private static Optional<Model> analyzeRecord(PsiClass psiClass) {
+        // Costruttori compatti e metodi aggiuntivi contengono logica di validazione o di dominio
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (!OBJECT_METHODS.contains(method.getName())) {
+                return Optional.empty();
+            }
+        }
+        Model model = new Model(psiClass.getName());
+        for (PsiRecordComponent component : psiClass.getRecordComponents()) {
+            Property property = property(component.getName(), component.getType(), component.getTypeElement(),
+                    component.getName() + "()", null);
+            if (property == null) {
+                return Optional.empty();
+            }
+            model.properties.add(property);
+            model.initialized.add(property);
+        }
+        model.creation = Creation.CONSTRUCTOR;
+        model.equalsDefined = true;
+        model.equalsOnAllProperties = psiClass.findMethodsByName("equals", false).length == 0;
+        model.toStringDefined = true;
+        model.toStringWithNames = psiClass.findMethodsByName("toString", false).length == 0;
+        return Optional.of(model);
+    }
+
+    private static Optional<Model> analyzeBean(PsiClass psiClass) {
+        boolean data = hasAnnotation(psiClass, "Data");
+        boolean value = hasAnnotation(psiClass, "Value");
+        boolean builder = hasAnnotation(psiClass, "Builder");
+        boolean lombokGetters = data || value || hasAnnotation(psiClass, "Getter");
+        boolean lombokSetters = data || hasAnnotation(psiClass, "Setter");
+        boolean lombokEquals = data || value || hasAnnotation(psiClass, "EqualsAndHashCode");
+        boolean lombokToString = data || value || hasAnnotation(psiClass, "ToString");
+
+        // Campi di istanza, nell'ordine di dichiarazione usato dai costruttori generati da Lombok
+        List<PsiField> fields = new ArrayList<>();
+        for (PsiField field : psiClass.getFields()) {
+            if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                fields.add(field);
+            }
+        }
+
+        Map<String, String> getters = new HashMap<>();
+        Map<String, String> setters = new HashMap<>();
+        PsiMethod constructor = null;
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (method.isConstructor()) {
+                if (!assignsParametersOnly(method)) {
+                    return Optional.empty();
+                }
+                // Il costruttore che inizializza più campi dà l'istanza di esempio più completa
+                if (constructor == null || method.getParameterList().getParametersCount() > constructor.getParameterList().getParametersCount()) {
+                    constructor = method;
+                }
+            } else if (method.hasModifierProperty(PsiModifier.STATIC)) {
+                return Optional.empty();
+            } else if (getterField(method) != null) {
+                getters.put(getterField(method), method.getName());
+            } else if (setterField(method) != null) {
+                setters.put(setterField(method), method.getName());
+            } else if (!OBJECT_METHODS.contains(method.getName())) {
+                return Optional.empty();
+            }
+        }
+
+        Model model = new Model(psiClass.getName());
+        Map<String, Property> byName = new LinkedHashMap<>();
+        for (PsiField field : fields) {
+            String name = field.getName();
+            boolean isFinal = field.hasModifierProperty(PsiModifier.FINAL) || value;
+            String getter = getters.getOrDefault(name, lombokGetters ? lombokGetter(field) : null);
+            String setter = setters.getOrDefault(name, lombokSetters && !isFinal ? "set" + StringUtil.capitalize(name) : null);
+            Property property = property(name, field.getType(), field.getTypeElement(),
+                    getter != null ? getter + "()" : null, setter);
+            if (property == null || property.first().equals("null") && hasAnnotation(field, "NonNull")) {
+                return Optional.empty();
+            }
+            model.properties.add(property);
+            byName.put(name, property);
+        }
+
+        if (builder) {
+            model.creation = Creation.BUILDER;
+            model.initialized.addAll(model.properties);
+        } else if (constructor != null && constructor.getParameterList().getParametersCount() > 0) {
+            model.creation = Creation.CONSTRUCTOR;
+            // Gli argomenti seguono l'ordine dei parametri, non quello delle assegnazioni
+            Map<String, String> fieldByParameter = new HashMap<>();
+            for (PsiStatement statement : constructor.getBody().getStatements()) {
+                fieldByParameter.put(assignedParameter(statement), assignedField(statement));
+            }
+            for (PsiParameter parameter : constructor.getParameterList().getParameters()) {
+                Property property = byName.get(fieldByParameter.get(parameter.getName()));
+                if (property == null || !property.type().equals(parameter.getType().getPresentableText())) {
+                    return Optional.empty();
+                }
+                model.initialized.add(property);
+            }
+        } else if (value || hasAnnotation(psiClass, "AllArgsConstructor")) {
+            model.creation = Creation.CONSTRUCTOR;
+            model.initialized.addAll(model.properties);
+        } else if (constructor == null && (!data || fields.stream().noneMatch(field -> field.hasModifierProperty(PsiModifier.FINAL)))) {
+            model.creation = Creation.SETTERS;
+        } else {
+            return Optional.empty();
+        }
+
+        boolean equalsWritten = psiClass.findMethodsByName("equals", false).length > 0;
+        boolean toStringWritten = psiClass.findMethodsByName("toString", false).length > 0;
+        model.equalsDefined = lombokEquals || equalsWritten;
+        model.equalsOnAllProperties = lombokEquals && !equalsWritten;
+        model.toStringDefined = lombokToString || toStringWritten;
+        model.toStringWithNames = lombokToString && !toStringWritten;
+
+        // Senza nulla da verificare il test non ha valore: meglio lasciare la classe al modello
+        if (model.assigned().stream().noneMatch(property -> property.getter() != null)
+                && !model.equalsDefined && !model.toStringDefined) {
+            return Optional.empty();
+        }
+        return Optional.of(model);
+    }
+
+    private static String valueTests(Model model, boolean junit4) {
+        String name = model.className;
+        List<Property> assigned = model.assigned();
+        StringBuilder test = new StringBuilder("public class ").append(name).append("Test {\n\n");
+
+        test.append("    private static ").append(name).append(" sample() {\n");
+        test.append(creation(model, true));
+        test.append("    }\n\n");
+        boolean varies = assigned.stream().anyMatch(Property::varies);
+        if (varies) {
+            test.append("    private static ").append(name).append(" otherSample() {\n");
+            test.append(creation(model, false));
+            test.append("    }\n\n");
+        }
+
+        List<Property> readable = assigned.stream().filter(property -> property.getter() != null).toList();
+        if (!readable.isEmpty()) {
+            test.append("    @Test\n    public void testAccessors() {\n");
+            test.append("        ").append(name).append(" instance = sample();\n");
+            for (Property property : readable) {
+                test.append("        ").append(assertValue(property, property.first(), "instance." + property.getter())).append('\n');
+            }
+            test.append("    }\n\n");
+        }
+
+        List<Property> writable = model.properties.stream()
+                .filter(property -> property.setter() != null && property.getter() != null && property.varies())
+                .toList();
+        if (!writable.isEmpty()) {
+            test.append("    @Test\n    public void testSetters() {\n");
+            test.append("        ").append(name).append(" instance = sample();\n");
+            for (Property property : writable) {
+                test.append("        instance.").append(property.setter()).append('(').append(property.second()).append(");\n");
+                test.append("        ").append(assertValue(property, property.second(), "instance." + property.getter())).append('\n');
+            }
+            test.append("    }\n\n");
+        }
+
+        if (model.equalsDefined) {
+            test.append("    @Test\n    public void testEqualsAndHashCode() {\n");
+            test.append("        ").append(name).append(" instance = sample();\n");
+            test.append("        assertEquals(instance, instance);\n");
+            test.append("        assertEquals(sample(), instance);\n");
+            test.append("        assertEquals(sample().hashCode(), instance.hashCode());\n");
+            test.append("        assertNotEquals(null, instance);\n");
+            test.append("        assertNotEquals(new Object(), instance);\n");
+            if (model.equalsOnAllProperties && varies) {
+                test.append("        assertNotEquals(otherSample(), instance);\n");
+            }
+            test.append("    }\n\n");
+        }
+
+        if (model.toStringDefined) {
+            test.append("    @Test\n    public void testToString() {\n");
+            test.append("        String text = sample().toString();\n");
+            test.append("        assertNotNull(text);\n");
+            if (model.toStringWithNames) {
+                test.append("        assertTrue(text.contains(\"").append(name).append("\"));\n");
+                for (Property property : model.properties) {
+                    test.append("        assertTrue(text.contains(\"").append(property.name()).append("\"));\n");
+                }
+            }
+            test.append("    }\n\n");
+        }
+
+        // Rimuove la riga vuota dopo l'ultimo metodo
+        test.setLength(test.length() - 1);
+        return test.append("}\n").toString();
+    }
+
+    /**
+     * Corpo del metodo che crea l'istanza di esempio
+     */
+    private static String creation(Model model, boolean first) {
+        StringBuilder body = new StringBuilder("        ").append(model.className).append(" instance = ");
+        switch (model.creation) {
+            case CONSTRUCTOR -> body.append("new ").append(model.className).append('(')
+                    .append(String.join(", ", model.initialized.stream().map(property -> value(property, first)).toList()))
+                    .append(");\n");
+            case BUILDER -> {
+                body.append(model.className).append(".builder()");
+                for (Property property : model.initialized) {
+                    body.append("\n                .").append(property.name()).append('(').append(value(property, first)).append(')');
+                }
+                body.append("\n                .build();\n");
+            }
+            case SETTERS -> body.append("new ").append(model.className).append("();\n");
+        }
+        for (Property property : model.properties) {
+            if (!model.initialized.contains(property) && property.setter() != null) {
+                body.append("        instance.").append(property.setter()).append('(').append(value(property, first)).append(");\n");
+            }
+        }
+        return body.append("        return instance;\n").toString();
+    }
+
+    private static String value(Property property, boolean first) {
+        return first ? property.first() : property.second();
+    }
+
+    private static String assertValue(Property property, String expected, String actual) {
+        if ("null".equals(expected)) {
+            return "assertNull(" + actual + ");";
+        }
+        if (property.primitive() && (property.type().equals("double") || property.type().equals("float"))) {
+            return "assertEquals(" + expected + ", " + actual + ", 0.0);";
+        }
+        return "assertEquals(" + expected + ", " + actual + ");";
+    }
+
+    // --- Riconoscimento dei metodi banali ---
+
+    /**
+     * Campo restituito da un getter del tipo {@code return campo;}, null se il metodo non è un getter
+     */
+    private static String getterField(PsiMethod method) {
+        if (method.getParameterList().getParametersCount() != 0 || method.getBody() == null
+                || method.getBody().getStatements().length != 1
+                || !(method.getBody().getStatements()[0] instanceof PsiReturnStatement returnStatement)) {
+            return null;
+        }
+        return fieldName(returnStatement.getReturnValue());
+    }
+
+    /**
+     * Campo assegnato da un setter del tipo {@code this.campo = parametro;}, null se il metodo non è un setter
+     */
+    private static String setterField(PsiMethod method) {
+        if (method.getParameterList().getParametersCount() != 1 || method.getBody() == null
+                || method.getBody().getStatements().length != 1 || !PsiTypes.voidType().equals(method.getReturnType())) {
+            return null;
+        }
+        return assignedField(method.getBody().getStatements()[0]);
+    }
+
+    /**
+     * Costruttore che si limita ad assegnare ciascun parametro a un campo
+     */
+    private static boolean assignsParametersOnly(PsiMethod constructor) {
+        PsiCodeBlock body = constructor.getBody();
+        if (body == null || body.getStatements().length != constructor.getParameterList().getParametersCount()) {
+            return false;
+        }
+        for (PsiStatement statement : body.getStatements()) {
+            if (assignedField(statement) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Campo assegnato da un'istruzione {@code this.campo = parametro;}
+     */
+    private static String assignedField(PsiStatement statement) {
+        if (statement instanceof PsiExpressionStatement expressionStatement
+                && expressionStatement.getExpression() instanceof PsiAssignmentExpression assignment
+                && assignment.getOperationTokenType() == JavaTokenType.EQ
+                && assignment.getRExpression() instanceof PsiReferenceExpression parameter
+                && parameter.getQualifierExpression() == null) {
+            return fieldName(assignment.getLExpression());
+        }
+        return null;
+    }
+
+    /**
+     * Parametro letto da un'istruzione {@code this.campo = parametro;}
+     */
+    private static String assignedParameter(PsiStatement statement) {
+        if (statement instanceof PsiExpressionStatement expressionStatement
+                && expressionStatement.getExpression() instanceof PsiAssignmentExpression assignment
+                && assignment.getRExpression() instanceof PsiReferenceExpression parameter) {
+            return parameter.getReferenceName();
+        }
+        return null;
+    }
+
+    private static String fieldName(PsiExpression expression) {
+        if (expression instanceof PsiReferenceExpression reference
+                && (reference.getQualifierExpression() == null || reference.getQualifierExpression() instanceof PsiThisExpression)) {
+            return reference.getReferenceName();
+        }
+        return null;
+    }
+
+    private static String lombokGetter(PsiField field) {
+        String prefix = PsiTypes.booleanType().equals(field.getType()) ? "is" : "get";
+        return prefix + StringUtil.capitalize(field.getName());
+    }
+
+    private static boolean hasAnnotation(PsiModifierListOwner owner, String simpleName) {
+        PsiModifierList modifiers = owner.getModifierList();
+        if (modifiers == null) {
+            return false;
+        }
+        for (PsiAnnotation annotation : modifiers.getAnnotations()) {
+            String name = annotation.getQualifiedName();
+            if (simpleName.equals(name) || ("lombok." + simpleName).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- Valori di esempio ---
+
+    /**
+     * Crea una proprietà con i suoi valori di esempio, null se il tipo non può avere un valore di esempio
+     */
+    private static Property property(String name, PsiType type, PsiTypeElement typeElement, String getter, String setter) {
+        boolean primitive = type instanceof PsiPrimitiveType;
+        // Il testo del tipo come scritto nel sorgente, senza argomenti generici, è già risolto dagli import del sorgente
+        String raw = typeElement != null ? typeElement.getText() : type.getPresentableText();
+        int generic = raw.indexOf('<');
+        if (generic >= 0) {
+            raw = raw.substring(0, generic);
+        }
+        String simple = raw.substring(raw.lastIndexOf('.') + 1).trim();
+
+        String[] values = sampleValues(raw.trim(), simple);
+        if (values == null) {
+            if (primitive || raw.contains("[")) {
+                return null;
+            }
+            values = new String[]{"null", "null"};
+        }
+        return new Property(name, type.getPresentableText(), primitive, getter, setter, values[0], values[1]);
+    }
+
+    static String[] sampleValues(String raw, String simple) {
+        return switch (simple) {
+            case "int" -> new String[]{"1", "2"};
+            case "long" -> new String[]{"1L", "2L"};
+            case "short" -> new String[]{"(short) 1", "(short) 2"};
+            case "byte" -> new String[]{"(byte) 1", "(byte) 2"};
+            case "double" -> new String[]{"1.0", "2.0"};
+            case "float" -> new String[]{"1.0f", "2.0f"};
+            case "boolean" -> new String[]{"true", "false"};
+            case "char" -> new String[]{"'a'", "'b'"};
+            // I wrapper sono espliciti, così assertEquals sceglie sempre la variante con Object
+            case "Integer" -> new String[]{"Integer.valueOf(1)", "Integer.valueOf(2)"};
+            case "Long" -> new String[]{"Long.valueOf(1L)", "Long.valueOf(2L)"};
+            case "Short" -> new String[]{"Short.valueOf((short) 1)", "Short.valueOf((short) 2)"};
+            case "Byte" -> new String[]{"Byte.valueOf((byte) 1)", "Byte.valueOf((byte) 2)"};
+            case "Double" -> new String[]{"Double.valueOf(1.0)", "Double.valueOf(2.0)"};
+            case "Float" -> new String[]{"Float.valueOf(1.0f)", "Float.valueOf(2.0f)"};
+            case "Boolean" -> new String[]{"Boolean.TRUE", "Boolean.FALSE"};
+            case "Character" -> new String[]{"Character.valueOf('a')", "Character.valueOf('b')"};
+            case "String" -> new String[]{"\"value1\"", "\"value2\""};
+            case "BigDecimal", "BigInteger" -> new String[]{raw + ".ONE", raw + ".TEN"};
+            case "LocalDate" -> new String[]{raw + ".of(2024, 1, 1)", raw + ".of(2024, 1, 2)"};
+            case "LocalDateTime" -> new String[]{raw + ".of(2024, 1, 1, 10, 0)", raw + ".of(2024, 1, 2, 10, 0)"};
+            case "Instant" -> new String[]{raw + ".ofEpochSecond(1)", raw + ".ofEpochSecond(2)"};
+            case "UUID" -> new String[]{raw + ".fromString(\"00000000-0000-0000-0000-000000000001\")",
+                    raw + ".fromString(\"00000000-0000-0000-0000-000000000002\")"};
+            case "List", "Set", "Map" -> new String[]{raw + ".of()", raw + ".of()"};
+            case "Optional" -> new String[]{raw + ".empty()", raw + ".empty()"};
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package ai.model;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import settings.JUnitGeneratorSettings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Crea i modelli di chat usati dal plugin, già collegati a {@link LlmScheduler} nella corsia richiesta
+ * (in replay solo se richiesto dalle impostazioni).
+ * In base alle impostazioni il modello è quello del provider, lo stesso con la registrazione di ogni
+ * scambio, oppure un modello locale che rigioca una registrazione senza chiamate di rete.
+ * <p>
+ * Le impostazioni vengono lette a ogni chiamata: i chiamanti creano un modello per esecuzione, così un
+ * cambio di modalità vale dall'esecuzione successiva senza riavviare l'IDE.
+ */
+public final class ChatModelFactory {
+
+    // Modello usato da tutte le richieste, anche come riferimento per il conteggio locale dei token
+    public static final String MODEL_NAME = "gpt-4o";
+
+    // Registrazioni aperte per file: i modelli che registrano sullo stesso file condividono il writer
+    private static final Map<Path, ModelRecording> RECORDINGS = new ConcurrentHashMap<>();
+
+    private ChatModelFactory() {
+    }
+
+    /**
+     * @param lane      Corsia dello scheduler: interattiva per le azioni dell'utente, batch per il lavoro in background
+     * @param listeners Listener del modello, ad esempio per le statistiche del prompt caching
+     */
+    public static ChatLanguageModel create(LlmScheduler.Lane lane, List<ChatModelListener> listeners) {
+        JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState();
+        Path recordingFile = ModelRecording.pathOf(options.recordingFile);
+        ChatLanguageModel model = switch (options.modelMode) {
+            case LIVE -> openAi(listeners);
+            case RECORD -> new RecordingChatModel(openAi(listeners),
+                    RECORDINGS.computeIfAbsent(recordingFile, ModelRecording::new));
+            case REPLAY -> replay(recordingFile, options.replayLatencyMillis);
+        };
+        // Il replay non ha limiti del provider da rispettare: passa dallo scheduler solo se le misure devono
+        // includere limiti e code delle richieste
+        if (options.modelMode == JUnitGeneratorSettings.ModelMode.REPLAY && !options.replayViaScheduler) {
+            return model;
+        }
+        return LlmScheduler.getInstance().wrap(model, lane);
+    }
+
+    /**
+     * Chiude i file delle registrazioni aperte, alla chiusura dell'applicazione
+     */
+    static void closeRecordings() {
+        RECORDINGS.values().forEach(ModelRecording::close);
+        RECORDINGS.clear();
+    }
+
+    private static ChatLanguageModel openAi(List<ChatModelListener> listeners) {
+        String apiKey = "";
+        // I retry sui rate limit sono gestiti dallo scheduler, che rispetta il retry-after del provider
+        return OpenAiChatModel.builder()
+                .apiKey(apiKey)
+                .logResponses(true)
+                .modelName(MODEL_NAME)
+                .maxRetries(1)
+                .listeners(listeners)
+                .build();
+    }
+
+    private static ChatLanguageModel replay(Path recordingFile, long latencyMillis) {
+        try {
+            return new ReplayChatModel(new ModelRecording(recordingFile).load(), latencyMillis);
+        } catch (IOException e) {
+            throw new IllegalStateException("Registrazione del modello non leggibile: " + recordingFile, e);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package ai.model;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import settings.JUnitGeneratorSettings;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scheduler applicativo di tutte le chiamate al modello.
+ * <p>
+ * Le richieste passano da due token bucket (richieste e token al minuto) e da un limite di concorrenza
+ * adattivo: cresce lentamente finché il provider risponde, si dimezza quando segnala un rate limit.
+ * In caso di rate limit tutte le richieste vengono sospese per il tempo indicato dal provider
+ * (retry-after) o con backoff esponenziale, e la chiamata viene ritentata. Le richieste interattive
+ * hanno una corsia prioritaria e passano davanti a quelle batch in coda.
+ * Alla chiusura dell'applicazione chiude anche le registrazioni degli scambi con il modello.
+ */
+public class LlmScheduler implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmScheduler.class);
+
+    /**
+     * Corsie di priorità, nell'ordine in cui vengono servite
+     */
+    public enum Lane { INTERACTIVE, BATCH }
+
+    /**
+     * Limiti configurati per il provider
+     */
+    public record Limits(int requestsPerMinute, int tokensPerMinute, int maxConcurrency) {
+    }
+
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final long MAX_IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final Pattern RETRY_AFTER = Pattern.compile(
+            "(?i)(?:try again in|retry[- ]after)[:=]?\\s*([0-9]+(?:\\.[0-9]+)?)\\s*(ms|s|sec|seconds)?");
+    private static final Pattern RATE_LIMIT = Pattern.compile(
+            "(?i)\\b429\\b|rate[ _-]?limit|too many requests");
+    // Codici di errore che il provider restituisce anch'essi con 429 ma che un nuovo tentativo non risolve
+    private static final Pattern NON_RETRYABLE = Pattern.compile(
+            "(?i)insufficient_quota|billing_hard_limit_reached|billing_not_active");
+
+    private final Supplier<Limits> limits;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Stato protetto da lock
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefillNanos = System.nanoTime();
+    private double concurrencyLimit;
+    private int inFlight;
+    private long pausedUntilNanos;
+
+    /**
+     * Richiesta in attesa, ordinata per corsia e poi per ordine di arrivo
+     */
+    private record Ticket(Lane lane, long sequence, int estimatedTokens) implements Comparable<Ticket> {
+        @Override
+        public int compareTo(Ticket other) {
+            int byLane = Integer.compare(lane.ordinal(), other.lane.ordinal());
+            return byLane != 0 ? byLane : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public LlmScheduler() {
+        this(() -> {
+            JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState();
+            return new Limits(options.requestsPerMinute, options.tokensPerMinute, options.maxConcurrentRequests);
+        });
+    }
+
+    public LlmScheduler(Supplier<Limits> limits) {
+        this.limits = limits;
+        Limits initial = limits.get();
+        availableRequests = initial.requestsPerMinute();
+        availableTokens = initial.tokensPerMinute();
+        // Partiamo da metà del massimo e lasciamo che il limite cresca se il provider regge
+        concurrencyLimit = Math.max(1, initial.maxConcurrency() / 2.0);
+    }
+
+    public static LlmScheduler getInstance() {
+        return ApplicationManager.getApplication().getService(LlmScheduler.class);
+    }
+
+    /**
+     * Restituisce un modello che passa da questo scheduler nella corsia indicata
+     */
+    public ChatLanguageModel wrap(ChatLanguageModel model, Lane lane) {
+        return new ScheduledChatModel(model, this, lane);
+    }
+
+    /**
+     * Esegue una chiamata al modello rispettando limiti, priorità e backoff
+     *
+     * @param lane            Corsia della richiesta
+     * @param estimatedTokens Stima dei token consumati, usata prima di conoscere quelli reali
+     * @param call            Chiamata da eseguire
+     * @param actualTokens    Estrae i token effettivamente consumati dal risultato (0 se sconosciuti)
+     */
+    public <T> T execute(Lane lane, int estimatedTokens, Supplier<T> call, ToIntFunction<T> actualTokens) {
+        for (int attempt = 1; ; attempt++) {
+            acquire(lane, estimatedTokens);
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                boolean rateLimited = isRateLimit(e);
+                release(estimatedTokens, estimatedTokens, rateLimited);
+                if (!rateLimited || attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                long waitMillis = retryAfterMillis(e);
+                if (waitMillis <= 0) {
+                    waitMillis = backoffMillis(attempt);
+                }
+                log.warn("Rate limit del provider (tentativo {}/{}), sospensione delle richieste per {} ms",
+                        attempt, MAX_ATTEMPTS, waitMillis);
+                pause(waitMillis);
+                continue;
+            }
+
+            int actual = 0;
+            try {
+                actual = actualTokens.applyAsInt(result);
+            } catch (RuntimeException e) {
+                log.debug("Token consumati non disponibili: {}", e.getMessage());
+            }
+            release(estimatedTokens, actual > 0 ? actual : estimatedTokens, false);
+            return result;
+        }
+    }
+
+    private void acquire(Lane lane, int estimatedTokens) {
+        Ticket ticket = new Ticket(lane, sequence.incrementAndGet(), estimatedTokens);
+        lock.lock();
+        try {
+            queue.add(ticket);
+            while (true) {
+                Limits current = limits.get();
+                refill(current);
+
+                long now = System.nanoTime();
+                // Una richiesta più grande dell'intero bucket deve comunque poter partire
+                double requiredTokens = Math.min(estimatedTokens, current.tokensPerMinute());
+                long waitNanos;
+
+                if (now < pausedUntilNanos) {
+                    waitNanos = pausedUntilNanos - now;
+                } else if (queue.peek() != ticket || inFlight >= Math.floor(concurrencyLimit)) {
+                    // In attesa del proprio turno o di uno slot libero: verremo risvegliati da release()
+                    waitNanos = MAX_IDLE_WAIT_NANOS;
+                } else if (availableRequests < 1) {
+                    waitNanos = nanosToRefill(1 - availableRequests, current.requestsPerMinute());
+                } else if (availableTokens < requiredTokens) {
+                    waitNanos = nanosToRefill(requiredTokens - availableTokens, current.tokensPerMinute());
+                } else {
+                    queue.poll();
+                    inFlight++;
+                    availableRequests -= 1;
+                    availableTokens -= estimatedTokens;
+                    log.trace("Richiesta {} avviata: {} in corso, limite {}", lane, inFlight, concurrencyLimit);
+                    changed.signalAll();
+                    return;
+                }
+
+                changed.awaitNanos(Math.max(1, Math.min(waitNanos, MAX_IDLE_WAIT_NANOS)));
+            }
+        } catch (InterruptedException e) {
+            queue.remove(ticket);
+            changed.signalAll();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Attesa dello scheduler del modello interrotta", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(int estimatedTokens, int actualTokens, boolean rateLimited) {
+        lock.lock();
+        try {
+            inFlight--;
+            // Riallinea il bucket dei token al consumo reale
+            availableTokens += estimatedTokens - actualTokens;
+
+            int maxConcurrency = Math.max(1, limits.get().maxConcurrency());
+            if (rateLimited) {
+                concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+            } else {
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void pause(long millis) {
+        lock.lock();
+        try {
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(Limits current) {
+        long now = System.nanoTime();
+        double minutes = (now - lastRefillNanos) / (double) TimeUnit.MINUTES.toNanos(1);
+        lastRefillNanos = now;
+        availableRequests = Math.min(current.requestsPerMinute(), availableRequests + minutes * current.requestsPerMinute());
+        availableTokens = Math.min(current.tokensPerMinute(), availableTokens + minutes * current.tokensPerMinute());
+    }
+
+    private static long nanosToRefill(double missing, int perMinute) {
+        if (perMinute <= 0) {
+            return MAX_IDLE_WAIT_NANOS;
+        }
+        return (long) Math.ceil(missing / perMinute * TimeUnit.MINUTES.toNanos(1));
+    }
+
+    private static long backoffMillis(int attempt) {
+        long exponential = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+        // Jitter per evitare che tutte le richieste ripartano nello stesso istante
+        return exponential / 2 + ThreadLocalRandom.current().nextLong(exponential / 2 + 1);
+    }
+
+    /**
+     * Un errore è un rate limit da ritentare se lo segnala il provider, a meno che il codice di errore indichi
+     * una quota esaurita o un problema di fatturazione: in quel caso attendere non serve
+     */
+    static boolean isRateLimit(Throwable error) {
+        boolean rateLimited = false;
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            String message = t.getMessage();
+            if (message == null) {
+                continue;
+            }
+            if (NON_RETRYABLE.matcher(message).find()) {
+                return false;
+            }
+            rateLimited |= RATE_LIMIT.matcher(message).find();
+        }
+        return rateLimited;
+    }
+
+    static long retryAfterMillis(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t.getMessage() == null) {
+                continue;
+            }
+            Matcher matcher = RETRY_AFTER.matcher(t.getMessage());
+            if (matcher.find()) {
+                double value = Double.parseDouble(matcher.group(1));
+                return "ms".equalsIgnoreCase(matcher.group(2)) ? (long) Math.ceil(value) : (long) Math.ceil(value * 1000);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void dispose() {
+        ChatModelFactory.closeRecordings();
+    }
+}
@@ -0,0 +1,152 @@
+package ai.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intellij.openapi.application.PathManager;
+import dev.langchain4j.data.message.*;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Registrazione su file delle richieste al modello e delle relative risposte, una per riga in JSON.
+ * <p>
+ * Ogni scambio contiene la richiesta completa (compresi i risultati dei tool che AiServices rimanda al
+ * modello), la risposta con le eventuali richieste di esecuzione dei tool, i token consumati e la latenza.
+ * La chiave di una richiesta ignora il testo dei risultati dei tool, che durante il replay vengono
+ * ricalcolati sul progetto e possono differire di poco: conta solo quale tool è stato chiamato.
+ */
+public final class ModelRecording {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRecording.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path file;
+    private final Object writeLock = new Object();
+    private BufferedWriter writer;
+
+    /**
+     * Scambio registrato
+     *
+     * @param key           Chiave della richiesta, vedi {@link #keyOf(ChatRequest)}
+     * @param request       Messaggi della richiesta, serializzati da langchain4j
+     * @param response      Messaggio di risposta, serializzato da langchain4j
+     * @param inputTokens   Token in ingresso riportati dal provider
+     * @param outputTokens  Token in uscita riportati dal provider
+     * @param latencyMillis Durata della chiamata al provider
+     */
+    public record Exchange(String key, String request, String response, int inputTokens, int outputTokens,
+                           long latencyMillis) {
+
+        public AiMessage aiMessage() {
+            return (AiMessage) ChatMessageDeserializer.messageFromJson(response);
+        }
+    }
+
+    public ModelRecording(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Percorso configurato nelle impostazioni, o quello predefinito nella directory di sistema dell'IDE
+     */
+    public static Path pathOf(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return Path.of(configured.trim());
+        }
+        return PathManager.getSystemDir().resolve("junit-generator").resolve("recordings").resolve("model-exchanges.jsonl");
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    static String keyOf(ChatRequest request) {
+        StringBuilder normalized = new StringBuilder();
+        for (ChatMessage message : request.messages()) {
+            if (message instanceof ToolExecutionResultMessage result) {
+                normalized.append("tool_result:").append(result.toolName());
+            } else {
+                normalized.append(ChatMessageSerializer.messageToJson(message));
+            }
+            normalized.append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+
+    /**
+     * Accoda uno scambio al file, da qualsiasi thread
+     */
+    void append(Exchange exchange) {
+        synchronized (writeLock) {
+            try {
+                if (writer == null) {
+                    Files.createDirectories(file.getParent());
+                    writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                writer.write(MAPPER.writeValueAsString(exchange));
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                log.error("Impossibile registrare lo scambio con il modello in {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Chiude il file della registrazione; uno scambio accodato in seguito lo riapre in append
+     */
+    void close() {
+        synchronized (writeLock) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Chiusura della registrazione {} non riuscita: {}", file, e.getMessage());
+            } finally {
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Legge tutti gli scambi registrati, raggruppati per chiave nell'ordine di registrazione
+     */
+    public Map<String, List<Exchange>> load() throws IOException {
+        Map<String, List<Exchange>> exchanges = new HashMap<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                Exchange exchange = MAPPER.readValue(line, Exchange.class);
+                exchanges.computeIfAbsent(exchange.key(), key -> new ArrayList<>()).add(exchange);
+            } catch (IOException e) {
+                // Una riga troncata (ad esempio per un crash durante la registrazione) non invalida le altre
+                log.warn("Riga {} della registrazione {} non valida: {}", lineNumber, file, e.getMessage());
+            }
+        }
+        log.info("Caricati {} scambi distinti da {}", exchanges.size(), file);
+        return exchanges;
+    }
+}
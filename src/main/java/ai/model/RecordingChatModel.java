@@ -0,0 +1,51 @@
+package ai.model;
+
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.Set;
+
+/**
+ * Modello che inoltra le richieste a un altro modello e registra ogni scambio in una {@link ModelRecording}
+ */
+class RecordingChatModel implements ChatLanguageModel {
+
+    private final ChatLanguageModel delegate;
+    private final ModelRecording recording;
+
+    RecordingChatModel(ChatLanguageModel delegate, ModelRecording recording) {
+        this.delegate = delegate;
+        this.recording = recording;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        long start = System.nanoTime();
+        ChatResponse response = delegate.chat(chatRequest);
+        long latency = (System.nanoTime() - start) / 1_000_000;
+
+        TokenUsage usage = response.tokenUsage();
+        recording.append(new ModelRecording.Exchange(ModelRecording.keyOf(chatRequest),
+                ChatMessageSerializer.messagesToJson(chatRequest.messages()),
+                ChatMessageSerializer.messageToJson(response.aiMessage()),
+                usage != null && usage.inputTokenCount() != null ? usage.inputTokenCount() : 0,
+                usage != null && usage.outputTokenCount() != null ? usage.outputTokenCount() : 0,
+                latency));
+        return response;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
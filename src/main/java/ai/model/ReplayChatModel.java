@@ -0,0 +1,66 @@
+package ai.model;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modello locale che risponde con gli scambi di una {@link ModelRecording}, senza chiamate di rete.
+ * <p>
+ * Serve a misurare in modo ripetibile throughput e latenza dell'intera pipeline: le risposte sono
+ * sempre le stesse e la latenza del provider viene simulata, con quella registrata o con un valore fisso.
+ * Se la stessa richiesta è stata registrata più volte (ad esempio con più candidati) le risposte vengono
+ * servite a rotazione.
+ */
+public class ReplayChatModel implements ChatLanguageModel {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayChatModel.class);
+
+    private final Map<String, List<ModelRecording.Exchange>> exchanges;
+    private final Map<String, AtomicInteger> cursors = new HashMap<>();
+    private final long latencyMillis;
+
+    /**
+     * @param exchanges     Scambi registrati per chiave
+     * @param latencyMillis Latenza simulata per ogni risposta; negativa per usare quella registrata
+     */
+    public ReplayChatModel(Map<String, List<ModelRecording.Exchange>> exchanges, long latencyMillis) {
+        this.exchanges = Map.copyOf(exchanges);
+        this.latencyMillis = latencyMillis;
+        for (String key : exchanges.keySet()) {
+            cursors.put(key, new AtomicInteger());
+        }
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        String key = ModelRecording.keyOf(chatRequest);
+        List<ModelRecording.Exchange> recorded = exchanges.get(key);
+        if (recorded == null || recorded.isEmpty()) {
+            log.warn("Richiesta non presente nella registrazione: {}", key);
+            throw new IllegalStateException("Nessuna risposta registrata per questa richiesta: "
+                    + "registra di nuovo la sessione dopo aver modificato prompt o codice");
+        }
+        ModelRecording.Exchange exchange = recorded.get(Math.floorMod(cursors.get(key).getAndIncrement(), recorded.size()));
+
+        long delay = latencyMillis >= 0 ? latencyMillis : exchange.latencyMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Replay interrotto", e);
+            }
+        }
+        return ChatResponse.builder()
+                .aiMessage(exchange.aiMessage())
+                .tokenUsage(new TokenUsage(exchange.inputTokens(), exchange.outputTokens()))
+                .build();
+    }
+}
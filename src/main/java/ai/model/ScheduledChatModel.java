@@ -0,0 +1,63 @@
+package ai.model;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+
+/**
+ * Modello che inoltra le richieste a un altro modello passando da {@link LlmScheduler}
+ */
+class ScheduledChatModel implements ChatLanguageModel {
+
+    // Margine stimato per la risposta, finché il provider non riporta i token reali
+    private static final int ESTIMATED_OUTPUT_TOKENS = 1024;
+
+    private final ChatLanguageModel delegate;
+    private final LlmScheduler scheduler;
+    private final LlmScheduler.Lane lane;
+
+    ScheduledChatModel(ChatLanguageModel delegate, LlmScheduler scheduler, LlmScheduler.Lane lane) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.lane = lane;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return scheduler.execute(lane, estimateTokens(chatRequest), () -> delegate.chat(chatRequest),
+                ScheduledChatModel::actualTokens);
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * Stima approssimativa: circa quattro caratteri per token più un margine per la risposta
+     */
+    private static int estimateTokens(ChatRequest chatRequest) {
+        long characters = 0;
+        for (ChatMessage message : chatRequest.messages()) {
+            characters += String.valueOf(message).length();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, characters / 4 + ESTIMATED_OUTPUT_TOKENS);
+    }
+
+    private static int actualTokens(ChatResponse response) {
+        if (response.tokenUsage() == null || response.tokenUsage().totalTokenCount() == null) {
+            return 0;
+        }
+        return response.tokenUsage().totalTokenCount();
+    }
+}
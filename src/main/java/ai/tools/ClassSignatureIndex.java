@@ -0,0 +1,178 @@
+package ai.tools;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Indice persistente delle firme delle classi del progetto, per nome completo.
+ * <p>
+ * Le firme di metodi, campi e annotazioni vengono renderizzate una sola volta durante l'indicizzazione
+ * e aggiornate dall'IDE solo per i file modificati; le ricerche dei tool leggono il testo già pronto
+ * senza caricare la PSI delle classi. L'indice non è disponibile durante l'indicizzazione (dumb mode):
+ * in quel caso {@link #find} restituisce un valore vuoto e il chiamante deve segnalare che l'informazione
+ * non è ancora disponibile.
+ */
+public class ClassSignatureIndex extends FileBasedIndexExtension<String, ClassSignatureIndex.ClassSignature> {
+
+    public static final ID<String, ClassSignature> NAME = ID.create("junit.generator.class.signatures");
+
+    // Da incrementare a ogni modifica del formato delle firme o della serializzazione
+    private static final int VERSION = 1;
+
+    /**
+     * Firme già renderizzate di una classe
+     *
+     * @param annotations Annotazioni della classe, come nel sorgente
+     * @param fields      Campi nella forma "Tipo nome"
+     * @param methods     Metodi e costruttori nella forma "nome(Tipo param, Tipo param)"
+     */
+    public record ClassSignature(List<String> annotations, List<String> fields, List<String> methods) {
+    }
+
+    /**
+     * Firme della classe nello scope del progetto, senza caricarne la PSI
+     *
+     * @return vuoto se la classe non è nel progetto o se l'indice non è ancora disponibile
+     */
+    public static Optional<ClassSignature> find(Project project, String qualifiedName) {
+        if (DumbService.isDumb(project)) {
+            return Optional.empty();
+        }
+        return ReadAction.compute(() -> FileBasedIndex.getInstance()
+                .getValues(NAME, qualifiedName, GlobalSearchScope.projectScope(project))
+                .stream()
+                .findFirst());
+    }
+
+    /**
+     * Firme di una classe calcolate dalla PSI, nello stesso formato dell'indice. Va chiamato in una read action.
+     */
+    public static ClassSignature render(PsiClass psiClass) {
+        List<String> annotations = new ArrayList<>();
+        PsiModifierList modifierList = psiClass.getModifierList();
+        if (modifierList != null) {
+            for (PsiAnnotation annotation : modifierList.getAnnotations()) {
+                annotations.add(annotation.getText());
+            }
+        }
+
+        List<String> fields = new ArrayList<>();
+        for (PsiField field : psiClass.getFields()) {
+            fields.add(field.getType().getPresentableText() + " " + field.getName());
+        }
+
+        List<String> methods = new ArrayList<>();
+        for (PsiMethod method : psiClass.getMethods()) {
+            StringBuilder methodSignature = new StringBuilder();
+            methodSignature.append(method.getName()).append("(");
+
+            PsiParameter[] parameters = method.getParameterList().getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                methodSignature.append(parameters[i].getType().getPresentableText())
+                        .append(" ")
+                        .append(parameters[i].getName());
+                if (i < parameters.length - 1) {
+                    methodSignature.append(", ");
+                }
+            }
+
+            methodSignature.append(")");
+            methods.add(methodSignature.toString());
+        }
+        return new ClassSignature(List.copyOf(annotations), List.copyOf(fields), List.copyOf(methods));
+    }
+
+    @Override
+    public @NotNull ID<String, ClassSignature> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, ClassSignature, FileContent> getIndexer() {
+        return inputData -> {
+            if (!(inputData.getPsiFile() instanceof PsiJavaFile javaFile)) {
+                return Map.of();
+            }
+            // Anche le classi annidate, con il loro nome completo; i tipi vengono resi in forma testuale
+            // senza risolverli, perché l'indicizzazione di un file non può dipendere dagli altri
+            Map<String, ClassSignature> signatures = new HashMap<>();
+            Deque<PsiClass> pending = new ArrayDeque<>(Arrays.asList(javaFile.getClasses()));
+            while (!pending.isEmpty()) {
+                PsiClass psiClass = pending.pop();
+                if (psiClass.getQualifiedName() != null) {
+                    signatures.put(psiClass.getQualifiedName(), render(psiClass));
+                }
+                pending.addAll(Arrays.asList(psiClass.getInnerClasses()));
+            }
+            return signatures;
+        };
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<ClassSignature> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, ClassSignature value) throws IOException {
+                writeList(out, value.annotations());
+                writeList(out, value.fields());
+                writeList(out, value.methods());
+            }
+
+            @Override
+            public ClassSignature read(@NotNull DataInput in) throws IOException {
+                return new ClassSignature(readList(in), readList(in), readList(in));
+            }
+        };
+    }
+
+    private static void writeList(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            IOUtil.writeUTF(out, value);
+        }
+    }
+
+    private static List<String> readList(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(IOUtil.readUTF(in));
+        }
+        return List.copyOf(values);
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public FileBasedIndex.@NotNull InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+}
@@ -1,16 +1,14 @@
 package ai.tools;
 
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.application.ReadAction;
+import ai.tools.MavenModuleIndex.Dependency;
+import ai.tools.MavenModuleIndex.ModuleDependencies;
+import ai.tools.MavenModuleIndex.PomModel;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.xml.XmlFile;
-import com.intellij.psi.xml.XmlTag;
 import dev.langchain4j.agent.tool.Tool;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,62 +20,53 @@ public class DependencySearchTool {
 
     private final Project project;
 
+    // File sotto test: determina il modulo Maven di cui analizzare le dipendenze
+    private final VirtualFile sourceFile;
+
     public DependencySearchTool(Project project) {
+        this(project, null);
+    }
+
+    public DependencySearchTool(Project project, @Nullable VirtualFile sourceFile) {
         this.project = project;
+        this.sourceFile = sourceFile;
     }
 
-    @Tool(name = "analyzePomXml", value = "Finds the pom.xml file in the project, extracts its content and dependencies")
+    @Tool(name = "analyzePomXml", value = "Finds the pom.xml of the module containing the class under test, "
+            + "extracts its content and the effective dependencies inherited from its parent modules")
     public Map<String, Object> analyzePomXml() {
         Map<String, Object> result = new HashMap<>();
         log.info("Starting analysis of pom.xml");
 
         try {
-            // Per la ricerca del pom.xml, avvolgiamo in una read action
-            String basePath = project.getBasePath();
-            if (basePath == null) {
-                log.warn("Base path del progetto non trovato");
-                result.put("found", false);
-                result.put("message", "Base path del progetto non trovato");
-                return result;
-            }
-
-            VirtualFile baseDir = LocalFileSystem.getInstance().findFileByPath(basePath);
-            if (baseDir == null) {
-                log.warn("Base directory non trovato");
-                result.put("found", false);
-                result.put("message", "Base directory non trovato");
-                return result;
-            }
-
-            VirtualFile pomFile = ReadAction.compute(() -> findPomXmlFile(baseDir));
-
-            if (pomFile == null) {
+            Optional<ModuleDependencies> module = module();
+            if (module.isEmpty()) {
                 log.warn("pom.xml not found in the project");
                 result.put("found", false);
                 result.put("message", "pom.xml not found in the project");
                 return result;
             }
 
-            log.info("pom.xml found: {}", pomFile.getPath());
+            PomModel pom = module.get().module();
+            log.info("pom.xml found: {}", pom.path());
 
             // File found
             result.put("found", true);
+            result.put("module", pom.coordinates());
+            result.put("rawContent", extractPomContent(pom.path()));
 
-            // Extract raw content - Questo può essere fatto al di fuori della read action
-            String rawContent = extractPomContent(pomFile);
-            result.put("rawContent", rawContent);
-
-            // Utilizzo di Computable per le operazioni di lettura PSI
-            List<Map<String, String>> dependencies = ApplicationManager.getApplication().runReadAction(
-                    (Computable<List<Map<String, String>>>) () -> parseDependencies(pomFile)
-            );
-
-            Map<String, String> projectInfo = ApplicationManager.getApplication().runReadAction(
-                    (Computable<Map<String, String>>) () -> parseProjectInfo(pomFile)
-            );
-
+            List<Map<String, String>> dependencies = new ArrayList<>();
+            for (Dependency dependency : module.get().dependencies()) {
+                dependencies.add(toMap(dependency));
+            }
             result.put("dependencies", dependencies);
-            result.put("projectInfo", projectInfo);
+            result.put("projectInfo", projectInfo(pom));
+
+            List<String> parentChain = new ArrayList<>();
+            for (PomModel parent : module.get().parentChain()) {
+                parentChain.add(parent.coordinates());
+            }
+            result.put("parentChain", parentChain);
 
             log.info("Analysis of pom.xml completed successfully");
             return result;
@@ -89,137 +78,82 @@ public class DependencySearchTool {
         }
     }
 
-    private VirtualFile findPomXmlFile(@NotNull VirtualFile directory) {
-        log.debug("Searching for pom.xml in directory: {}", directory.getPath());
-        Stack<VirtualFile> stack = new Stack<>();
-        stack.push(directory);
-
-        while (!stack.isEmpty()) {
-            VirtualFile currentDir = stack.pop();
-            VirtualFile pomFile = currentDir.findChild("pom.xml");
-            if (pomFile != null && !pomFile.isDirectory()) {
-                log.debug("pom.xml found in directory: {}", currentDir.getPath());
-                return pomFile;
-            }
-
-            for (VirtualFile child : currentDir.getChildren()) {
-                if (child.isDirectory()) {
-                    stack.push(child);
-                }
-            }
+    /**
+     * Restituisce un riepilogo deterministico delle dipendenze effettive del modulo, ordinate
+     * alfabeticamente. A parità di pom il testo è sempre identico, quindi può far parte del prefisso
+     * statico dei prompt senza invalidare il prompt caching del provider.
+     */
+    public String projectDependencySummary() {
+        Optional<ModuleDependencies> module = module();
+        if (module.isEmpty()) {
+            return "Nessun pom.xml trovato nel progetto";
         }
-
-        log.debug("pom.xml not found in directory: {}", directory.getPath());
-        return null;
-    }
-
-    private String extractPomContent(@NotNull VirtualFile pomFile) {
-        log.debug("Extracting content from pom.xml: {}", pomFile.getPath());
-        try {
-            return new String(pomFile.contentsToByteArray());
-        } catch (Exception e) {
-            log.error("Error reading pom.xml content", e);
-            return "Error reading pom.xml content: " + e.getMessage();
+        if (module.get().dependencies().isEmpty()) {
+            return "Nessuna dipendenza dichiarata nel pom.xml";
         }
-    }
-
-    private List<Map<String, String>> parseDependencies(@NotNull VirtualFile pomFile) {
-        log.debug("Parsing dependencies from pom.xml: {}", pomFile.getPath());
-        List<Map<String, String>> dependencies = new ArrayList<>();
 
-        try {
-            PsiManager psiManager = PsiManager.getInstance(project);
-            XmlFile xmlFile = (XmlFile) psiManager.findFile(pomFile);
-
-            if (xmlFile == null) {
-                log.warn("Failed to parse pom.xml: PsiFile is null");
-                return dependencies;
-            }
-
-            XmlTag rootTag = xmlFile.getRootTag();
-            if (rootTag == null) {
-                log.warn("Failed to parse pom.xml: Root tag is null");
-                return dependencies;
+        List<String> lines = new ArrayList<>();
+        for (Dependency dependency : module.get().dependencies()) {
+            StringBuilder line = new StringBuilder("- ")
+                    .append(Objects.requireNonNullElse(dependency.groupId(), "?"))
+                    .append(":")
+                    .append(Objects.requireNonNullElse(dependency.artifactId(), "?"));
+            if (dependency.version() != null) {
+                line.append(":").append(dependency.version());
             }
-
-            // Find dependencies section
-            XmlTag dependenciesTag = rootTag.findFirstSubTag("dependencies");
-            if (dependenciesTag == null) {
-                log.warn("No dependencies section found in pom.xml");
-                return dependencies;
+            if (dependency.scope() != null) {
+                line.append(" (").append(dependency.scope()).append(")");
             }
+            lines.add(line.toString());
+        }
+        Collections.sort(lines);
+        return String.join("\n", lines);
+    }
 
-            // Process each dependency
-            for (XmlTag dependencyTag : dependenciesTag.findSubTags("dependency")) {
-                Map<String, String> dependency = new HashMap<>();
-
-                XmlTag groupIdTag = dependencyTag.findFirstSubTag("groupId");
-                if (groupIdTag != null) {
-                    dependency.put("groupId", groupIdTag.getValue().getText());
-                }
-
-                XmlTag artifactIdTag = dependencyTag.findFirstSubTag("artifactId");
-                if (artifactIdTag != null) {
-                    dependency.put("artifactId", artifactIdTag.getValue().getText());
-                }
-
-                XmlTag versionTag = dependencyTag.findFirstSubTag("version");
-                if (versionTag != null) {
-                    dependency.put("version", versionTag.getValue().getText());
-                }
+    private Optional<ModuleDependencies> module() {
+        MavenModuleIndex index = MavenModuleIndex.getInstance(project);
+        return sourceFile != null ? index.forFile(sourceFile) : index.rootModule();
+    }
 
-                XmlTag scopeTag = dependencyTag.findFirstSubTag("scope");
-                if (scopeTag != null) {
-                    dependency.put("scope", scopeTag.getValue().getText());
-                }
+    private static Map<String, String> toMap(Dependency dependency) {
+        Map<String, String> map = new HashMap<>();
+        putIfPresent(map, "groupId", dependency.groupId());
+        putIfPresent(map, "artifactId", dependency.artifactId());
+        putIfPresent(map, "version", dependency.version());
+        putIfPresent(map, "scope", dependency.scope());
+        return map;
+    }
 
-                dependencies.add(dependency);
-            }
-        } catch (Exception e) {
-            log.error("Error parsing dependencies from pom.xml", e);
+    private static Map<String, String> projectInfo(PomModel pom) {
+        Map<String, String> projectInfo = new HashMap<>();
+        putIfPresent(projectInfo, "groupId", pom.groupId());
+        putIfPresent(projectInfo, "artifactId", pom.artifactId());
+        putIfPresent(projectInfo, "version", pom.version());
+        putIfPresent(projectInfo, "name", pom.name());
+        putIfPresent(projectInfo, "description", pom.description());
+        if (!pom.properties().isEmpty()) {
+            projectInfo.put("properties", new TreeMap<>(pom.properties()).toString());
         }
-
-        return dependencies;
+        return projectInfo;
     }
 
-    private Map<String, String> parseProjectInfo(@NotNull VirtualFile pomFile) {
-        log.debug("Parsing project info from pom.xml: {}", pomFile.getPath());
-        Map<String, String> projectInfo = new HashMap<>();
+    private static void putIfPresent(Map<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
 
+    private String extractPomContent(@NotNull String pomPath) {
+        log.debug("Extracting content from pom.xml: {}", pomPath);
         try {
-            PsiManager psiManager = PsiManager.getInstance(project);
-            XmlFile xmlFile = (XmlFile) psiManager.findFile(pomFile);
-
-            if (xmlFile == null || xmlFile.getRootTag() == null) {
-                log.warn("Failed to parse project info: PsiFile or root tag is null");
-                return projectInfo;
-            }
-
-            XmlTag rootTag = xmlFile.getRootTag();
-
-            // Extract basic project information
-            String[] infoTags = {"groupId", "artifactId", "version", "name", "description"};
-            for (String tagName : infoTags) {
-                XmlTag tag = rootTag.findFirstSubTag(tagName);
-                if (tag != null) {
-                    projectInfo.put(tagName, tag.getValue().getText());
-                }
-            }
-
-            // Extract properties if available
-            XmlTag propertiesTag = rootTag.findFirstSubTag("properties");
-            if (propertiesTag != null) {
-                Map<String, String> properties = new HashMap<>();
-                XmlTag[] propertyTags = propertiesTag.getSubTags();
-                for (XmlTag propertyTag : propertyTags) {
-                    properties.put(propertyTag.getName(), propertyTag.getValue().getText());
-                }
-                projectInfo.put("properties", properties.toString());
+            VirtualFile pomFile = LocalFileSystem.getInstance().findFileByPath(pomPath);
+            if (pomFile == null) {
+                return "pom.xml not found: " + pomPath;
             }
+            return new String(pomFile.contentsToByteArray());
         } catch (Exception e) {
-            log.error("Error parsing project info from pom.xml", e);
+            log.error("Error reading pom.xml content", e);
+            return "Error reading pom.xml content: " + e.getMessage();
         }
-
-        return projectInfo;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,369 @@
+package ai.tools;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indice in memoria dei moduli Maven del progetto.
+ * <p>
+ * Alla prima richiesta tutti i pom.xml del progetto vengono analizzati in parallelo; per ogni modulo
+ * vengono poi calcolate le dipendenze effettive unendo quelle della catena dei parent, con versioni
+ * prese dal dependencyManagement e proprietà risolte. Le ricerche successive per un file sorgente
+ * trovano il modulo proprietario risalendo le directory, senza rileggere nessun pom.
+ * L'indice viene ricostruito alla richiesta successiva a una modifica di un pom.xml.
+ * <p>
+ * La costruzione gira sul pool dell'applicazione e non su quello della pipeline: chi la richiede è
+ * spesso un nodo del grafo, e attendere dei task accodati sullo stesso pool limitato (o tenere un lock
+ * mentre un virtual thread aspetta) potrebbe bloccare la pipeline. Le richieste concorrenti attendono
+ * lo stesso future, pubblicato senza lock.
+ */
+public class MavenModuleIndex implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(MavenModuleIndex.class);
+
+    private static final String POM_FILE_NAME = "pom.xml";
+
+    // Directory che non contengono moduli del progetto, saltate quando i file non sono indicizzati
+    private static final Set<String> SKIPPED_DIRECTORIES = Set.of("target", "build", "node_modules", ".git", ".idea", "out");
+
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+
+    // Profondità massima della catena dei parent, per difendersi da cicli
+    private static final int MAX_PARENT_DEPTH = 16;
+
+    private final Project project;
+    private final AtomicReference<CompletableFuture<Map<String, ModuleDependencies>>> modules = new AtomicReference<>();
+
+    /**
+     * Dipendenza dichiarata in un pom
+     */
+    public record Dependency(String groupId, String artifactId, String version, String scope) {
+
+        String key() {
+            return groupId + ":" + artifactId;
+        }
+    }
+
+    /**
+     * Contenuto di un singolo pom.xml, senza ereditarietà
+     */
+    public record PomModel(String path, String directory, String groupId, String artifactId, String version,
+                           String name, String description, String parentGroupId, String parentArtifactId,
+                           String parentRelativePath, Map<String, String> properties,
+                           List<Dependency> dependencies, Map<String, String> managedVersions) {
+
+        public String coordinates() {
+            return groupId + ":" + artifactId;
+        }
+    }
+
+    /**
+     * Modulo con le dipendenze effettive del suo classpath di test
+     *
+     * @param module       Pom del modulo
+     * @param parentChain  Parent dal più vicino al più lontano
+     * @param dependencies Dipendenze effettive, ordinate per coordinate
+     */
+    public record ModuleDependencies(PomModel module, List<PomModel> parentChain, List<Dependency> dependencies) {
+    }
+
+    public MavenModuleIndex(@NotNull Project project) {
+        this.project = project;
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if (event.getPath().endsWith("/" + POM_FILE_NAME)) {
+                        log.debug("pom.xml modificato, l'indice dei moduli verrà ricostruito");
+                        modules.set(null);
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    public static MavenModuleIndex getInstance(@NotNull Project project) {
+        return project.getService(MavenModuleIndex.class);
+    }
+
+    /**
+     * Modulo che contiene il file, cioè quello del pom.xml più vicino risalendo le directory
+     */
+    public Optional<ModuleDependencies> forFile(@NotNull VirtualFile file) {
+        Map<String, ModuleDependencies> byDirectory = modules();
+        for (VirtualFile directory = file.isDirectory() ? file : file.getParent(); directory != null; directory = directory.getParent()) {
+            ModuleDependencies module = byDirectory.get(directory.getPath());
+            if (module != null) {
+                return Optional.of(module);
+            }
+        }
+        return rootModule();
+    }
+
+    /**
+     * Modulo radice: il pom nella directory base del progetto, altrimenti quello meno annidato
+     */
+    public Optional<ModuleDependencies> rootModule() {
+        Map<String, ModuleDependencies> byDirectory = modules();
+        ModuleDependencies root = byDirectory.get(project.getBasePath());
+        if (root != null) {
+            return Optional.of(root);
+        }
+        return byDirectory.values().stream()
+                .min(Comparator.comparingInt((ModuleDependencies module) -> module.module().directory().length())
+                        .thenComparing(module -> module.module().directory()));
+    }
+
+    private Map<String, ModuleDependencies> modules() {
+        CompletableFuture<Map<String, ModuleDependencies>> current = modules.get();
+        while (current == null) {
+            CompletableFuture<Map<String, ModuleDependencies>> created = new CompletableFuture<>();
+            if (modules.compareAndSet(null, created)) {
+                AppExecutorUtil.getAppExecutorService().execute(() -> {
+                    try {
+                        created.complete(build());
+                    } catch (RuntimeException e) {
+                        // La richiesta successiva riprova a costruire l'indice
+                        modules.compareAndSet(created, null);
+                        created.completeExceptionally(e);
+                    }
+                });
+                current = created;
+            } else {
+                // Un'altra richiesta ha appena avviato la costruzione: si attende la sua
+                current = modules.get();
+            }
+        }
+        return current.join();
+    }
+
+    private Map<String, ModuleDependencies> build() {
+        long start = System.nanoTime();
+        List<VirtualFile> pomFiles = findPomFiles();
+
+        // I pom sono indipendenti: vengono letti tutti in parallelo, ognuno nella propria read action.
+        // I task non attendono nulla, quindi il pool dell'applicazione non può esaurirsi in attesa di se stesso.
+        List<CompletableFuture<PomModel>> parsing = new ArrayList<>();
+        for (VirtualFile pomFile : pomFiles) {
+            parsing.add(CompletableFuture.supplyAsync(() -> ReadAction.compute(() -> parse(pomFile)),
+                    AppExecutorUtil.getAppExecutorService()));
+        }
+        Map<String, PomModel> byDirectory = new HashMap<>();
+        Map<String, PomModel> byCoordinates = new HashMap<>();
+        for (CompletableFuture<PomModel> future : parsing) {
+            PomModel pom = future.join();
+            if (pom != null) {
+                byDirectory.put(pom.directory(), pom);
+                byCoordinates.putIfAbsent(pom.coordinates(), pom);
+            }
+        }
+
+        Map<String, ModuleDependencies> result = new HashMap<>();
+        for (PomModel pom : byDirectory.values()) {
+            List<PomModel> chain = parentChain(pom, byDirectory, byCoordinates);
+            result.put(pom.directory(), new ModuleDependencies(pom, chain, effectiveDependencies(pom, chain)));
+        }
+        log.info("Indice dei moduli Maven costruito: {} moduli in {} ms", result.size(), (System.nanoTime() - start) / 1_000_000);
+        return Map.copyOf(result);
+    }
+
+    private List<VirtualFile> findPomFiles() {
+        List<VirtualFile> pomFiles = new ArrayList<>();
+        if (!DumbService.isDumb(project)) {
+            pomFiles.addAll(ReadAction.compute(() ->
+                    FilenameIndex.getVirtualFilesByName(POM_FILE_NAME, GlobalSearchScope.projectScope(project))));
+        }
+        if (pomFiles.isEmpty() && project.getBasePath() != null) {
+            // Indici non ancora pronti: visita del file system saltando le directory di build
+            VirtualFile baseDir = LocalFileSystem.getInstance().findFileByPath(project.getBasePath());
+            if (baseDir != null) {
+                VfsUtilCore.visitChildrenRecursively(baseDir, new VirtualFileVisitor<Void>() {
+                    @Override
+                    public boolean visitFile(@NotNull VirtualFile file) {
+                        if (file.isDirectory()) {
+                            return !SKIPPED_DIRECTORIES.contains(file.getName());
+                        }
+                        if (POM_FILE_NAME.equals(file.getName())) {
+                            pomFiles.add(file);
+                        }
+                        return true;
+                    }
+                });
+            }
+        }
+        return pomFiles;
+    }
+
+    private PomModel parse(VirtualFile pomFile) {
+        if (!pomFile.isValid() || !(PsiManager.getInstance(project).findFile(pomFile) instanceof XmlFile xmlFile)
+                || xmlFile.getRootTag() == null || pomFile.getParent() == null) {
+            return null;
+        }
+        XmlTag root = xmlFile.getRootTag();
+        XmlTag parent = root.findFirstSubTag("parent");
+
+        String groupId = text(root, "groupId");
+        String version = text(root, "version");
+        if (parent != null) {
+            // groupId e version si ereditano dal parent se non dichiarati
+            groupId = groupId != null ? groupId : text(parent, "groupId");
+            version = version != null ? version : text(parent, "version");
+        }
+
+        Map<String, String> properties = new HashMap<>();
+        XmlTag propertiesTag = root.findFirstSubTag("properties");
+        if (propertiesTag != null) {
+            for (XmlTag property : propertiesTag.getSubTags()) {
+                properties.put(property.getName(), property.getValue().getTrimmedText());
+            }
+        }
+
+        Map<String, String> managedVersions = new HashMap<>();
+        XmlTag management = root.findFirstSubTag("dependencyManagement");
+        for (Dependency dependency : dependencies(management)) {
+            if (dependency.version() != null) {
+                managedVersions.put(dependency.key(), dependency.version());
+            }
+        }
+
+        return new PomModel(pomFile.getPath(), pomFile.getParent().getPath(), groupId, text(root, "artifactId"), version,
+                text(root, "name"), text(root, "description"),
+                parent != null ? text(parent, "groupId") : null,
+                parent != null ? text(parent, "artifactId") : null,
+                parent != null ? Objects.requireNonNullElse(text(parent, "relativePath"), "../pom.xml") : null,
+                properties, dependencies(root), managedVersions);
+    }
+
+    private static List<Dependency> dependencies(XmlTag owner) {
+        XmlTag dependenciesTag = owner != null ? owner.findFirstSubTag("dependencies") : null;
+        if (dependenciesTag == null) {
+            return List.of();
+        }
+        List<Dependency> dependencies = new ArrayList<>();
+        for (XmlTag dependencyTag : dependenciesTag.findSubTags("dependency")) {
+            dependencies.add(new Dependency(text(dependencyTag, "groupId"), text(dependencyTag, "artifactId"),
+                    text(dependencyTag, "version"), text(dependencyTag, "scope")));
+        }
+        return dependencies;
+    }
+
+    private static String text(XmlTag owner, String name) {
+        XmlTag tag = owner.findFirstSubTag(name);
+        return tag != null ? tag.getValue().getTrimmedText() : null;
+    }
+
+    /**
+     * Parent del modulo dal più vicino al più lontano: prima per relativePath, poi per coordinate
+     */
+    private static List<PomModel> parentChain(PomModel pom, Map<String, PomModel> byDirectory, Map<String, PomModel> byCoordinates) {
+        List<PomModel> chain = new ArrayList<>();
+        PomModel current = pom;
+        while (current.parentArtifactId() != null && chain.size() < MAX_PARENT_DEPTH) {
+            File relative = new File(current.directory(), current.parentRelativePath());
+            File parentDirectory = relative.getName().endsWith(".xml") ? relative.getParentFile() : relative;
+            PomModel parent = byDirectory.get(normalize(parentDirectory));
+            if (parent == null || !current.parentArtifactId().equals(parent.artifactId())) {
+                parent = byCoordinates.get(current.parentGroupId() + ":" + current.parentArtifactId());
+            }
+            // Parent esterno al progetto (ad esempio spring-boot-starter-parent) o ciclo
+            if (parent == null || parent == pom || chain.contains(parent)) {
+                break;
+            }
+            chain.add(parent);
+            current = parent;
+        }
+        return chain;
+    }
+
+    private static String normalize(File directory) {
+        try {
+            return directory.getCanonicalPath().replace(File.separatorChar, '/');
+        } catch (java.io.IOException e) {
+            return directory.getAbsolutePath().replace(File.separatorChar, '/');
+        }
+    }
+
+    /**
+     * Unisce dipendenze, proprietà e versioni gestite dal parent più lontano al modulo: il figlio prevale
+     */
+    private static List<Dependency> effectiveDependencies(PomModel pom, List<PomModel> chain) {
+        List<PomModel> fromRoot = new ArrayList<>(chain);
+        Collections.reverse(fromRoot);
+        fromRoot.add(pom);
+
+        Map<String, String> properties = new HashMap<>();
+        Map<String, String> managedVersions = new HashMap<>();
+        Map<String, Dependency> dependencies = new LinkedHashMap<>();
+        for (PomModel model : fromRoot) {
+            properties.putAll(model.properties());
+            managedVersions.putAll(model.managedVersions());
+            for (Dependency dependency : model.dependencies()) {
+                dependencies.put(dependency.key(), dependency);
+            }
+        }
+        if (pom.version() != null) {
+            properties.put("project.version", pom.version());
+        }
+        if (pom.groupId() != null) {
+            properties.put("project.groupId", pom.groupId());
+        }
+
+        List<Dependency> effective = new ArrayList<>();
+        for (Dependency dependency : dependencies.values()) {
+            String version = dependency.version() != null ? dependency.version() : managedVersions.get(dependency.key());
+            effective.add(new Dependency(resolve(dependency.groupId(), properties), resolve(dependency.artifactId(), properties),
+                    resolve(version, properties), dependency.scope()));
+        }
+        effective.sort(Comparator.comparing(Dependency::key));
+        return List.copyOf(effective);
+    }
+
+    private static String resolve(String value, Map<String, String> properties) {
+        // Le proprietà possono riferirsi ad altre proprietà: poche passate bastano nei casi reali
+        for (int pass = 0; value != null && pass < 5 && value.contains("${"); pass++) {
+            Matcher matcher = PROPERTY.matcher(value);
+            StringBuilder resolved = new StringBuilder();
+            while (matcher.find()) {
+                matcher.appendReplacement(resolved, Matcher.quoteReplacement(
+                        properties.getOrDefault(matcher.group(1), matcher.group())));
+            }
+            matcher.appendTail(resolved);
+            if (resolved.toString().equals(value)) {
+                break;
+            }
+            value = resolved.toString();
+        }
+        return value;
+    }
+
+    @Override
+    public void dispose() {
+        modules.set(null);
+    }
+}
@@ -1,6 +1,9 @@
 package ai.tools;
 
+import ai.SingleFlight;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Computable;
@@ -17,20 +20,32 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Stack;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SearchContextTool {
 
+    // Chiamate ai tool in corso: richieste identiche concorrenti condividono lo stesso risultato
+    private static final SingleFlight<String, Object> TOOL_CALLS = new SingleFlight<>("searchContextTool");
+
+    // Risposta dei tool basati sugli indici mentre l'IDE sta indicizzando il progetto
+    private static final String INDEXING_MESSAGE = "Indicizzazione del progetto in corso: informazione non ancora disponibile, riprovare più tardi";
+
     private final Project project;
 
     public SearchContextTool(Project project) {
         this.project = project;
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> T deduplicated(String tool, String argument, Supplier<T> call) {
+        return (T) TOOL_CALLS.execute(project.getLocationHash() + "#" + tool + "(" + argument + ")", call::get);
+    }
+
     @Tool("Cerca tutti i file Java nel progetto con il nome specificato")
     public List<String> findJavaFilesByName(String fileName) {
-        return ApplicationManager.getApplication().runReadAction((Computable<List<String>>) () -> {
+        return deduplicated("findJavaFilesByName", fileName, () -> ApplicationManager.getApplication().runReadAction((Computable<List<String>>) () -> {
             List<String> results = new ArrayList<>();
 
             Collection<VirtualFile> virtualFiles = FilenameIndex.getAllFilesByExt(
@@ -49,12 +64,12 @@ public class SearchContextTool {
             }
 
             return results;
-        });
+        }));
     }
 
     @Tool("Cerca classi Java nel progetto che contengono la stringa specificata nel loro nome - Approccio basato su file")
     public List<String> findClassesByNamePattern(String pattern) {
-        return ApplicationManager.getApplication().runReadAction((Computable<List<String>>) () -> {
+        return deduplicated("findClassesByNamePattern", pattern, () -> ApplicationManager.getApplication().runReadAction((Computable<List<String>>) () -> {
             List<String> results = new ArrayList<>();
 
             // Ottieni tutte le radici del contenuto del progetto
@@ -66,7 +81,7 @@ public class SearchContextTool {
             }
 
             return results;
-        });
+        }));
     }
 
     private void collectMatchingClasses(VirtualFile file, String pattern, List<String> results) {
@@ -124,7 +139,7 @@ public class SearchContextTool {
 
     @Tool("Ottiene il contenuto di un file Java specificato dal percorso")
     public String getJavaFileContent(String filePath) {
-        return ApplicationManager.getApplication().runReadAction((Computable<String>) () -> {
+        return deduplicated("getJavaFileContent", filePath, () -> ApplicationManager.getApplication().runReadAction((Computable<String>) () -> {
             try {
                 String basePath = project.getBasePath();
                 if (basePath == null) {
@@ -145,45 +160,43 @@ public class SearchContextTool {
             } catch (Exception e) {
                 return "Errore durante la lettura del file: " + e.getMessage();
             }
-        });
+        }));
     }
 
     @Tool("Cerca metodi in una classe Java specificata dal nome completo")
     public List<String> findMethodsInClass(String classQualifiedName) {
-        // Esegui tutto il codice all'interno di una ReadAction
-        return ApplicationManager.getApplication().runReadAction((Computable<List<String>>) () -> {
-            List<String> methods = new ArrayList<>();
-
-            PsiClass psiClass = JavaPsiFacade.getInstance(project)
-                    .findClass(classQualifiedName, GlobalSearchScope.projectScope(project));
-
-            if (psiClass != null) {
-                PsiMethod[] psiMethods = psiClass.getMethods();
-
-                for (PsiMethod method : psiMethods) {
-                    StringBuilder methodSignature = new StringBuilder();
-                    methodSignature.append(method.getName()).append("(");
-
-                    PsiElement[] parameters = method.getParameterList().getParameters();
-                    for (int i = 0; i < parameters.length; i++) {
-                        PsiElement param = parameters[i];
-                        if (param instanceof com.intellij.psi.PsiParameter parameter) {
-                            methodSignature.append(parameter.getType().getPresentableText())
-                                    .append(" ")
-                                    .append(parameter.getName());
-
-                            if (i < parameters.length - 1) {
-                                methodSignature.append(", ");
-                            }
-                        }
-                    }
+        return deduplicated("findMethodsInClass", classQualifiedName, () -> whenIndexed(() ->
+                ClassSignatureIndex.find(project, classQualifiedName)
+                        .map(ClassSignatureIndex.ClassSignature::methods)
+                        .orElse(List.of()), List.of(INDEXING_MESSAGE)));
+    }
 
-                    methodSignature.append(")");
-                    methods.add(methodSignature.toString());
-                }
-            }
+    @Tool("Descrive una classe Java specificata dal nome completo: annotazioni, campi e firme dei metodi")
+    public String describeClass(String classQualifiedName) {
+        return deduplicated("describeClass", classQualifiedName, () -> whenIndexed(() ->
+                ClassSignatureIndex.find(project, classQualifiedName)
+                        .map(signature -> String.join("\n",
+                                "Classe: " + classQualifiedName,
+                                "Annotazioni: " + String.join(", ", signature.annotations()),
+                                "Campi: " + String.join(", ", signature.fields()),
+                                "Metodi: " + String.join(", ", signature.methods())))
+                        .orElse("Classe non trovata: " + classQualifiedName), INDEXING_MESSAGE));
+    }
 
-            return methods;
-        });
+    /**
+     * Esegue una ricerca che richiede gli indici. Durante l'indicizzazione né l'indice delle firme né la
+     * risoluzione delle classi sono disponibili (lancerebbero IndexNotReadyException): invece di attendere
+     * la fine dell'indicizzazione, che può durare minuti, il modello riceve un messaggio esplicito.
+     */
+    private <T> T whenIndexed(Supplier<T> lookup, T indexing) {
+        if (DumbService.isDumb(project)) {
+            return indexing;
+        }
+        try {
+            return lookup.get();
+        } catch (IndexNotReadyException e) {
+            // L'indicizzazione è iniziata durante la ricerca
+            return indexing;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package files;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unisce una classe di test generata a un file di test già esistente a livello di PSI.
+ * <p>
+ * Vengono aggiunti solo gli import, i campi, le classi interne e i metodi che mancano nel file esistente;
+ * i metodi già presenti, con la stessa firma, non vengono toccati, così i test scritti a mano restano intatti.
+ * Import e firme vengono confrontati con le chiavi di {@link TestMemberKeys}.
+ * Deve essere chiamato all'interno di un comando di scrittura.
+ */
+final class TestClassMerger {
+
+    private static final Logger log = LoggerFactory.getLogger(TestClassMerger.class);
+
+    private TestClassMerger() {
+    }
+
+    /**
+     * @param project   Progetto corrente
+     * @param existing  File di test esistente, modificato sul posto
+     * @param generated Codice di test generato
+     * @return Numero di metodi aggiunti
+     */
+    static int merge(Project project, PsiJavaFile existing, String generated) {
+        PsiFile parsed = PsiFileFactory.getInstance(project)
+                .createFileFromText("GeneratedTest.java", JavaFileType.INSTANCE, generated);
+        if (!(parsed instanceof PsiJavaFile generatedFile) || existing.getClasses().length == 0) {
+            log.warn("Merge non possibile per {}: nessuna classe da unire", existing.getName());
+            return 0;
+        }
+
+        List<PsiElement> added = new ArrayList<>();
+        mergeImports(existing, generatedFile, added);
+
+        int methods = 0;
+        for (PsiClass generatedClass : generatedFile.getClasses()) {
+            PsiClass target = findTarget(existing, generatedClass);
+            methods += mergeClass(target, generatedClass, added);
+        }
+
+        CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+        for (PsiElement element : added) {
+            if (element.isValid()) {
+                codeStyleManager.reformat(element);
+            }
+        }
+        log.info("Merge di {}: aggiunti {} metodi di test, {} elementi in totale", existing.getName(), methods, added.size());
+        return methods;
+    }
+
+    private static void mergeImports(PsiJavaFile existing, PsiJavaFile generated, List<PsiElement> added) {
+        PsiImportList existingImports = existing.getImportList();
+        PsiImportList generatedImports = generated.getImportList();
+        if (existingImports == null || generatedImports == null) {
+            return;
+        }
+
+        Set<String> present = TestMemberKeys.imports(existing);
+        for (PsiImportStatementBase statement : generatedImports.getAllImportStatements()) {
+            if (present.add(TestMemberKeys.normalize(statement.getText()))) {
+                added.add(existingImports.add(statement.copy()));
+            }
+        }
+    }
+
+    /**
+     * Classe esistente con lo stesso nome di quella generata, altrimenti la prima del file
+     */
+    private static PsiClass findTarget(PsiJavaFile existing, PsiClass generatedClass) {
+        for (PsiClass psiClass : existing.getClasses()) {
+            if (psiClass.getName() != null && psiClass.getName().equals(generatedClass.getName())) {
+                return psiClass;
+            }
+        }
+        return existing.getClasses()[0];
+    }
+
+    private static int mergeClass(PsiClass target, PsiClass generatedClass, List<PsiElement> added) {
+        // I campi (mock, oggetto sotto test) vanno prima dei metodi
+        PsiMethod[] targetMethods = target.getMethods();
+        PsiElement anchor = targetMethods.length > 0 ? targetMethods[0] : null;
+        for (PsiField field : generatedClass.getFields()) {
+            if (target.findFieldByName(field.getName(), false) == null) {
+                added.add(anchor != null ? target.addBefore(field.copy(), anchor) : target.add(field.copy()));
+            }
+        }
+
+        for (PsiClass innerClass : generatedClass.getInnerClasses()) {
+            if (innerClass.getName() != null && target.findInnerClassByName(innerClass.getName(), false) == null) {
+                added.add(target.add(innerClass.copy()));
+            }
+        }
+
+        Set<String> signatures = new HashSet<>();
+        for (PsiMethod method : target.getMethods()) {
+            signatures.add(TestMemberKeys.signature(method));
+        }
+        int methods = 0;
+        for (PsiMethod method : generatedClass.getMethods()) {
+            if (signatures.add(TestMemberKeys.signature(method))) {
+                added.add(target.add(method.copy()));
+                methods++;
+            }
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,267 @@
+package files;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scrive i file di test generati attraverso documenti e VFS dell'IDE.
+ * <p>
+ * Le scritture richieste da qualsiasi thread vengono accodate e applicate sulla EDT in un'unica
+ * {@link WriteCommandAction} per lotto, quindi le scritture che arrivano insieme producono un solo
+ * comando annullabile, distinto da quello dei lotti successivi. I file vengono creati direttamente nel VFS, senza refresh sincroni; solo se il VFS
+ * non è allineato al disco viene fatto un refresh asincrono per l'intero lotto e le scritture
+ * fallite vengono ritentate una volta.
+ * <p>
+ * In modalità merge un file di test già esistente non viene sovrascritto: i nuovi metodi e import
+ * vengono uniti a quelli presenti con {@link TestClassMerger}.
+ */
+public class TestFileWriter implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(TestFileWriter.class);
+
+    // Attesa prima di applicare un lotto, per raccogliere le scritture che arrivano insieme
+    private static final long BATCH_DELAY_MILLIS = 100;
+
+    private static final String COMMAND_NAME = "Generate JUnit Tests";
+
+    private final Project project;
+    private final ConcurrentLinkedQueue<PendingWrite> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean disposed;
+
+    public TestFileWriter(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static TestFileWriter getInstance(@NotNull Project project) {
+        return project.getService(TestFileWriter.class);
+    }
+
+    /**
+     * Scrittura in attesa
+     *
+     * @param directoryPath Directory di destinazione, creata se manca
+     * @param fileName      Nome del file
+     * @param content       Contenuto del file
+     * @param merge         Se true un file esistente viene unito invece che sovrascritto
+     * @param retried       Se true la scrittura è già stata ritentata dopo un refresh
+     * @param result        Completato con il file scritto
+     */
+    private record PendingWrite(String directoryPath, String fileName, String content, boolean merge,
+                                boolean retried, CompletableFuture<VirtualFile> result) {
+
+        private PendingWrite retry() {
+            return new PendingWrite(directoryPath, fileName, content, merge, true, result);
+        }
+    }
+
+    /**
+     * Accoda la scrittura di un file. Può essere chiamato da qualsiasi thread.
+     *
+     * @return Future completato con il file scritto, oppure in modo eccezionale se la scrittura fallisce
+     */
+    public CompletableFuture<VirtualFile> write(String directoryPath, String fileName, String content) {
+        return write(directoryPath, fileName, content, false);
+    }
+
+    /**
+     * Accoda la scrittura di un file, unendola a quello esistente se {@code merge} è true.
+     * Può essere chiamato da qualsiasi thread.
+     *
+     * @return Future completato con il file scritto, oppure in modo eccezionale se la scrittura fallisce
+     */
+    public CompletableFuture<VirtualFile> write(String directoryPath, String fileName, String content, boolean merge) {
+        CompletableFuture<VirtualFile> result = new CompletableFuture<>();
+        if (disposed) {
+            result.completeExceptionally(new IllegalStateException("Progetto chiuso"));
+            return result;
+        }
+        enqueue(new PendingWrite(directoryPath, fileName, content, merge, false, result));
+        return result;
+    }
+
+    private void enqueue(PendingWrite write) {
+        pending.add(write);
+        if (flushScheduled.compareAndSet(false, true)) {
+            // Con un dialog modale aperto il lotto aspetta che si chiuda: chi ha accodato la scrittura
+            // non la attende bloccando, ma reagisce al completamento del future
+            AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                    () -> ApplicationManager.getApplication().invokeLater(this::flush,
+                            ModalityState.nonModal(), project.getDisposed()),
+                    BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Applica sulla EDT tutte le scritture accodate, in un unico comando
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        List<PendingWrite> batch = new ArrayList<>();
+        for (PendingWrite write; (write = pending.poll()) != null; ) {
+            batch.add(write);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        log.info("Scrittura di {} file di test in un unico comando", batch.size());
+        List<PendingWrite> stale = new ArrayList<>();
+        WriteCommandAction.writeCommandAction(project)
+                .withName(COMMAND_NAME)
+                .run(() -> {
+                    for (PendingWrite write : batch) {
+                        try {
+                            write.result().complete(writeFile(write));
+                        } catch (IOException e) {
+                            if (write.retried()) {
+                                log.error("Scrittura di {} fallita", write.fileName(), e);
+                                write.result().completeExceptionally(e);
+                            } else {
+                                log.debug("Scrittura di {} rimandata dopo il refresh del VFS: {}", write.fileName(), e.getMessage());
+                                stale.add(write);
+                            }
+                        } catch (RuntimeException e) {
+                            log.error("Scrittura di {} fallita", write.fileName(), e);
+                            write.result().completeExceptionally(e);
+                        }
+                    }
+                });
+
+        if (!stale.isEmpty()) {
+            refreshAndRetry(stale);
+        }
+    }
+
+    /**
+     * Allinea il VFS al disco con un solo refresh asincrono per tutte le directory coinvolte e ritenta le scritture
+     */
+    private void refreshAndRetry(List<PendingWrite> stale) {
+        Set<File> directories = new LinkedHashSet<>();
+        for (PendingWrite write : stale) {
+            directories.add(existingAncestor(new File(write.directoryPath())));
+        }
+        directories.remove(null);
+        LocalFileSystem.getInstance().refreshIoFiles(directories, true, true, () -> {
+            for (PendingWrite write : stale) {
+                enqueue(write.retry());
+            }
+        });
+    }
+
+    private static File existingAncestor(File directory) {
+        File current = directory;
+        while (current != null && !current.exists()) {
+            current = current.getParentFile();
+        }
+        return current;
+    }
+
+    private VirtualFile writeFile(PendingWrite write) throws IOException {
+        VirtualFile directory = findOrCreateDirectory(write.directoryPath());
+        VirtualFile file = directory.findChild(write.fileName());
+        if (file != null && write.merge() && mergeInto(file, write.content())) {
+            return file;
+        }
+        if (file == null) {
+            file = directory.createChildData(this, write.fileName());
+        }
+
+        // Passando dal documento la modifica è annullabile ed eventuali editor aperti restano allineati
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        if (document != null) {
+            document.setText(StringUtil.convertLineSeparators(write.content()));
+            FileDocumentManager.getInstance().saveDocument(document);
+        } else {
+            VfsUtil.saveText(file, write.content());
+        }
+        log.debug("File di test scritto: {}", file.getPath());
+        return file;
+    }
+
+    /**
+     * Unisce il codice generato al file di test esistente
+     *
+     * @return false se il file non è un file Java analizzabile e va sovrascritto
+     */
+    private boolean mergeInto(VirtualFile file, String content) {
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance(project);
+        if (document != null) {
+            psiDocumentManager.commitDocument(document);
+        }
+        if (!(PsiManager.getInstance(project).findFile(file) instanceof PsiJavaFile javaFile)) {
+            return false;
+        }
+
+        int added = TestClassMerger.merge(project, javaFile, content);
+        if (document != null) {
+            psiDocumentManager.doPostponedOperationsAndUnblockDocument(document);
+            FileDocumentManager.getInstance().saveDocument(document);
+        }
+        log.debug("File di test unito: {}, {} metodi aggiunti", file.getPath(), added);
+        return true;
+    }
+
+    /**
+     * Trova la directory nel VFS creando quelle mancanti, senza refresh sincroni del file system
+     */
+    private VirtualFile findOrCreateDirectory(String path) throws IOException {
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        List<String> missing = new ArrayList<>();
+        File current = new File(path);
+        VirtualFile directory = fileSystem.findFileByIoFile(current);
+        while (directory == null) {
+            missing.add(0, current.getName());
+            current = current.getParentFile();
+            if (current == null) {
+                throw new IOException("Nessuna directory esistente per " + path);
+            }
+            directory = fileSystem.findFileByIoFile(current);
+        }
+        for (String name : missing) {
+            VirtualFile child = directory.findChild(name);
+            directory = child != null ? child : directory.createChildDirectory(this, name);
+        }
+        if (!directory.isDirectory()) {
+            throw new IOException(path + " non è una directory");
+        }
+        return directory;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        PendingWrite write;
+        while ((write = pending.poll()) != null) {
+            write.result().completeExceptionally(new IllegalStateException("Progetto chiuso"));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package files;
+
+import com.intellij.psi.*;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Chiavi con cui i merge dei test riconoscono import e membri già presenti, condivise dal merge dei test
+ * generati a gruppi e da quello con il file di test esistente, così entrambi considerano uguali gli stessi
+ * membri.
+ * <p>
+ * Il codice generato non è risolto nel progetto, quindi il confronto è testuale: i parametri dei metodi
+ * vengono confrontati con il nome semplice del tipo, così {@code java.util.List<String>} e
+ * {@code List<String>} coincidono. Vanno chiamate in una read action.
+ */
+public final class TestMemberKeys {
+
+    private TestMemberKeys() {
+    }
+
+    /**
+     * Firma del metodo nella forma "nome(Tipo,Tipo,)"
+     */
+    public static String signature(PsiMethod method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            signature.append(parameter.getType().getPresentableText()).append(',');
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * Chiave di un membro: i metodi per firma, campi e classi interne per nome; null per il resto
+     */
+    public static String memberKey(PsiElement member) {
+        if (member instanceof PsiMethod method) {
+            return "method:" + signature(method);
+        }
+        if (member instanceof PsiField field) {
+            return "field:" + field.getName();
+        }
+        if (member instanceof PsiClass inner) {
+            return "class:" + inner.getName();
+        }
+        return null;
+    }
+
+    /**
+     * Import del file, normalizzati e in ordine di dichiarazione
+     */
+    public static Set<String> imports(PsiJavaFile file) {
+        Set<String> imports = new LinkedHashSet<>();
+        PsiImportList importList = file.getImportList();
+        if (importList != null) {
+            for (PsiImportStatementBase statement : importList.getAllImportStatements()) {
+                imports.add(normalize(statement.getText()));
+            }
+        }
+        return imports;
+    }
+
+    /**
+     * Testo con gli spazi compressi, per confrontare import e corpi dei metodi a meno della formattazione
+     */
+    public static String normalize(String text) {
+        return text.replaceAll("\\s+", " ").trim();
+    }
+}
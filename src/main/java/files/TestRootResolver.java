@@ -0,0 +1,157 @@
+package files;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Determina la directory in cui scrivere i test di un file sorgente a partire dalle test source root
+ * del suo modulo, invece di un percorso fisso sotto la root del progetto.
+ * <p>
+ * La root scelta per ogni modulo viene tenuta in cache e invalidata quando cambia la configurazione
+ * delle root del progetto (reimport Maven/Gradle, modifica dei moduli).
+ */
+public class TestRootResolver implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(TestRootResolver.class);
+
+    // Percorso convenzionale usato quando il modulo non dichiara test source root
+    private static final String DEFAULT_TEST_ROOT = "/src/test/java";
+
+    private final Project project;
+    private final Map<String, String> testRootsByModule = new ConcurrentHashMap<>();
+
+    public TestRootResolver(@NotNull Project project) {
+        this.project = project;
+        project.getMessageBus().connect(this).subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                log.debug("Root del progetto modificate, svuoto la cache delle test root");
+                testRootsByModule.clear();
+            }
+        });
+    }
+
+    public static TestRootResolver getInstance(@NotNull Project project) {
+        return project.getService(TestRootResolver.class);
+    }
+
+    /**
+     * Restituisce la directory dei test per un file sorgente e il suo package
+     *
+     * @param sourceFile  File sorgente da testare
+     * @param packageName Package della classe, vuoto per il package di default
+     * @return Percorso assoluto della directory, che può non esistere ancora
+     */
+    public String testDirectoryFor(@NotNull VirtualFile sourceFile, String packageName) {
+        String root = ReadAction.compute(() -> {
+            Module module = ProjectFileIndex.getInstance(project).getModuleForFile(sourceFile);
+            if (module == null) {
+                log.debug("Nessun modulo per {}, uso la root del progetto", sourceFile.getPath());
+                return project.getBasePath() + DEFAULT_TEST_ROOT;
+            }
+            return testRootsByModule.computeIfAbsent(module.getName(), name -> resolveTestRoot(module));
+        });
+
+        if (packageName == null || packageName.isEmpty()) {
+            return root;
+        }
+        return root + "/" + packageName.replace('.', '/');
+    }
+
+    /**
+     * Legge il file di test esistente della classe principale di un file sorgente, se c'è
+     *
+     * @param sourceFile  File sorgente da testare
+     * @param packageName Package della classe, vuoto per il package di default
+     * @return Contenuto del file di test, vuoto se non esiste
+     */
+    public String readExistingTests(@NotNull VirtualFile sourceFile, String packageName) {
+        String testPath = testDirectoryFor(sourceFile, packageName) + "/" + sourceFile.getNameWithoutExtension() + "Test.java";
+        VirtualFile testFile = LocalFileSystem.getInstance().findFileByPath(testPath);
+        if (testFile == null || testFile.isDirectory()) {
+            return "";
+        }
+        try {
+            // Il documento può contenere modifiche non ancora salvate
+            String content = ReadAction.compute(() -> {
+                Document document = FileDocumentManager.getInstance().getDocument(testFile);
+                return document != null ? document.getText() : VfsUtilCore.loadText(testFile);
+            });
+            log.debug("Trovato file di test esistente: {}", testFile.getPath());
+            return content;
+        } catch (IOException e) {
+            log.warn("Impossibile leggere il file di test esistente {}: {}", testPath, e.getMessage());
+            return "";
+        }
+    }
+
+    private String resolveTestRoot(Module module) {
+        String root = findTestSourceRoot(module);
+
+        // Con Gradle i test stanno in un modulo separato: app.main -> app.test
+        if (root == null && module.getName().endsWith(".main")) {
+            String testModuleName = module.getName().substring(0, module.getName().length() - ".main".length()) + ".test";
+            Module testModule = ModuleManager.getInstance(project).findModuleByName(testModuleName);
+            if (testModule != null) {
+                root = findTestSourceRoot(testModule);
+            }
+        }
+
+        if (root == null) {
+            VirtualFile[] contentRoots = ModuleRootManager.getInstance(module).getContentRoots();
+            root = (contentRoots.length > 0 ? contentRoots[0].getPath() : project.getBasePath()) + DEFAULT_TEST_ROOT;
+            log.debug("Il modulo {} non ha test source root, uso {}", module.getName(), root);
+        } else {
+            log.debug("Test root del modulo {}: {}", module.getName(), root);
+        }
+        return root;
+    }
+
+    /**
+     * Sceglie tra le test source root del modulo quella dei sorgenti Java scritti a mano,
+     * scartando le root di sorgenti generati
+     */
+    private static String findTestSourceRoot(Module module) {
+        List<VirtualFile> roots = ModuleRootManager.getInstance(module).getSourceRoots(JavaSourceRootType.TEST_SOURCE);
+        String fallback = null;
+        for (VirtualFile root : roots) {
+            String path = root.getPath();
+            if (path.contains("/generated")) {
+                continue;
+            }
+            if (path.endsWith("/java")) {
+                return path;
+            }
+            if (fallback == null) {
+                fallback = path;
+            }
+        }
+        return fallback;
+    }
+
+    @Override
+    public void dispose() {
+        testRootsByModule.clear();
+    }
+}
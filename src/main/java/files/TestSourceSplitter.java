@@ -0,0 +1,83 @@
+package files;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiPackageStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divide il codice di test generato in un file per ogni classe top-level.
+ * Quando la classe sotto test è in un file con più classi top-level il modello genera una classe di
+ * test per ciascuna nella stessa risposta: ogni classe finisce nel proprio file, con package e import comuni.
+ */
+public final class TestSourceSplitter {
+
+    private TestSourceSplitter() {
+    }
+
+    /**
+     * Sorgente di una singola classe di test
+     *
+     * @param className Nome della classe di test
+     * @param content   Contenuto del file
+     */
+    public record TestSource(String className, String content) {
+
+        public String fileName() {
+            return className + ".java";
+        }
+    }
+
+    /**
+     * @param project          Progetto corrente
+     * @param testCode         Codice generato dal modello
+     * @param defaultClassName Nome da usare se il codice non contiene classi riconoscibili
+     * @return Un sorgente per ogni classe top-level, almeno uno
+     */
+    public static List<TestSource> split(Project project, String testCode, String defaultClassName) {
+        return ReadAction.compute(() -> {
+            PsiFile psiFile = PsiFileFactory.getInstance(project)
+                    .createFileFromText("GeneratedTest.java", JavaFileType.INSTANCE, testCode);
+            if (!(psiFile instanceof PsiJavaFile javaFile)) {
+                return List.of(new TestSource(defaultClassName, testCode));
+            }
+
+            List<PsiClass> classes = new ArrayList<>();
+            for (PsiClass psiClass : javaFile.getClasses()) {
+                if (psiClass.getName() != null) {
+                    classes.add(psiClass);
+                }
+            }
+            if (classes.isEmpty()) {
+                return List.of(new TestSource(defaultClassName, testCode));
+            }
+            if (classes.size() == 1) {
+                return List.of(new TestSource(classes.get(0).getName(), testCode));
+            }
+
+            StringBuilder header = new StringBuilder();
+            PsiPackageStatement packageStatement = javaFile.getPackageStatement();
+            if (packageStatement != null) {
+                header.append(packageStatement.getText()).append("\n\n");
+            }
+            PsiImportList importList = javaFile.getImportList();
+            if (importList != null && !importList.getText().isBlank()) {
+                header.append(importList.getText()).append("\n\n");
+            }
+
+            List<TestSource> sources = new ArrayList<>();
+            for (PsiClass psiClass : classes) {
+                sources.add(new TestSource(psiClass.getName(), header + psiClass.getText() + "\n"));
+            }
+            return sources;
+        });
+    }
+}
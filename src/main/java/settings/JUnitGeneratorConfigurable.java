@@ -0,0 +1,176 @@
+package settings;
+
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+/**
+ * Pagina delle impostazioni sotto Tools | JUnit Generator
+ */
+public class JUnitGeneratorConfigurable implements Configurable {
+
+    private JPanel panel;
+    private JBCheckBox speculativeGeneration;
+    private JBCheckBox mergeExistingTests;
+    private JBCheckBox templateFastPath;
+    private JBCheckBox idleWarmUp;
+    private JBCheckBox idlePreGeneration;
+    private JBIntSpinner candidateCount;
+    private JBIntSpinner contextWindowTokens;
+    private JBIntSpinner reservedOutputTokens;
+    private JBIntSpinner maxMethodsPerRequest;
+    private JBIntSpinner requestsPerMinute;
+    private JBIntSpinner tokensPerMinute;
+    private JBIntSpinner maxConcurrentRequests;
+    private ComboBox<JUnitGeneratorSettings.ModelMode> modelMode;
+    private JBTextField recordingFile;
+    private JBIntSpinner replayLatencyMillis;
+    private JBCheckBox replayViaScheduler;
+
+    @Override
+    public @Nls(capitalization = Nls.Capitalization.Title) String getDisplayName() {
+        return "JUnit Generator";
+    }
+
+    @Override
+    public @Nullable JComponent createComponent() {
+        speculativeGeneration = new JBCheckBox("Speculative generation: start generating tests before the analyses complete");
+        mergeExistingTests = new JBCheckBox("Merge into existing test classes: only add missing test methods");
+        templateFastPath = new JBCheckBox("Generate tests for records, enums and simple value classes from templates, without the model");
+        idleWarmUp = new JBCheckBox("When the IDE is idle, prepare the analyses of changed classes in the background");
+        idlePreGeneration = new JBCheckBox("When the IDE is idle, also pre-generate tests for changed classes (uses the model)");
+
+        candidateCount = new JBIntSpinner(1, 1, 8);
+        contextWindowTokens = new JBIntSpinner(128_000, 4_000, 10_000_000, 1_000);
+        reservedOutputTokens = new JBIntSpinner(16_000, 1_000, 1_000_000, 1_000);
+        maxMethodsPerRequest = new JBIntSpinner(20, 1, 500);
+        requestsPerMinute = new JBIntSpinner(60, 1, 100_000);
+        tokensPerMinute = new JBIntSpinner(90_000, 1_000, 100_000_000, 1_000);
+        maxConcurrentRequests = new JBIntSpinner(8, 1, 256);
+        modelMode = new ComboBox<>(JUnitGeneratorSettings.ModelMode.values());
+        recordingFile = new JBTextField();
+        recordingFile.getEmptyText().setText("Default location in the IDE system directory");
+        replayLatencyMillis = new JBIntSpinner(-1, -1, 600_000, 100);
+        replayViaScheduler = new JBCheckBox("Apply the request limits above to replayed responses");
+
+        panel = FormBuilder.createFormBuilder()
+                .addComponent(speculativeGeneration)
+                .addComponent(mergeExistingTests)
+                .addComponent(templateFastPath)
+                .addLabeledComponent("Candidates generated in parallel:", candidateCount)
+                .addComponent(idleWarmUp)
+                .addComponent(idlePreGeneration)
+                .addSeparator()
+                .addLabeledComponent("Model context window (tokens):", contextWindowTokens)
+                .addLabeledComponent("Tokens reserved for the response:", reservedOutputTokens)
+                .addLabeledComponent("Max methods tested per model request:", maxMethodsPerRequest)
+                .addLabeledComponent("Model requests per minute:", requestsPerMinute)
+                .addLabeledComponent("Model tokens per minute:", tokensPerMinute)
+                .addLabeledComponent("Max concurrent model requests:", maxConcurrentRequests)
+                .addSeparator()
+                .addLabeledComponent("Model responses (live, record, replay):", modelMode)
+                .addLabeledComponent("Recording file:", recordingFile)
+                .addLabeledComponent("Replay latency in ms (-1 = recorded):", replayLatencyMillis)
+                .addComponent(replayViaScheduler)
+                .addComponentFillVertically(new JPanel(), 0)
+                .getPanel();
+        reset();
+        return panel;
+    }
+
+    @Override
+    public boolean isModified() {
+        JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState();
+        return speculativeGeneration.isSelected() != options.speculativeGeneration
+                || mergeExistingTests.isSelected() != options.mergeExistingTests
+                || templateFastPath.isSelected() != options.templateFastPath
+                || idleWarmUp.isSelected() != options.idleWarmUp
+                || idlePreGeneration.isSelected() != options.idlePreGeneration
+                || candidateCount.getNumber() != options.candidateCount
+                || contextWindowTokens.getNumber() != options.contextWindowTokens
+                || reservedOutputTokens.getNumber() != options.reservedOutputTokens
+                || maxMethodsPerRequest.getNumber() != options.maxMethodsPerRequest
+                || requestsPerMinute.getNumber() != options.requestsPerMinute
+                || tokensPerMinute.getNumber() != options.tokensPerMinute
+                || maxConcurrentRequests.getNumber() != options.maxConcurrentRequests
+                || modelMode.getItem() != options.modelMode
+                || !recordingFile.getText().equals(options.recordingFile)
+                || replayLatencyMillis.getNumber() != options.replayLatencyMillis
+                || replayViaScheduler.isSelected() != options.replayViaScheduler;
+    }
+
+    @Override
+    public void apply() throws ConfigurationException {
+        // Senza spazio per l'input il budget del contesto sarebbe negativo
+        if (reservedOutputTokens.getNumber() >= contextWindowTokens.getNumber()) {
+            throw new ConfigurationException("The tokens reserved for the response must be fewer than the model context window.");
+        }
+        JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState();
+        options.speculativeGeneration = speculativeGeneration.isSelected();
+        options.mergeExistingTests = mergeExistingTests.isSelected();
+        options.templateFastPath = templateFastPath.isSelected();
+        options.idleWarmUp = idleWarmUp.isSelected();
+        options.idlePreGeneration = idlePreGeneration.isSelected();
+        options.candidateCount = candidateCount.getNumber();
+        options.contextWindowTokens = contextWindowTokens.getNumber();
+        options.reservedOutputTokens = reservedOutputTokens.getNumber();
+        options.maxMethodsPerRequest = maxMethodsPerRequest.getNumber();
+        options.requestsPerMinute = requestsPerMinute.getNumber();
+        options.tokensPerMinute = tokensPerMinute.getNumber();
+        options.maxConcurrentRequests = maxConcurrentRequests.getNumber();
+        options.modelMode = modelMode.getItem();
+        options.recordingFile = recordingFile.getText();
+        options.replayLatencyMillis = replayLatencyMillis.getNumber();
+        options.replayViaScheduler = replayViaScheduler.isSelected();
+    }
+
+    @Override
+    public void reset() {
+        JUnitGeneratorSettings.Options options = JUnitGeneratorSettings.getInstance().getState();
+        speculativeGeneration.setSelected(options.speculativeGeneration);
+        mergeExistingTests.setSelected(options.mergeExistingTests);
+        templateFastPath.setSelected(options.templateFastPath);
+        idleWarmUp.setSelected(options.idleWarmUp);
+        idlePreGeneration.setSelected(options.idlePreGeneration);
+        candidateCount.setNumber(options.candidateCount);
+        contextWindowTokens.setNumber(options.contextWindowTokens);
+        reservedOutputTokens.setNumber(options.reservedOutputTokens);
+        maxMethodsPerRequest.setNumber(options.maxMethodsPerRequest);
+        requestsPerMinute.setNumber(options.requestsPerMinute);
+        tokensPerMinute.setNumber(options.tokensPerMinute);
+        maxConcurrentRequests.setNumber(options.maxConcurrentRequests);
+        modelMode.setItem(options.modelMode);
+        recordingFile.setText(options.recordingFile);
+        replayLatencyMillis.setNumber(options.replayLatencyMillis);
+        replayViaScheduler.setSelected(options.replayViaScheduler);
+    }
+
+    @Override
+    public void disposeUIResources() {
+        panel = null;
+        speculativeGeneration = null;
+        mergeExistingTests = null;
+        templateFastPath = null;
+        idleWarmUp = null;
+        idlePreGeneration = null;
+        candidateCount = null;
+        contextWindowTokens = null;
+        reservedOutputTokens = null;
+        maxMethodsPerRequest = null;
+        requestsPerMinute = null;
+        tokensPerMinute = null;
+        maxConcurrentRequests = null;
+        modelMode = null;
+        recordingFile = null;
+        replayLatencyMillis = null;
+        replayViaScheduler = null;
+    }
+}
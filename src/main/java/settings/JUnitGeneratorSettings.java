@@ -0,0 +1,104 @@
+package settings;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Impostazioni applicative del generatore, persistite in junit-generator.xml
+ */
+@State(name = "JUnitGeneratorSettings", storages = @Storage("junit-generator.xml"))
+public class JUnitGeneratorSettings implements PersistentStateComponent<JUnitGeneratorSettings.Options> {
+
+    /**
+     * Origine delle risposte del modello
+     */
+    public enum ModelMode {
+        // Chiamate al provider
+        LIVE,
+        // Chiamate al provider con registrazione di ogni scambio su file
+        RECORD,
+        // Risposte rigiocate da una registrazione, senza rete: per misure ripetibili della pipeline
+        REPLAY
+    }
+
+    /**
+     * Opzioni configurabili dall'utente
+     */
+    public static class Options {
+        // Avvia junit_generator in parallelo alle analisi e rigenera solo se l'analisi cambia qualcosa di rilevante
+        public boolean speculativeGeneration = false;
+
+        // Numero di candidati generati e validati in parallelo; con 1 si genera un solo test
+        public int candidateCount = 1;
+
+        // Se esiste già un file di test vengono aggiunti solo i nuovi metodi invece di sovrascriverlo
+        public boolean mergeExistingTests = true;
+
+        // Record, enum, DTO e classi valore vengono testati da template, senza chiamate al modello
+        public boolean templateFastPath = true;
+
+        // Con l'IDE inattivo prepara in background analisi del pom e test root delle classi modificate
+        public boolean idleWarmUp = true;
+
+        // Con l'IDE inattivo esegue anche l'intero grafo sulle classi modificate, usando la corsia batch
+        public boolean idlePreGeneration = false;
+
+        // Finestra di contesto del modello e token riservati alla risposta: oltre, il contesto viene ridotto
+        // e le classi molto grandi vengono generate in più parti
+        public int contextWindowTokens = 128_000;
+        public int reservedOutputTokens = 16_000;
+
+        // Oltre questo numero di metodi da testare la generazione viene divisa in cluster generati in parallelo
+        public int maxMethodsPerRequest = 20;
+
+        // Limiti del provider applicati dallo scheduler delle richieste al modello
+        public int requestsPerMinute = 60;
+        public int tokensPerMinute = 90_000;
+        public int maxConcurrentRequests = 8;
+
+        // Registrazione e replay degli scambi con il modello; file vuoto per il percorso predefinito
+        public ModelMode modelMode = ModelMode.LIVE;
+        public String recordingFile = "";
+
+        // Latenza simulata di ogni risposta in replay; negativa per usare quella registrata
+        public int replayLatencyMillis = -1;
+
+        // Se anche le risposte rigiocate passano dallo scheduler, con i limiti del provider configurati sopra
+        public boolean replayViaScheduler = false;
+
+        /**
+         * Opzioni che cambiano il risultato di una generazione: due esecuzioni sullo stesso file possono
+         * condividere esecuzione e checkpoint solo se coincidono
+         */
+        public String generationKey() {
+            return String.format("s%dc%dw%dr%dm%d%s", speculativeGeneration ? 1 : 0, candidateCount,
+                    contextWindowTokens, reservedOutputTokens, maxMethodsPerRequest, modelMode.name().charAt(0));
+        }
+
+        public Options copy() {
+            Options copy = new Options();
+            XmlSerializerUtil.copyBean(this, copy);
+            return copy;
+        }
+    }
+
+    private Options options = new Options();
+
+    public static JUnitGeneratorSettings getInstance() {
+        return ApplicationManager.getApplication().getService(JUnitGeneratorSettings.class);
+    }
+
+    @Override
+    public @NotNull Options getState() {
+        return options;
+    }
+
+    @Override
+    public void loadState(@NotNull Options state) {
+        XmlSerializerUtil.copyBean(state, options);
+    }
+}
@@ -1,25 +1,59 @@
 package ui;
 
 import com.intellij.icons.AllIcons;
-import com.intellij.ui.JBColor;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.CollectionListModel;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.DoubleClickListener;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBList;
 import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.components.JBScrollPane;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+
+/**
+ * Pannello dei risultati della generazione dei test.
+ * <p>
+ * Gli elementi sono semplici oggetti del modello di una {@link JBList} con altezza di riga fissa,
+ * quindi vengono disegnate solo le righe visibili e nessun componente Swing viene creato per elemento.
+ * Ogni esecuzione è un run separato: i run precedenti restano consultabili dalla cronologia. Gli elementi
+ * vengono sempre aggiunti e aggiornati nel run indicato dal chiamante, così più esecuzioni concorrenti
+ * scrivono ognuna nel proprio.
+ * La vista può raggruppare gli elementi per modulo o package e filtrarli per stato.
+ */
 public class InfoWindowPanel extends JBPanel<InfoWindowPanel> {
     private static final Logger logger = LoggerFactory.getLogger(InfoWindowPanel.class);
 
+    // Numero massimo di run conservati nella cronologia
+    private static final int MAX_RUNS = 20;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
     // Icone statiche
     private static final Icon ERROR_ICON = UIUtil.getBalloonErrorIcon();
     private static final Icon SUCCESS_ICON = AllIcons.Actions.Checked;
@@ -36,281 +70,572 @@ public class InfoWindowPanel extends JBPanel<InfoWindowPanel> {
         LOADING, SUCCESS, ERROR, WARNING, WAITING
     }
 
-    private final JPanel contentPanel;
+    /**
+     * Criterio di raggruppamento della vista
+     */
+    private enum Grouping {
+        NONE("No grouping"), MODULE("Group by module"), PACKAGE("Group by package");
+
+        private final String label;
+
+        Grouping(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Riga della lista: intestazione di un gruppo oppure elemento
+     */
+    private sealed interface Row permits GroupHeader, Item {
+    }
+
+    private record GroupHeader(String caption, Grouping grouping) implements Row {
+    }
+
+    /**
+     * Elemento di un run. È mutabile: gli aggiornamenti di stato e testo modificano l'istanza e
+     * ridisegnano solo la sua riga.
+     */
+    private static final class Item implements Row {
+        private final String id;
+        private final String description;
+        private final boolean bold;
+        private final String module;
+        private final String packageName;
+        private StatusType status;
+        private String text;
+        private String actionText;
+        private ActionListener action;
+
+        private Item(String id, StatusType status, String text, String description, boolean bold,
+                     String module, String packageName) {
+            this.id = id;
+            this.status = status;
+            this.text = text;
+            this.description = description;
+            this.bold = bold;
+            this.module = module;
+            this.packageName = packageName;
+        }
+
+        private String groupKey(Grouping grouping) {
+            return switch (grouping) {
+                case NONE -> "";
+                case MODULE -> module != null ? module : "";
+                case PACKAGE -> packageName != null ? packageName : "";
+            };
+        }
+    }
+
+    /**
+     * Un'esecuzione con i suoi elementi in ordine di inserimento. Fuori dal pannello è un riferimento opaco,
+     * restituito da {@link #startNewRun} e passato a ogni aggiornamento degli elementi.
+     */
+    public static final class Run {
+        private final int number;
+        private final String title;
+        private final LocalTime startedAt = LocalTime.now().truncatedTo(ChronoUnit.SECONDS);
+        private final Map<String, Item> items = new LinkedHashMap<>();
+        // Run creato dal pannello stesso: se resta vuoto viene sostituito dal primo run avviato
+        private final boolean placeholder;
+
+        private Run(int number, String title, boolean placeholder) {
+            this.number = number;
+            this.title = title;
+            this.placeholder = placeholder;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + number + " " + title + " (" + TIME_FORMAT.format(startedAt) + ")";
+        }
+    }
+
+    private final DefaultComboBoxModel<Run> runs = new DefaultComboBoxModel<>();
+    private final ComboBox<Run> runSelector = new ComboBox<>(runs);
+    private final ComboBox<String> statusFilter = new ComboBox<>();
+    private final ComboBox<Grouping> groupingSelector = new ComboBox<>(Grouping.values());
+
+    private final CollectionListModel<Row> listModel = new CollectionListModel<>();
+    private final JBList<Row> list = new JBList<>(listModel);
+
+    // Tag del frammento con il testo dell'azione, per riconoscere il click sul link
+    private static final Object ACTION_LINK = new Object();
+
+    // Posizione nella lista degli elementi visibili, per ridisegnare una sola riga
+    private final Map<Item, Integer> viewIndex = new HashMap<>();
+
+    // Run iniziale della sessione, finché non viene sostituito da un run avviato
+    private Run placeholderRun;
+    private int runCounter = 0;
+
     private int loadingIconIndex = 0;
     private Timer loadingTimer;
-    private final List<JLabel> loadingLabels = new ArrayList<>();
 
-    // Mappa per tenere traccia di tutti gli elementi per ID
-    private final Map<String, JLabel> iconLabelMap = new HashMap<>();
-    private final Map<String, JLabel> textLabelMap = new HashMap<>();
-    private final Map<String, JPanel> itemPanelMap = new HashMap<>();
+    // Elementi in caricamento presenti nella vista: l'animazione gira solo se ce n'è almeno uno
+    private final Set<Item> loadingItems = new HashSet<>();
+
+    // Se maggiore di zero gli aggiornamenti della vista vengono rimandati alla fine di applyBatch
+    private int batchDepth = 0;
+    private boolean structureDirty = false;
+    private final Set<Item> dirtyItems = new HashSet<>();
 
     public InfoWindowPanel() {
         logger.debug("Initializing InfoWindowPanel");
         setLayout(new BorderLayout());
         setBorder(JBUI.Borders.empty(10));
 
-        contentPanel = new JBPanel<>();
-        contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
-
-        JPanel mainPanel = new JBPanel<>(new BorderLayout());
-        mainPanel.add(contentPanel, BorderLayout.CENTER);
+        statusFilter.addItem("All statuses");
+        for (StatusType status : StatusType.values()) {
+            statusFilter.addItem(status.name().charAt(0) + status.name().substring(1).toLowerCase());
+        }
 
-        add(mainPanel, BorderLayout.NORTH);
+        JPanel toolbar = new JBPanel<>(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        toolbar.add(new JBLabel("Run:"));
+        toolbar.add(runSelector);
+        toolbar.add(statusFilter);
+        toolbar.add(groupingSelector);
+        toolbar.setBorder(JBUI.Borders.emptyBottom(6));
+
+        runSelector.addActionListener(e -> rebuildView());
+        statusFilter.addActionListener(e -> rebuildView());
+        groupingSelector.addActionListener(e -> rebuildView());
+
+        // Altezza fissa: la lista non deve misurare tutte le righe per impaginarle
+        list.setFixedCellHeight(JBUI.scale(24));
+        list.setCellRenderer(new RowRenderer());
+        list.getEmptyText().setText("No results");
+        installItemActions();
+
+        add(toolbar, BorderLayout.NORTH);
+        add(new JBScrollPane(list), BorderLayout.CENTER);
+
+        startSessionRun();
+
+        // Il timer dell'animazione parte solo quando serve, vedi updateLoadingAnimation
+        loadingTimer = new Timer(125, e -> advanceLoadingAnimation());
+        list.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                updateLoadingAnimation();
+            }
+        });
 
         logger.info("InfoWindowPanel initialized");
-        startLoadingAnimation();
     }
 
-    private void startLoadingAnimation() {
-        logger.debug("Starting loading animation timer");
-        loadingTimer = new Timer(125, e -> {
-            loadingIconIndex = (loadingIconIndex + 1) % LOADING_ICONS.length;
-            updateLoadingIcons();
-        });
-        loadingTimer.start();
-        logger.debug("Animation timer started with {} loading labels", loadingLabels.size());
+    /**
+     * Avvia l'animazione se nella vista ci sono elementi in caricamento e il pannello è visibile,
+     * altrimenti la ferma: senza elementi in caricamento il pannello non ridisegna nulla
+     */
+    private void updateLoadingAnimation() {
+        boolean needed = !loadingItems.isEmpty() && list.isShowing();
+        if (needed && !loadingTimer.isRunning()) {
+            logger.debug("Starting loading animation timer for {} items", loadingItems.size());
+            loadingTimer.start();
+        } else if (!needed && loadingTimer.isRunning()) {
+            logger.debug("Stopping loading animation timer");
+            loadingTimer.stop();
+        }
     }
 
-    private void updateLoadingIcons() {
-        // Aggiorna tutte le icone di caricamento tenute traccia nella lista
-        for (JLabel iconLabel : loadingLabels) {
-            iconLabel.setIcon(LOADING_ICONS[loadingIconIndex]);
+    /**
+     * Passa al fotogramma successivo ridisegnando solo l'area dell'icona delle righe in caricamento visibili
+     */
+    private void advanceLoadingAnimation() {
+        loadingIconIndex = (loadingIconIndex + 1) % LOADING_ICONS.length;
+
+        Rectangle visibleRect = list.getVisibleRect();
+        int iconAreaWidth = LOADING_ICONS[0].getIconWidth()
+                + JBUI.scale(selectedGrouping() == Grouping.NONE ? 8 : 24);
+        for (Item item : loadingItems) {
+            Integer index = viewIndex.get(item);
+            Rectangle bounds = index != null ? list.getCellBounds(index, index) : null;
+            if (bounds != null && bounds.intersects(visibleRect)) {
+                list.repaint(bounds.x, bounds.y, Math.min(bounds.width, iconAreaWidth), bounds.height);
+            }
         }
-        contentPanel.revalidate();
-        contentPanel.repaint();
     }
 
     /**
-     * Crea un elemento di stato con un ID per il riferimento futuro
+     * Un clic sul testo dell'azione, il doppio clic o Invio su un elemento eseguono la sua azione, se presente
      */
-    public void createStatusItemWithId(String id, Icon icon, String text, String description, boolean isBold, JPanel container) {
-        logger.debug("Creating status item with id='{}', text='{}', description='{}'", id, text, description);
+    private void installItemActions() {
+        // Un clic singolo sul testo dell'azione la esegue come un link
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent event) {
+                if (event.getClickCount() == 1 && SwingUtilities.isLeftMouseButton(event) && isOnActionLink(event.getPoint())) {
+                    runItemAction(list.getModel().getElementAt(list.locationToIndex(event.getPoint())));
+                }
+            }
+        });
 
-        JPanel itemPanel = new JBPanel<>(new BorderLayout(10, 0));
-        itemPanel.setBorder(JBUI.Borders.empty(3, 0));
-        itemPanel.setOpaque(false);
+        new DoubleClickListener() {
+            @Override
+            protected boolean onDoubleClick(@NotNull MouseEvent event) {
+                // Sul link l'azione è già partita al primo clic
+                return isOnActionLink(event.getPoint()) || runItemAction(list.getSelectedValue());
+            }
+        }.installOn(list);
 
-        JLabel iconLabel = new JLabel(icon);
-        JLabel textLabel = new JBLabel(text);
+        list.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "runItemAction");
+        list.getActionMap().put("runItemAction", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                runItemAction(list.getSelectedValue());
+            }
+        });
+    }
 
-        if (isBold) {
-            textLabel.setFont(textLabel.getFont().deriveFont(Font.BOLD));
+    /**
+     * Verifica se il punto cade sul testo dell'azione di un elemento, ridisegnando la riga con il renderer
+     * per trovare il frammento sotto il cursore
+     */
+    private boolean isOnActionLink(Point point) {
+        int index = list.locationToIndex(point);
+        Rectangle bounds = index >= 0 ? list.getCellBounds(index, index) : null;
+        if (bounds == null || !bounds.contains(point)) {
+            return false;
         }
+        Row row = list.getModel().getElementAt(index);
+        if (!(row instanceof Item item) || item.action == null) {
+            return false;
+        }
+        Component component = list.getCellRenderer()
+                .getListCellRendererComponent(list, row, index, list.isSelectedIndex(index), false);
+        if (!(component instanceof ColoredListCellRenderer<?> renderer)) {
+            return false;
+        }
+        renderer.setBounds(bounds);
+        return renderer.getFragmentTagAt(point.x - bounds.x) == ACTION_LINK;
+    }
 
-        itemPanel.add(iconLabel, BorderLayout.WEST);
-        itemPanel.add(textLabel, BorderLayout.CENTER);
-
-        if (description != null && !description.isEmpty()) {
-            JLabel descLabel = new JBLabel(description);
-            descLabel.setFont(descLabel.getFont().deriveFont(Font.PLAIN, 11f));
-            descLabel.setForeground(JBColor.GRAY);
-
-            JPanel textPanel = new JBPanel<>(new BorderLayout());
-            textPanel.setOpaque(false);
-            textPanel.add(textLabel, BorderLayout.NORTH);
-            textPanel.add(descLabel, BorderLayout.CENTER);
+    private boolean runItemAction(Row row) {
+        if (row instanceof Item item && item.action != null) {
+            logger.debug("Running action '{}' of item id='{}'", item.actionText, item.id);
+            item.action.actionPerformed(new ActionEvent(list, ActionEvent.ACTION_PERFORMED, item.actionText));
+            return true;
+        }
+        return false;
+    }
 
-            itemPanel.add(textPanel, BorderLayout.CENTER);
+    /**
+     * Inizia un nuovo run e lo seleziona; i run precedenti restano nella cronologia. Solo il run iniziale
+     * della sessione viene sostituito se è ancora vuoto: un run avviato da un'esecuzione resta anche se
+     * non ha ancora elementi, perché l'esecuzione può aggiungerli più tardi. Deve essere chiamato sulla EDT.
+     *
+     * @param title Titolo del run mostrato nella cronologia
+     * @return Il run in cui l'esecuzione aggiunge e aggiorna i propri elementi
+     */
+    public Run startNewRun(String title) {
+        logger.debug("Starting new run '{}'", title);
+        if (placeholderRun != null && placeholderRun.items.isEmpty()) {
+            runs.removeElement(placeholderRun);
         }
+        placeholderRun = null;
+        return addRun(new Run(++runCounter, title, false));
+    }
 
-        container.add(itemPanel);
+    private void startSessionRun() {
+        placeholderRun = addRun(new Run(++runCounter, "Session", true));
+    }
 
-        // Memorizza i label nella mappa per il riferimento futuro
-        iconLabelMap.put(id, iconLabel);
-        textLabelMap.put(id, textLabel);
-        itemPanelMap.put(id, itemPanel);
+    private Run addRun(Run run) {
+        runs.insertElementAt(run, 0);
+        while (runs.getSize() > MAX_RUNS) {
+            // Un run uscito dalla cronologia può ancora ricevere aggiornamenti, che semplicemente non si vedono
+            runs.removeElementAt(runs.getSize() - 1);
+        }
+        runSelector.setSelectedItem(run);
+        rebuildView();
+        return run;
+    }
 
-        // Se è un'icona di caricamento, aggiungila alla lista loadingLabels
-        if (isLoadingIcon(icon)) {
-            logger.trace("Added loading icon for item id='{}'", id);
-            loadingLabels.add(iconLabel);
+    /**
+     * Applica un gruppo di aggiornamenti aggiornando la vista una sola volta alla fine.
+     * Deve essere chiamato sulla EDT.
+     */
+    public void applyBatch(Runnable updates) {
+        batchDepth++;
+        try {
+            updates.run();
+        } finally {
+            batchDepth--;
         }
+        if (batchDepth == 0) {
+            flushView();
+        }
+    }
+
+    /**
+     * Aggiunge un nuovo elemento con un ID al run indicato
+     */
+    public void addNewItem(Run run, String id, StatusType statusType, String text, String description, boolean isBold) {
+        addNewItem(run, id, statusType, text, description, isBold, null, null);
     }
 
     /**
-     * Verifica se un'icona è una delle icone di caricamento
+     * Aggiunge un nuovo elemento con un ID al run indicato, con modulo e package usati per il raggruppamento
      */
-    private boolean isLoadingIcon(Icon icon) {
-        for (Icon loadingIcon : LOADING_ICONS) {
-            if (loadingIcon == icon) {
-                return true;
+    public void addNewItem(Run run, String id, StatusType statusType, String text, String description, boolean isBold,
+                           String module, String packageName) {
+        logger.info("Adding new item to run #{}: id='{}', status='{}', text='{}'", run.number, id, statusType, text);
+
+        Item item = new Item(id, statusType, text, description, isBold, module, packageName);
+        Item previous = run.items.put(id, item);
+        if (previous != null) {
+            logger.warn("Item with id='{}' already exists - will be overwritten", id);
+        }
+        if (run == placeholderRun) {
+            // Il run iniziale con elementi non va più sostituito
+            placeholderRun = null;
+        }
+
+        if (!isDisplayed(run)) {
+            return;
+        }
+        if (previous == null && !structureDirty && selectedGrouping() == Grouping.NONE && matchesFilter(item)) {
+            // Caso comune: l'elemento va in fondo alla lista, senza ricostruirla
+            viewIndex.put(item, listModel.getSize());
+            listModel.add(item);
+            if (statusType == StatusType.LOADING) {
+                loadingItems.add(item);
+                updateLoadingAnimation();
             }
+        } else {
+            structureDirty = true;
+            flushIfIdle();
         }
-        return false;
     }
 
     /**
      * Aggiorna lo stato di un elemento tramite il suo ID
      */
-    public void updateItemStatus(String id, StatusType statusType) {
+    public void updateItemStatus(Run run, String id, StatusType statusType) {
         logger.debug("Updating item status: id='{}', new status='{}'", id, statusType);
-        JLabel iconLabel = iconLabelMap.get(id);
-        if (iconLabel != null) {
-            // Rimuovi dalla lista delle icone di caricamento se necessario
-            if (loadingLabels.contains(iconLabel) && statusType != StatusType.LOADING) {
-                logger.trace("Removing item id='{}' from loading labels", id);
-                loadingLabels.remove(iconLabel);
-            }
-
-            // Imposta l'icona appropriata in base al tipo di stato
-            switch (statusType) {
-                case LOADING:
-                    iconLabel.setIcon(LOADING_ICONS[loadingIconIndex]);
-                    if (!loadingLabels.contains(iconLabel)) {
-                        logger.trace("Adding item id='{}' to loading labels", id);
-                        loadingLabels.add(iconLabel);
-                    }
-                    break;
-                case SUCCESS:
-                    iconLabel.setIcon(SUCCESS_ICON);
-                    break;
-                case ERROR:
-                    iconLabel.setIcon(ERROR_ICON);
-                    break;
-                case WARNING:
-                    iconLabel.setIcon(WARNING_ICON);
-                    break;
-                case WAITING:
-                    iconLabel.setIcon(WAITING_ICON);
-                    break;
-            }
-
-            // Aggiorna l'interfaccia
-            iconLabel.getParent().revalidate();
-            iconLabel.getParent().repaint();
-        } else {
+        Item item = run.items.get(id);
+        if (item == null) {
             logger.warn("Could not update status for item with id='{}' - item not found", id);
+            return;
+        }
+        item.status = statusType;
+        if (statusType == StatusType.LOADING && viewIndex.containsKey(item)) {
+            loadingItems.add(item);
+        } else {
+            loadingItems.remove(item);
         }
+        // Con un filtro attivo il cambio di stato può mostrare o nascondere l'elemento
+        itemChanged(run, item, selectedStatus() != null);
     }
 
     /**
      * Aggiorna il testo di un elemento tramite il suo ID
      */
-    public void updateItemText(String id, String newText) {
+    public void updateItemText(Run run, String id, String newText) {
         logger.debug("Updating item text: id='{}', new text='{}'", id, newText);
-        JLabel textLabel = textLabelMap.get(id);
-        if (textLabel != null) {
-            textLabel.setText(newText);
-            textLabel.getParent().revalidate();
-            textLabel.getParent().repaint();
-        } else {
+        Item item = run.items.get(id);
+        if (item == null) {
             logger.warn("Could not update text for item with id='{}' - item not found", id);
+            return;
         }
+        item.text = newText;
+        itemChanged(run, item, false);
     }
 
     /**
-     * Aggiunge un nuovo elemento con un ID
+     * Associa un'azione a un elemento esistente tramite il suo ID. L'azione compare come link
+     * nella riga e si esegue con doppio clic o Invio.
      */
-    public void addNewItem(String id, StatusType statusType, String text, String description, boolean isBold) {
-        logger.info("Adding new item: id='{}', status='{}', text='{}'", id, statusType, text);
-
-        if (iconLabelMap.containsKey(id)) {
-            logger.warn("Item with id='{}' already exists - will be overwritten", id);
+    public void addButtonToItem(Run run, String id, String buttonText, ActionListener actionListener) {
+        logger.debug("Adding action '{}' to item with id='{}'", buttonText, id);
+        Item item = run.items.get(id);
+        if (item == null) {
+            logger.warn("Could not add action to item with id='{}' - item not found", id);
+            return;
         }
-
-        Icon icon = switch (statusType) {
-            case LOADING -> LOADING_ICONS[loadingIconIndex];
-            case ERROR -> ERROR_ICON;
-            case WARNING -> WARNING_ICON;
-            case WAITING -> WAITING_ICON;
-            default -> SUCCESS_ICON;
-        };
-
-        createStatusItemWithId(id, icon, text, description, isBold, contentPanel);
+        item.actionText = buttonText;
+        item.action = actionListener;
+        itemChanged(run, item, false);
     }
 
     /**
-     * Aggiunge un pulsante a un elemento esistente tramite il suo ID
+     * Rimuove un elemento tramite il suo ID
      */
-    public void addButtonToItem(String id, String buttonText, ActionListener actionListener) {
-        logger.debug("Adding button '{}' to item with id='{}'", buttonText, id);
-        JPanel itemPanel = itemPanelMap.get(id);
-
-        if (itemPanel != null) {
-            // Crea il pulsante
-            JButton button = new JButton(buttonText);
-            button.addActionListener(actionListener);
-
-            // Impostazioni di stile
-            button.setFocusPainted(false);
-            button.setBorder(JBUI.Borders.empty(2, 8));
-
-            // Crea un pannello per contenere il pulsante (allineato a destra)
-            JPanel buttonPanel = new JBPanel<>(new FlowLayout(FlowLayout.RIGHT));
-            buttonPanel.setOpaque(false);
-            buttonPanel.add(button);
-
-            // Aggiungi il pannello del pulsante all'elemento
-            itemPanel.add(buttonPanel, BorderLayout.EAST);
+    public void removeItem(Run run, String id) {
+        logger.debug("Removing item with id='{}'", id);
+        Item item = run.items.remove(id);
+        if (item == null) {
+            logger.warn("Could not remove item with id='{}' - item not found", id);
+            return;
+        }
+        itemChanged(run, item, true);
+    }
 
-            // Aggiorna l'interfaccia
-            itemPanel.revalidate();
-            itemPanel.repaint();
+    /**
+     * Rimuove tutti gli elementi e l'intera cronologia dei run
+     */
+    public void clearAll() {
+        logger.debug("Clearing all items and run history from panel");
+        runs.removeAllElements();
+        startSessionRun();
+        logger.info("All items cleared from panel");
+    }
 
-            logger.debug("Button added successfully to item id='{}'", id);
+    private void itemChanged(Run run, Item item, boolean structural) {
+        if (!isDisplayed(run)) {
+            return;
+        }
+        if (structural) {
+            structureDirty = true;
         } else {
-            logger.warn("Could not add button to item with id='{}' - item not found", id);
+            dirtyItems.add(item);
+        }
+        flushIfIdle();
+    }
+
+    private void flushIfIdle() {
+        if (batchDepth == 0) {
+            flushView();
         }
     }
 
     /**
-     * Rimuove un elemento tramite il suo ID
+     * Porta la vista in pari con il modello: ricostruisce la lista se è cambiata la struttura,
+     * altrimenti ridisegna solo le righe modificate
      */
-    public void removeItem(String id) {
-        logger.debug("Removing item with id='{}'", id);
-        JLabel iconLabel = iconLabelMap.get(id);
-        if (iconLabel != null) {
-            Container parent = iconLabel.getParent();
-            Container grandParent = parent.getParent();
-
-            // Rimuovi dalla lista delle icone di caricamento se necessario
-            if (loadingLabels.remove(iconLabel)) {
-                logger.trace("Removed item id='{}' from loading labels", id);
+    private void flushView() {
+        if (structureDirty) {
+            rebuildView();
+            return;
+        }
+        for (Item item : dirtyItems) {
+            Integer index = viewIndex.get(item);
+            if (index != null) {
+                Rectangle bounds = list.getCellBounds(index, index);
+                if (bounds != null) {
+                    list.repaint(bounds);
+                }
             }
+        }
+        dirtyItems.clear();
+        updateLoadingAnimation();
+    }
+
+    /**
+     * Ricostruisce le righe della lista per il run selezionato, applicando filtro e raggruppamento
+     */
+    private void rebuildView() {
+        structureDirty = false;
+        dirtyItems.clear();
+        viewIndex.clear();
+        loadingItems.clear();
+
+        Run run = (Run) runSelector.getSelectedItem();
+        if (run == null) {
+            listModel.removeAll();
+            updateLoadingAnimation();
+            return;
+        }
 
-            // Rimuovi dalla UI
-            grandParent.remove(parent);
-            grandParent.revalidate();
-            grandParent.repaint();
+        List<Item> visible = new ArrayList<>();
+        for (Item item : run.items.values()) {
+            if (matchesFilter(item)) {
+                visible.add(item);
+            }
+        }
 
-            // Rimuovi dalle mappe
-            iconLabelMap.remove(id);
-            textLabelMap.remove(id);
-            itemPanelMap.remove(id);
-            logger.debug("Item with id='{}' successfully removed", id);
+        Grouping grouping = selectedGrouping();
+        List<Row> rows = new ArrayList<>(visible.size() + 16);
+        if (grouping == Grouping.NONE) {
+            rows.addAll(visible);
         } else {
-            logger.warn("Could not remove item with id='{}' - item not found", id);
+            // Ordinamento stabile: all'interno di un gruppo resta l'ordine di inserimento
+            visible.sort(Comparator.comparing((Item item) -> item.groupKey(grouping)));
+            String currentGroup = null;
+            for (Item item : visible) {
+                String group = item.groupKey(grouping);
+                if (!group.equals(currentGroup)) {
+                    rows.add(new GroupHeader(group, grouping));
+                    currentGroup = group;
+                }
+                rows.add(item);
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i) instanceof Item item) {
+                viewIndex.put(item, i);
+                if (item.status == StatusType.LOADING) {
+                    loadingItems.add(item);
+                }
+            }
         }
+        listModel.replaceAll(rows);
+        updateLoadingAnimation();
     }
 
-    /**
-     * Rimuove tutti gli elementi dal pannello
-     */
-    public void clearAll() {
-        logger.debug("Clearing all items from panel");
+    private boolean isDisplayed(Run run) {
+        return run != null && run == runSelector.getSelectedItem();
+    }
 
-        // Ferma l'animazione di caricamento per tutti gli elementi
-        stopLoadingAnimation();
+    private Grouping selectedGrouping() {
+        Grouping grouping = (Grouping) groupingSelector.getSelectedItem();
+        return grouping != null ? grouping : Grouping.NONE;
+    }
 
-        // Rimuovi tutti i componenti dal contentPanel
-        contentPanel.removeAll();
+    /**
+     * Stato selezionato nel filtro, oppure null se vanno mostrati tutti gli elementi
+     */
+    private StatusType selectedStatus() {
+        int index = statusFilter.getSelectedIndex();
+        return index > 0 ? StatusType.values()[index - 1] : null;
+    }
 
-        // Pulisci tutte le liste e mappe
-        loadingLabels.clear();
-        iconLabelMap.clear();
-        textLabelMap.clear();
-        itemPanelMap.clear();
+    private boolean matchesFilter(Item item) {
+        StatusType status = selectedStatus();
+        return status == null || item.status == status;
+    }
 
-        // Aggiorna l'interfaccia
-        contentPanel.revalidate();
-        contentPanel.repaint();
+    private Icon iconFor(StatusType status) {
+        return switch (status) {
+            case LOADING -> LOADING_ICONS[loadingIconIndex];
+            case ERROR -> ERROR_ICON;
+            case WARNING -> WARNING_ICON;
+            case WAITING -> WAITING_ICON;
+            case SUCCESS -> SUCCESS_ICON;
+        };
+    }
 
-        // Riavvia l'animazione di caricamento
-        startLoadingAnimation();
+    /**
+     * Disegna intestazioni di gruppo ed elementi su una sola riga
+     */
+    private final class RowRenderer extends ColoredListCellRenderer<Row> {
+        @Override
+        protected void customizeCellRenderer(@NotNull JList<? extends Row> list, Row row, int index,
+                                             boolean selected, boolean hasFocus) {
+            if (row instanceof GroupHeader header) {
+                setIcon(header.grouping() == Grouping.MODULE ? AllIcons.Nodes.Module : AllIcons.Nodes.Package);
+                append(header.caption().isEmpty() ? "(none)" : header.caption(), SimpleTextAttributes.GRAYED_BOLD_ATTRIBUTES);
+                setIpad(JBUI.emptyInsets());
+                return;
+            }
 
-        logger.info("All items cleared from panel");
+            Item item = (Item) row;
+            setIcon(iconFor(item.status));
+            append(item.text, item.bold ? SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES : SimpleTextAttributes.REGULAR_ATTRIBUTES);
+            if (item.description != null && !item.description.isEmpty()) {
+                append("  " + item.description, SimpleTextAttributes.GRAYED_SMALL_ATTRIBUTES);
+            }
+            if (item.actionText != null) {
+                append("  " + item.actionText, SimpleTextAttributes.LINK_ATTRIBUTES, ACTION_LINK);
+            }
+            setIpad(selectedGrouping() == Grouping.NONE ? JBUI.emptyInsets() : JBUI.insetsLeft(16));
+        }
     }
 
     /**
@@ -328,11 +653,13 @@ public class InfoWindowPanel extends JBPanel<InfoWindowPanel> {
      * Chiamare questo metodo nel dispose() o quando il pannello viene rimosso
      */
     public void dispose() {
-        logger.info("Disposing InfoWindowPanel, clearing {} items", iconLabelMap.size());
+        logger.info("Disposing InfoWindowPanel, clearing {} runs", runs.getSize());
         stopLoadingAnimation();
-        loadingLabels.clear();
-        iconLabelMap.clear();
-        textLabelMap.clear();
-        itemPanelMap.clear();
+        runs.removeAllElements();
+        placeholderRun = null;
+        listModel.removeAll();
+        viewIndex.clear();
+        loadingItems.clear();
+        dirtyItems.clear();
     }
-}
\ No newline at end of file
+}
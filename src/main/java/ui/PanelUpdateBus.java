@@ -0,0 +1,228 @@
+package ui;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.util.concurrency.EdtExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ui.InfoWindowPanel.Run;
+import ui.InfoWindowPanel.StatusType;
+
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Raccoglie gli aggiornamenti destinati a un {@link InfoWindowPanel} da qualsiasi thread e li applica
+ * sulla EDT al massimo una volta per frame (circa 30 Hz). Gli aggiornamenti di stato e di testo
+ * superati da uno più recente per lo stesso elemento vengono scartati, e l'intero lotto viene
+ * applicato in un unico passaggio con un solo revalidate/repaint del pannello.
+ * <p>
+ * Ogni aggiornamento appartiene a un run del pannello: le azioni scrivono attraverso il
+ * {@link RunUpdates} del proprio run, così esecuzioni concorrenti non si sovrascrivono a vicenda.
+ */
+public final class PanelUpdateBus implements Disposable {
+
+    private static final Logger log = LoggerFactory.getLogger(PanelUpdateBus.class);
+
+    // Intervallo minimo tra due applicazioni consecutive sulla EDT
+    private static final long FRAME_MILLIS = 33;
+
+    private final InfoWindowPanel panel;
+    private final ConcurrentLinkedQueue<Update> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile long lastFlushNanos;
+    private volatile boolean disposed;
+
+    public PanelUpdateBus(InfoWindowPanel panel) {
+        this.panel = panel;
+    }
+
+    /**
+     * Elemento di un run a cui è destinato un aggiornamento
+     */
+    private record ItemKey(Run run, String id) {
+    }
+
+    /**
+     * Aggiornamento in attesa di essere applicato al pannello
+     */
+    private sealed interface Update {
+        Run run();
+
+        String id();
+
+        default ItemKey key() {
+            return new ItemKey(run(), id());
+        }
+    }
+
+    private record AddItem(Run run, String id, StatusType status, String text, String description, boolean bold,
+                           String module, String packageName) implements Update {
+    }
+
+    private record SetStatus(Run run, String id, StatusType status) implements Update {
+    }
+
+    private record SetText(Run run, String id, String text) implements Update {
+    }
+
+    private record AddButton(Run run, String id, String text, ActionListener listener) implements Update {
+    }
+
+    private record RemoveItem(Run run, String id) implements Update {
+    }
+
+    /**
+     * Aggiornamenti destinati a un run; va ottenuto da {@link #forRun} e usato per tutta l'esecuzione
+     */
+    public RunUpdates forRun(Run run) {
+        return new RunUpdates(run);
+    }
+
+    /**
+     * Accesso al bus legato a un singolo run del pannello, utilizzabile da qualsiasi thread
+     */
+    public final class RunUpdates {
+
+        private final Run run;
+
+        private RunUpdates(Run run) {
+            this.run = run;
+        }
+
+        public void addItem(String id, StatusType status, String text, String description, boolean bold) {
+            post(new AddItem(run, id, status, text, description, bold, null, null));
+        }
+
+        /**
+         * Aggiunge un elemento indicando modulo e package usati per il raggruppamento
+         */
+        public void addItem(String id, StatusType status, String text, String description, boolean bold,
+                            String module, String packageName) {
+            post(new AddItem(run, id, status, text, description, bold, module, packageName));
+        }
+
+        public void setStatus(String id, StatusType status) {
+            post(new SetStatus(run, id, status));
+        }
+
+        public void setText(String id, String text) {
+            post(new SetText(run, id, text));
+        }
+
+        /**
+         * Aggiorna stato e testo di un elemento
+         */
+        public void update(String id, StatusType status, String text) {
+            post(new SetStatus(run, id, status));
+            post(new SetText(run, id, text));
+        }
+
+        public void addButton(String id, String text, ActionListener listener) {
+            post(new AddButton(run, id, text, listener));
+        }
+
+        public void removeItem(String id) {
+            post(new RemoveItem(run, id));
+        }
+    }
+
+    private void post(Update update) {
+        if (disposed) {
+            return;
+        }
+        pending.add(update);
+        if (flushScheduled.compareAndSet(false, true)) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastFlushNanos);
+            long delay = Math.max(0, FRAME_MILLIS - elapsedMillis);
+            EdtExecutorService.getScheduledExecutorInstance().schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Applica sulla EDT tutti gli aggiornamenti accumulati dall'ultimo frame
+     */
+    private void flush() {
+        // Gli aggiornamenti pubblicati da qui in poi programmano il frame successivo
+        flushScheduled.set(false);
+        lastFlushNanos = System.nanoTime();
+        if (disposed) {
+            pending.clear();
+            return;
+        }
+
+        List<Update> batch = new ArrayList<>();
+        for (Update update; (update = pending.poll()) != null; ) {
+            batch.add(update);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Update> coalesced = coalesce(batch);
+        log.trace("Applicazione di {} aggiornamenti al pannello ({} ricevuti)", coalesced.size(), batch.size());
+        panel.applyBatch(() -> {
+            for (Update update : coalesced) {
+                try {
+                    apply(update);
+                } catch (Exception e) {
+                    log.error("Errore durante l'aggiornamento dell'elemento '{}'", update.id(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Scarta gli aggiornamenti di stato e testo superati da uno successivo per lo stesso elemento.
+     * Un elemento aggiunto di nuovo riparte da zero, quindi gli aggiornamenti precedenti alla sua
+     * aggiunta restano validi per l'elemento che sostituisce.
+     */
+    private static List<Update> coalesce(List<Update> batch) {
+        Set<ItemKey> statusSeen = new HashSet<>();
+        Set<ItemKey> textSeen = new HashSet<>();
+        List<Update> kept = new ArrayList<>(batch.size());
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Update update = batch.get(i);
+            if (update instanceof SetStatus && !statusSeen.add(update.key())) {
+                continue;
+            }
+            if (update instanceof SetText && !textSeen.add(update.key())) {
+                continue;
+            }
+            if (update instanceof AddItem || update instanceof RemoveItem) {
+                statusSeen.remove(update.key());
+                textSeen.remove(update.key());
+            }
+            kept.add(update);
+        }
+        Collections.reverse(kept);
+        return kept;
+    }
+
+    private void apply(Update update) {
+        if (update instanceof AddItem add) {
+            panel.addNewItem(add.run(), add.id(), add.status(), add.text(), add.description(), add.bold(),
+                    add.module(), add.packageName());
+        } else if (update instanceof SetStatus status) {
+            panel.updateItemStatus(status.run(), status.id(), status.status());
+        } else if (update instanceof SetText text) {
+            panel.updateItemText(text.run(), text.id(), text.text());
+        } else if (update instanceof AddButton button) {
+            panel.addButtonToItem(button.run(), button.id(), button.text(), button.listener());
+        } else if (update instanceof RemoveItem remove) {
+            panel.removeItem(remove.run(), remove.id());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        pending.clear();
+    }
+}
@@ -14,14 +14,15 @@ public class InfoWindowFactory implements ToolWindowFactory, DumbAware {
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
         InfoWindowPanel panel = new InfoWindowPanel();
+        InfoWindowPanel.Run session = panel.startNewRun("Session");
 
         // Aggiungiamo un messaggio di benvenuto
-        panel.addNewItem("welcome_message", InfoWindowPanel.StatusType.SUCCESS,
+        panel.addNewItem(session, "welcome_message", InfoWindowPanel.StatusType.SUCCESS,
                 "Ready to generate JUnit tests!",
                 "Right-click on a Java file and select 'Generate JUnit Tests' to start", true);
 
         // Aggiungiamo una nota informativa sulle funzionalità
-        panel.addNewItem("info_note", InfoWindowPanel.StatusType.WAITING,
+        panel.addNewItem(session, "info_note", InfoWindowPanel.StatusType.WAITING,
                 "This tool analyzes your code and generates comprehensive JUnit tests",
                 "Uses AI to understand code structure, dependencies, and edge cases", false);
 
@@ -0,0 +1,171 @@
+package vcs;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.fragments.LineFragment;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.DumbProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Individua i metodi Java modificati nel working tree rispetto a HEAD.
+ * <p>
+ * Per ogni file sorgente nelle change list del VCS il contenuto della revisione base viene confrontato
+ * riga per riga con il documento corrente; ogni hunk viene poi associato ai {@link PsiMethod} le cui righe
+ * lo contengono. Un file nuovo ha tutti i metodi modificati; le modifiche fuori dai metodi (campi, import)
+ * non selezionano nessun metodo.
+ */
+public class ChangedMethodsCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangedMethodsCollector.class);
+
+    /**
+     * Metodi modificati di un file
+     *
+     * @param file    File sorgente
+     * @param content Contenuto corrente del file
+     * @param methods Firme dei metodi modificati, nella forma Classe.metodo(Tipo, Tipo)
+     */
+    public record ChangedFile(VirtualFile file, String content, List<String> methods) {
+
+        /**
+         * Elenco dei metodi da passare al generatore, uno per riga
+         */
+        public String targetMethods() {
+            return String.join("\n", methods);
+        }
+    }
+
+    private final Project project;
+
+    public ChangedMethodsCollector(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Raccoglie i metodi modificati nei file Java sorgenti (non di test) delle change list.
+     * Legge le revisioni base dal VCS, quindi va chiamato fuori dalla EDT.
+     *
+     * @return Un elemento per ogni file con almeno un metodo modificato
+     */
+    public List<ChangedFile> collect() {
+        List<ChangedFile> changedFiles = new ArrayList<>();
+        for (Change change : ChangeListManager.getInstance(project).getAllChanges()) {
+            ContentRevision after = change.getAfterRevision();
+            VirtualFile file = after != null ? after.getFile().getVirtualFile() : null;
+            if (file == null || !isJavaSource(file)) {
+                continue;
+            }
+
+            String baseContent;
+            try {
+                ContentRevision before = change.getBeforeRevision();
+                baseContent = before != null ? before.getContent() : null;
+            } catch (VcsException e) {
+                log.warn("Impossibile leggere la revisione base di {}: {}", file.getPath(), e.getMessage());
+                continue;
+            }
+
+            ChangedFile changedFile = changedMethods(file, baseContent);
+            if (changedFile != null && !changedFile.methods().isEmpty()) {
+                changedFiles.add(changedFile);
+            }
+        }
+        log.info("Metodi modificati trovati in {} file", changedFiles.size());
+        return changedFiles;
+    }
+
+    private boolean isJavaSource(VirtualFile file) {
+        return ReadAction.compute(() -> {
+            ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+            return file.isValid() && !file.isDirectory() && "java".equals(file.getExtension())
+                    && fileIndex.isInSourceContent(file) && !fileIndex.isInTestSourceContent(file);
+        });
+    }
+
+    /**
+     * @param baseContent Contenuto della revisione base, null per un file nuovo
+     */
+    private ChangedFile changedMethods(VirtualFile file, String baseContent) {
+        return ReadAction.compute(() -> {
+            PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+            Document document = psiFile != null ? PsiDocumentManager.getInstance(project).getDocument(psiFile) : null;
+            if (!(psiFile instanceof PsiJavaFile) || document == null) {
+                return null;
+            }
+            String content = document.getText();
+
+            // Righe modificate [inizio, fine) nel documento corrente; una cancellazione tocca la riga in cui avviene
+            List<int[]> hunks = new ArrayList<>();
+            if (baseContent != null) {
+                List<LineFragment> fragments = ComparisonManager.getInstance()
+                        .compareLines(baseContent, content, ComparisonPolicy.IGNORE_WHITESPACES, DumbProgressIndicator.INSTANCE);
+                for (LineFragment fragment : fragments) {
+                    hunks.add(new int[]{fragment.getStartLine2(), Math.max(fragment.getEndLine2(), fragment.getStartLine2() + 1)});
+                }
+            }
+
+            List<String> methods = new ArrayList<>();
+            for (PsiMethod method : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod.class)) {
+                // I metodi di classi anonime o locali sono già coperti dal metodo che li contiene
+                if (method.getContainingClass() == null || method.getContainingClass().getQualifiedName() == null) {
+                    continue;
+                }
+                if (baseContent == null || overlaps(document, method.getTextRange(), hunks)) {
+                    methods.add(signature(method));
+                }
+            }
+            return new ChangedFile(file, content, methods);
+        });
+    }
+
+    private static boolean overlaps(Document document, TextRange range, List<int[]> hunks) {
+        int firstLine = document.getLineNumber(range.getStartOffset());
+        int lastLine = document.getLineNumber(range.getEndOffset());
+        for (int[] hunk : hunks) {
+            if (hunk[0] <= lastLine && hunk[1] > firstLine) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Firma del metodo nella forma "Classe.metodo(Tipo, Tipo)", usata negli elenchi dei metodi da testare.
+     * Va chiamato in una read action.
+     */
+    public static String signature(PsiMethod method) {
+        StringBuilder signature = new StringBuilder()
+                .append(method.getContainingClass().getName()).append('.')
+                .append(method.getName()).append('(');
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                signature.append(", ");
+            }
+            signature.append(parameters[i].getType().getPresentableText());
+        }
+        return signature.append(')').toString();
+    }
+}
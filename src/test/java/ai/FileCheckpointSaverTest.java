@@ -0,0 +1,143 @@
+package ai;
+
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.StateGraph;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Regressione sulla memoria trattenuta dai checkpoint: dopo molte esecuzioni concluse devono restare
+ * solo i risultati degli ultimi thread, in memoria e nel log, anche dopo il replay, e il log non deve
+ * crescere con il numero di esecuzioni durante la sessione.
+ */
+public class FileCheckpointSaverTest {
+
+    private static final int RUNS = FileCheckpointSaver.MAX_RETAINED_RESULTS * 4;
+
+    // Codice e analisi grandi come quelli di una classe reale: se vengono trattenuti il test lo vede
+    private static final String LARGE_TEXT = "x".repeat(64 * 1024);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void retainedStateStaysBoundedAfterManyRuns() throws Exception {
+        Path logFile = folder.getRoot().toPath().resolve("checkpoints.log");
+        List<String> threadIds = new ArrayList<>();
+
+        FileCheckpointSaver saver = new FileCheckpointSaver(logFile);
+        try {
+            for (int i = 0; i < RUNS; i++) {
+                String threadId = "thread-" + i;
+                threadIds.add(threadId);
+                simulateRun(saver, threadId, i);
+            }
+            assertOnlyRecentResults(saver, threadIds);
+        } finally {
+            saver.dispose();
+        }
+
+        // Il replay (con la compattazione) deve ripristinare gli stessi risultati e nient'altro
+        FileCheckpointSaver reopened = new FileCheckpointSaver(logFile);
+        try {
+            assertOnlyRecentResults(reopened, threadIds);
+            assertTrue("Il log compattato contiene ancora gli input delle esecuzioni: " + Files.size(logFile) + " byte",
+                    Files.size(logFile) < LARGE_TEXT.length());
+        } finally {
+            reopened.dispose();
+        }
+    }
+
+    @Test
+    public void logIsCompactedDuringTheSession() throws Exception {
+        Path logFile = folder.getRoot().toPath().resolve("checkpoints.log");
+        // Oltre la soglia restano solo i record non più validi accumulati dall'ultima compattazione, più i
+        // pochi della run in corso; senza compattazione le RUNS esecuzioni ne scriverebbero 3 grandi ciascuna
+        long maxLogBytes = (FileCheckpointSaver.COMPACTION_MIN_RECORDS + 8L) * (2L * LARGE_TEXT.length() + 1024);
+        long peakLogBytes = 0;
+
+        FileCheckpointSaver saver = new FileCheckpointSaver(logFile);
+        try {
+            for (int i = 0; i < RUNS; i++) {
+                simulateRun(saver, "thread-" + i, i);
+                peakLogBytes = Math.max(peakLogBytes, Files.size(logFile));
+            }
+        } finally {
+            saver.dispose();
+        }
+        assertTrue("Il log è cresciuto fino a " + peakLogBytes + " byte senza essere compattato",
+                peakLogBytes < maxLogBytes);
+    }
+
+    @Test
+    public void clearedThreadDoesNotCountTowardsTheLimit() throws Exception {
+        FileCheckpointSaver saver = new FileCheckpointSaver(folder.getRoot().toPath().resolve("checkpoints.log"));
+        try {
+            simulateRun(saver, "kept", 0);
+            simulateRun(saver, "discarded", 1);
+            saver.clear(config("discarded"));
+            for (int i = 0; i < FileCheckpointSaver.MAX_RETAINED_RESULTS - 1; i++) {
+                simulateRun(saver, "thread-" + i, i + 2);
+            }
+            assertEquals(1, saver.list(config("kept")).size());
+            assertTrue(saver.list(config("discarded")).isEmpty());
+        } finally {
+            saver.dispose();
+        }
+    }
+
+    /**
+     * Checkpoint dei tre nodi del grafo, poi la riduzione al solo risultato come a fine esecuzione
+     */
+    private static void simulateRun(FileCheckpointSaver saver, String threadId, int index) throws Exception {
+        RunnableConfig config = config(threadId);
+        String[] nodes = {"dependency_checker", "context_analyzer", "junit_generator"};
+        for (int step = 0; step < nodes.length; step++) {
+            boolean last = step == nodes.length - 1;
+            Map<String, Object> state = last
+                    ? Map.of(State.CODE, LARGE_TEXT + index, State.CONTEXT_ANALYSIS, LARGE_TEXT,
+                    State.GENERATED_TESTS, "class GeneratedTest" + index + " {}")
+                    : Map.of(State.CODE, LARGE_TEXT + index, State.DEPENDENCY_ANALYSIS, LARGE_TEXT);
+            saver.put(config, Checkpoint.builder()
+                    .id(UUID.randomUUID().toString())
+                    .nodeId(nodes[step])
+                    .nextNodeId(last ? StateGraph.END : nodes[step + 1])
+                    .state(state)
+                    .build());
+        }
+        saver.retainResult(config, State.GENERATED_TESTS);
+    }
+
+    private static void assertOnlyRecentResults(FileCheckpointSaver saver, List<String> threadIds) {
+        int retained = 0;
+        for (int i = 0; i < threadIds.size(); i++) {
+            Collection<Checkpoint> checkpoints = saver.list(config(threadIds.get(i)));
+            boolean recent = i >= threadIds.size() - FileCheckpointSaver.MAX_RETAINED_RESULTS;
+            assertEquals("Checkpoint del thread " + threadIds.get(i), recent ? 1 : 0, checkpoints.size());
+            for (Checkpoint checkpoint : checkpoints) {
+                assertEquals(Set.of(State.GENERATED_TESTS), checkpoint.getState().keySet());
+                assertEquals("class GeneratedTest" + i + " {}", checkpoint.getState().get(State.GENERATED_TESTS));
+                retained++;
+            }
+        }
+        assertEquals(FileCheckpointSaver.MAX_RETAINED_RESULTS, retained);
+    }
+
+    private static RunnableConfig config(String threadId) {
+        return RunnableConfig.builder().threadId(threadId).build();
+    }
+}